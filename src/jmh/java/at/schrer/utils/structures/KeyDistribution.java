@@ -0,0 +1,50 @@
+package at.schrer.utils.structures;
+
+import java.util.Random;
+
+/**
+ * The order in which benchmarks access the indexes or keys of a structure.
+ */
+public enum KeyDistribution {
+    /**
+     * One index after another, wrapping around at the end.
+     */
+    SEQUENTIAL,
+    /**
+     * Every index is equally likely.
+     */
+    UNIFORM,
+    /**
+     * Cubes uniform random numbers, so the first few percent of the indexes get most of the accesses, like the hot
+     * keys of a cache.
+     */
+    SKEWED;
+
+    /**
+     * Creates the indexes to access, with a fixed seed so every run and every implementation gets the same ones.
+     *
+     * @param size the number of elements in the structure
+     * @param count the number of indexes to create
+     * @return indexes between 0 and size - 1
+     */
+    public int[] indexes(int size, int count) {
+        final Random random = new Random(42);
+        final int[] indexes = new int[count];
+        for (int i = 0; i < count; i++) {
+            indexes[i] = switch (this) {
+                case SEQUENTIAL -> i % size;
+                case UNIFORM -> random.nextInt(size);
+                case SKEWED -> (int) (size * Math.pow(random.nextDouble(), 3));
+            };
+        }
+        return indexes;
+    }
+
+    /**
+     * Spreads an index over the int range, so keys are not simply sequential. Multiplying with an odd number maps
+     * every index to a different key.
+     */
+    public static int key(int index) {
+        return index * 0x9E3779B9;
+    }
+}
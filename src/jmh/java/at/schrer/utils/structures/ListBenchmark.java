@@ -0,0 +1,99 @@
+package at.schrer.utils.structures;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link SomeList} and {@link ChunkedSomeList} with {@link ArrayList} and {@link LinkedList}.
+ * Every benchmark method does a single operation, the indexes come from a precomputed {@link KeyDistribution}.
+ * Operations that change the list undo their change, so it keeps its size. Operations that do not depend on the
+ * distribution are in {@link SequentialListBenchmark}.
+ * <p>
+ * Indexed access on linked lists is O(n), at 10M elements a single random get walks millions of nodes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ListBenchmark {
+
+    private static final int INDEX_COUNT = 1 << 16;
+
+    @Param({"10", "1000", "100000", "10000000"})
+    private int size;
+
+    @Param({"SomeList", "ChunkedSomeList", "ArrayList", "LinkedList"})
+    private String implementation;
+
+    @Param({"SEQUENTIAL", "UNIFORM", "SKEWED"})
+    private KeyDistribution distribution;
+
+    private List<Integer> list;
+    private int[] indexes;
+    private Integer[] values;
+    private Integer inserted;
+    private int next;
+
+    /**
+     * @return a list of the implementation, holding the numbers from 0 to size - 1
+     */
+    static List<Integer> createList(String implementation, int size) {
+        final List<Integer> list = switch (implementation) {
+            case "SomeList" -> new SomeList<>();
+            case "ChunkedSomeList" -> new ChunkedSomeList<>();
+            case "ArrayList" -> new ArrayList<>();
+            case "LinkedList" -> new LinkedList<>();
+            default -> throw new IllegalArgumentException("Unknown list " + implementation);
+        };
+        for (int i = 0; i < size; i++) {
+            list.add(i);
+        }
+        return list;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        list = createList(implementation, size);
+        indexes = distribution.indexes(size, INDEX_COUNT);
+        // Boxed up front, so the benchmarks do not measure Integer allocations
+        values = new Integer[INDEX_COUNT];
+        for (int i = 0; i < INDEX_COUNT; i++) {
+            values[i] = indexes[i];
+        }
+        inserted = -1;
+        next = 0;
+    }
+
+    private int nextSlot() {
+        final int slot = next;
+        next = (next + 1) & (INDEX_COUNT - 1);
+        return slot;
+    }
+
+    @Benchmark
+    public Integer get() {
+        return list.get(indexes[nextSlot()]);
+    }
+
+    @Benchmark
+    public Integer set() {
+        final int slot = nextSlot();
+        return list.set(indexes[slot], values[slot]);
+    }
+
+    /**
+     * Inserts an element at an index and removes it again.
+     */
+    @Benchmark
+    public Integer addRemoveAt() {
+        final int index = indexes[nextSlot()];
+        list.add(index, inserted);
+        return list.remove(index);
+    }
+}
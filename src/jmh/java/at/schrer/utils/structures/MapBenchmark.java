@@ -0,0 +1,104 @@
+package at.schrer.utils.structures;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link SomeMap} with {@link HashMap} and {@link TreeMap}.
+ * The keys are spread by {@link KeyDistribution#key(int)}, every benchmark method does a single operation on the key
+ * of the next precomputed index. Operations that change the map undo their change, so it keeps its size.
+ * Operations that do not depend on the distribution are in {@link SequentialMapBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class MapBenchmark {
+
+    private static final int INDEX_COUNT = 1 << 16;
+
+    @Param({"10", "1000", "100000", "10000000"})
+    private int size;
+
+    @Param({"SomeMap", "HashMap", "TreeMap"})
+    private String implementation;
+
+    @Param({"SEQUENTIAL", "UNIFORM", "SKEWED"})
+    private KeyDistribution distribution;
+
+    private Map<Integer, Integer> map;
+    private Integer[] keys;
+    private Integer[] missingKeys;
+    private int next;
+
+    /**
+     * @return a map of the implementation, mapping the keys of the indexes from 0 to size - 1 to their index
+     */
+    static Map<Integer, Integer> createMap(String implementation, int size) {
+        final Map<Integer, Integer> map = switch (implementation) {
+            case "SomeMap" -> new SomeMap<>();
+            case "HashMap" -> new HashMap<>();
+            case "TreeMap" -> new TreeMap<>();
+            default -> throw new IllegalArgumentException("Unknown map " + implementation);
+        };
+        for (int i = 0; i < size; i++) {
+            map.put(KeyDistribution.key(i), i);
+        }
+        return map;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        map = createMap(implementation, size);
+        // Boxed up front, so the benchmarks do not measure Integer allocations
+        final int[] indexes = distribution.indexes(size, INDEX_COUNT);
+        keys = new Integer[INDEX_COUNT];
+        missingKeys = new Integer[INDEX_COUNT];
+        for (int i = 0; i < INDEX_COUNT; i++) {
+            keys[i] = KeyDistribution.key(indexes[i]);
+            missingKeys[i] = KeyDistribution.key(size + indexes[i]);
+        }
+        next = 0;
+    }
+
+    private int nextSlot() {
+        final int slot = next;
+        next = (next + 1) & (INDEX_COUNT - 1);
+        return slot;
+    }
+
+    @Benchmark
+    public Integer get() {
+        return map.get(keys[nextSlot()]);
+    }
+
+    @Benchmark
+    public Integer getMissing() {
+        return map.get(missingKeys[nextSlot()]);
+    }
+
+    /**
+     * Replaces the value of a key that is in the map.
+     */
+    @Benchmark
+    public Integer putExisting() {
+        final Integer key = keys[nextSlot()];
+        return map.put(key, key);
+    }
+
+    /**
+     * Puts a new key and removes it again.
+     */
+    @Benchmark
+    public Integer putRemove() {
+        final Integer key = missingKeys[nextSlot()];
+        map.put(key, key);
+        return map.remove(key);
+    }
+}
@@ -0,0 +1,53 @@
+package at.schrer.utils.structures;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The operations of {@link ListBenchmark} that do not access indexes of a {@link KeyDistribution}, so they only run
+ * once for every size and implementation. Operations that change the list undo their change, so it keeps its size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class SequentialListBenchmark {
+
+    @Param({"10", "1000", "100000", "10000000"})
+    private int size;
+
+    @Param({"SomeList", "ChunkedSomeList", "ArrayList", "LinkedList"})
+    private String implementation;
+
+    private List<Integer> list;
+    private Integer last;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        list = ListBenchmark.createList(implementation, size);
+        // Boxed up front, so the benchmarks do not measure Integer allocations
+        last = size;
+    }
+
+    @Benchmark
+    public long iterate() {
+        long sum = 0;
+        for (Integer element : list) {
+            sum += element;
+        }
+        return sum;
+    }
+
+    /**
+     * Uses the list as a queue: appends an element and removes the first one.
+     */
+    @Benchmark
+    public Integer addLastRemoveFirst() {
+        list.add(last);
+        return list.remove(0);
+    }
+}
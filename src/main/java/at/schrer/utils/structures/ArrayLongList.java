@@ -0,0 +1,177 @@
+package at.schrer.utils.structures;
+
+import java.util.*;
+import java.util.stream.LongStream;
+
+/**
+ * A {@link LongList} backed by a single long array, which grows by half its length when it is full.
+ * Reading, setting and appending values is O(1), adding or removing anywhere else shifts the following values.
+ * The list is not thread safe.
+ */
+public class ArrayLongList extends LongList {
+
+    private static final int DEFAULT_CAPACITY = 10;
+    private static final long[] EMPTY = new long[0];
+
+    private long[] values;
+    private int size;
+
+    public ArrayLongList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ArrayLongList(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative");
+        }
+        this.values = initialCapacity == 0 ? EMPTY : new long[initialCapacity];
+    }
+
+    public ArrayLongList(long[] values) {
+        this.values = values.clone();
+        this.size = values.length;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long getLong(int index) {
+        Objects.checkIndex(index, size);
+        return values[index];
+    }
+
+    @Override
+    public long setLong(int index, long value) {
+        Objects.checkIndex(index, size);
+        final long oldValue = values[index];
+        values[index] = value;
+        return oldValue;
+    }
+
+    @Override
+    public boolean addLong(long value) {
+        if (size == values.length) {
+            grow(size + 1);
+        }
+        values[size++] = value;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void addLong(int index, long value) {
+        Objects.checkIndex(index, size + 1);
+        if (size == values.length) {
+            grow(size + 1);
+        }
+        System.arraycopy(values, index, values, index + 1, size - index);
+        values[index] = value;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public long removeLong(int index) {
+        Objects.checkIndex(index, size);
+        final long oldValue = values[index];
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+        modCount++;
+        return oldValue;
+    }
+
+    @Override
+    public boolean addAll(long[] newValues) {
+        ensureCapacity(size + newValues.length);
+        System.arraycopy(newValues, 0, values, size, newValues.length);
+        size += newValues.length;
+        modCount++;
+        return newValues.length > 0;
+    }
+
+    @Override
+    public int indexOfLong(long value) {
+        for (int i = 0; i < size; i++) {
+            if (Long.compare(values[i], value) == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public long[] toLongArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        System.arraycopy(values, toIndex, values, fromIndex, size - toIndex);
+        size -= toIndex - fromIndex;
+        modCount++;
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong longIterator() {
+        return new PrimitiveIterator.OfLong() {
+            private int index = 0;
+            private final int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public long nextLong() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                return values[index++];
+            }
+        };
+    }
+
+    /**
+     * Returns a sequential stream of the values. It reads the array directly and can be split for parallel streams.
+     */
+    @Override
+    public LongStream longStream() {
+        return Arrays.stream(values, 0, size);
+    }
+
+    /**
+     * Grows the array, if it cannot hold the given number of values yet.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > values.length) {
+            grow(capacity);
+        }
+    }
+
+    /**
+     * Shrinks the array to the number of values in the list.
+     */
+    public void trimToSize() {
+        if (size < values.length) {
+            values = size == 0 ? EMPTY : Arrays.copyOf(values, size);
+        }
+    }
+
+    private void grow(int minCapacity) {
+        final int newCapacity = Math.max(minCapacity, Math.max(DEFAULT_CAPACITY, values.length + values.length / 2));
+        values = Arrays.copyOf(values, newCapacity);
+    }
+}
@@ -0,0 +1,339 @@
+package at.schrer.utils.structures;
+
+import at.schrer.utils.structures.codec.Codec;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.*;
+
+/**
+ * A compact binary format for lists and maps, which writes their elements with {@link Codec}s to channels and reads
+ * them back into a {@link SomeList} or {@link SomeMap}.
+ * <p>
+ * A structure starts with a header of 10 bytes: the magic number 0x534d4246, the format version, the kind of the
+ * structure (1 for lists, 2 for maps) and the number of elements as int. The elements follow in frames of up to 64 KiB,
+ * each prefixed with its length as int. An element, or the key and value of a mapping, never spans two frames, a
+ * larger one gets a frame of its own, of up to 64 MiB. A frame of length 0 ends the structure.
+ * <p>
+ * Thanks to the frames the reader never reads past the end of a structure, so several of them can be written to the
+ * same channel one after the other. Reading fills the structures in bulk: maps are sized for all mappings up front and
+ * lists chain their nodes in batches, without going through add or put for every element.
+ */
+public final class BinaryFormat {
+
+    private static final int MAGIC = 0x534d4246;
+    private static final byte VERSION = 1;
+    private static final byte KIND_LIST = 1;
+    private static final byte KIND_MAP = 2;
+    private static final int HEADER_SIZE = 10;
+
+    private static final int FRAME_SIZE = 64 * 1024;
+    // Frames longer than this are rejected, a corrupt length must not allocate gigabytes
+    private static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+    private static final int BATCH_SIZE = 1024;
+    // The header is not trusted with allocating more than this up front
+    private static final int MAX_PRESIZE = 1 << 20;
+
+    private BinaryFormat(){}
+
+    /**
+     * Writes the elements of a list to a channel.
+     *
+     * @throws ConcurrentModificationException if the list changes its size while it is written
+     */
+    public static <T> void writeList(List<? extends T> list, Codec<? super T> codec, WritableByteChannel channel)
+            throws IOException {
+        final int count = list.size();
+        final FrameWriter writer = new FrameWriter(channel);
+        writer.writeHeader(KIND_LIST, count);
+        int written = 0;
+        for (T element : list) {
+            writer.write(codec, element);
+            written++;
+        }
+        if (written != count) {
+            throw new ConcurrentModificationException();
+        }
+        writer.finish();
+    }
+
+    /**
+     * Reads a list written by {@link #writeList}.
+     *
+     * @throws IOException if the channel ends early, or does not hold a list in this format
+     */
+    public static <T> SomeList<T> readList(ReadableByteChannel channel, Codec<? extends T> codec) throws IOException {
+        final FrameReader reader = new FrameReader(channel);
+        final int count = reader.readHeader(KIND_LIST);
+        final SomeList<T> list = new SomeList<>();
+        final Object[] batch = new Object[Math.min(count, BATCH_SIZE)];
+        int read = 0;
+        while (read < count) {
+            final int batchCount = Math.min(batch.length, count - read);
+            for (int i = 0; i < batchCount; i++) {
+                batch[i] = reader.read(codec);
+            }
+            list.appendAll(batch, batchCount);
+            read += batchCount;
+        }
+        reader.finish();
+        return list;
+    }
+
+    /**
+     * Writes the mappings of a map to a channel.
+     *
+     * @throws ConcurrentModificationException if the map changes its size while it is written
+     */
+    public static <K, V> void writeMap(Map<? extends K, ? extends V> map, Codec<? super K> keyCodec,
+                                       Codec<? super V> valueCodec, WritableByteChannel channel) throws IOException {
+        final int count = map.size();
+        final FrameWriter writer = new FrameWriter(channel);
+        writer.writeHeader(KIND_MAP, count);
+        int written = 0;
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            writer.write(keyCodec, entry.getKey(), valueCodec, entry.getValue());
+            written++;
+        }
+        if (written != count) {
+            throw new ConcurrentModificationException();
+        }
+        writer.finish();
+    }
+
+    /**
+     * Reads a map written by {@link #writeMap}.
+     *
+     * @throws IOException if the channel ends early, does not hold a map in this format or holds a key twice
+     */
+    public static <K extends Comparable<K>, V> SomeMap<K, V> readMap(ReadableByteChannel channel,
+                                                                     Codec<? extends K> keyCodec,
+                                                                     Codec<? extends V> valueCodec) throws IOException {
+        final FrameReader reader = new FrameReader(channel);
+        final int count = reader.readHeader(KIND_MAP);
+        final SomeMap<K, V> map = new SomeMap<>(Math.min(count, MAX_PRESIZE));
+        for (int i = 0; i < count; i++) {
+            final K key = reader.read(keyCodec);
+            final V value = reader.read(valueCodec);
+            try {
+                map.appendEntry(new SomeMap.Entry<>(key, value));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Corrupt map: " + e.getMessage(), e);
+            }
+        }
+        reader.finish();
+        return map;
+    }
+
+    /**
+     * Collects encoded elements in a buffer and writes it to the channel as a frame, once the next element does not
+     * fit anymore. The first 4 bytes of the buffer are kept free for the frame length.
+     */
+    private static final class FrameWriter {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(FRAME_SIZE);
+
+        FrameWriter(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        void writeHeader(byte kind, int count) throws IOException {
+            buffer.putInt(MAGIC).put(VERSION).put(kind).putInt(count);
+            buffer.flip();
+            writeFully(buffer);
+            startFrame();
+        }
+
+        <T> void write(Codec<T> codec, T value) throws IOException {
+            final ByteBuffer target = bufferFor(codec.encodedSize(value));
+            codec.encode(value, target);
+            if (target != buffer) {
+                writeLargeFrame(target);
+            }
+        }
+
+        <K, V> void write(Codec<K> keyCodec, K key, Codec<V> valueCodec, V value) throws IOException {
+            final ByteBuffer target = bufferFor(keyCodec.encodedSize(key) + valueCodec.encodedSize(value));
+            keyCodec.encode(key, target);
+            valueCodec.encode(value, target);
+            if (target != buffer) {
+                writeLargeFrame(target);
+            }
+        }
+
+        /**
+         * Makes room for an element in the frame buffer. An element larger than a frame gets a frame of its own.
+         *
+         * @return the frame buffer, or a new buffer holding just the length of the large frame
+         * @throws IOException if the element is larger than the maximum frame size
+         */
+        private ByteBuffer bufferFor(int size) throws IOException {
+            if (size > MAX_FRAME_SIZE) {
+                throw new IOException("Element of " + size + " bytes exceeds the maximum frame size");
+            }
+            if (size > buffer.remaining()) {
+                flushFrame();
+                if (size > buffer.remaining()) {
+                    final ByteBuffer large = ByteBuffer.allocate(Integer.BYTES + size);
+                    large.putInt(size);
+                    return large;
+                }
+            }
+            return buffer;
+        }
+
+        private void writeLargeFrame(ByteBuffer large) throws IOException {
+            large.flip();
+            writeFully(large);
+        }
+
+        void finish() throws IOException {
+            flushFrame();
+            buffer.clear();
+            buffer.putInt(0);
+            buffer.flip();
+            writeFully(buffer);
+        }
+
+        private void flushFrame() throws IOException {
+            final int length = buffer.position() - Integer.BYTES;
+            if (length > 0) {
+                buffer.putInt(0, length);
+                buffer.flip();
+                writeFully(buffer);
+            }
+            startFrame();
+        }
+
+        private void startFrame() {
+            buffer.clear();
+            buffer.position(Integer.BYTES);
+        }
+
+        private void writeFully(ByteBuffer source) throws IOException {
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+        }
+    }
+
+    /**
+     * Reads frames completely into a buffer and decodes the elements from it. Only the bytes of the structure are
+     * read from the channel.
+     */
+    private static final class FrameReader {
+        private final ReadableByteChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocate(FRAME_SIZE);
+        private final ByteBuffer lengthBuffer = ByteBuffer.allocate(Integer.BYTES);
+        private boolean ended = false;
+
+        FrameReader(ReadableByteChannel channel) {
+            this.channel = channel;
+            buffer.limit(0);
+        }
+
+        /**
+         * @return the number of elements
+         */
+        int readHeader(byte kind) throws IOException {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(header);
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a structure in binary format");
+            }
+            final byte version = header.get();
+            if (version != VERSION) {
+                throw new IOException("Unsupported format version " + version);
+            }
+            final byte actualKind = header.get();
+            if (actualKind != kind) {
+                throw new IOException("Expected structure of kind " + kind + " but found " + actualKind);
+            }
+            final int count = header.getInt();
+            if (count < 0) {
+                throw new IOException("Negative element count " + count);
+            }
+            return count;
+        }
+
+        <T> T read(Codec<T> codec) throws IOException {
+            if (!buffer.hasRemaining()) {
+                nextFrame();
+                if (ended) {
+                    throw new IOException("Structure ended before all elements were read");
+                }
+            }
+            try {
+                return codec.decode(buffer);
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                throw new IOException("Corrupt element in frame", e);
+            }
+        }
+
+        /**
+         * Reads up to the frame that ends the structure, which has to follow the last element.
+         */
+        void finish() throws IOException {
+            if (buffer.hasRemaining()) {
+                throw new IOException("Structure holds more elements than its header tells");
+            }
+            nextFrame();
+            if (!ended) {
+                throw new IOException("Structure holds more elements than its header tells");
+            }
+        }
+
+        private void nextFrame() throws IOException {
+            lengthBuffer.clear();
+            readFully(lengthBuffer);
+            final int length = lengthBuffer.getInt(0);
+            if (length < 0 || length > MAX_FRAME_SIZE) {
+                throw new IOException("Invalid frame length " + length);
+            }
+            if (length == 0) {
+                ended = true;
+                buffer.limit(0);
+                return;
+            }
+            if (length > buffer.capacity()) {
+                readLargeFrame(length);
+                return;
+            }
+            buffer.clear();
+            buffer.limit(length);
+            readFully(buffer);
+            buffer.flip();
+        }
+
+        /**
+         * Reads a frame larger than the buffer into buffers doubling in size, so only as much memory is allocated as
+         * the channel actually delivers, even if the length is corrupt.
+         */
+        private void readLargeFrame(int length) throws IOException {
+            ByteBuffer large = ByteBuffer.allocate(Math.min(length, buffer.capacity() * 2));
+            readFully(large);
+            while (large.position() < length) {
+                final ByteBuffer grown = ByteBuffer.allocate((int) Math.min(length, large.capacity() * 2L));
+                large.flip();
+                grown.put(large);
+                readFully(grown);
+                large = grown;
+            }
+            large.flip();
+            buffer = large;
+        }
+
+        private void readFully(ByteBuffer target) throws IOException {
+            while (target.hasRemaining()) {
+                if (channel.read(target) < 0) {
+                    throw new EOFException("Channel ended within a structure");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package at.schrer.utils.structures;
+
+import java.util.*;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An unbounded {@link BlockingDeque} on top of a {@link ConcurrentSomeDeque}.
+ * <p>
+ * Adding and non-blocking polls go straight to the lock free deque. The lock is only taken by consumers that find the
+ * deque empty and wait for an element, and by producers if such a consumer is waiting. As long as consumers keep up
+ * with the producers, no thread touches the lock at all.
+ * <p>
+ * The deque is unbounded, so the put and offer methods never block. Iterators are weakly consistent.
+ *
+ * @param <T> type of the elements
+ */
+public class BlockingSomeDeque<T> extends AbstractQueue<T> implements BlockingDeque<T> {
+
+    private final ConcurrentSomeDeque<T> deque;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    public BlockingSomeDeque() {
+        this.deque = new ConcurrentSomeDeque<>();
+    }
+
+    public BlockingSomeDeque(Collection<? extends T> c) {
+        this.deque = new ConcurrentSomeDeque<>(c);
+    }
+
+    // Adding
+
+    @Override
+    public void addFirst(T t) {
+        offerFirst(t);
+    }
+
+    @Override
+    public void addLast(T t) {
+        offerLast(t);
+    }
+
+    @Override
+    public boolean offerFirst(T t) {
+        deque.offerFirst(t);
+        signalWaiting();
+        return true;
+    }
+
+    @Override
+    public boolean offerLast(T t) {
+        deque.offerLast(t);
+        signalWaiting();
+        return true;
+    }
+
+    @Override
+    public void putFirst(T t) {
+        offerFirst(t);
+    }
+
+    @Override
+    public void putLast(T t) {
+        offerLast(t);
+    }
+
+    @Override
+    public boolean offerFirst(T t, long timeout, TimeUnit unit) {
+        return offerFirst(t);
+    }
+
+    @Override
+    public boolean offerLast(T t, long timeout, TimeUnit unit) {
+        return offerLast(t);
+    }
+
+    @Override
+    public boolean offer(T t) {
+        return offerLast(t);
+    }
+
+    @Override
+    public void put(T t) {
+        offerLast(t);
+    }
+
+    @Override
+    public boolean offer(T t, long timeout, TimeUnit unit) {
+        return offerLast(t);
+    }
+
+    @Override
+    public void push(T t) {
+        addFirst(t);
+    }
+
+    // Removing
+
+    @Override
+    public T pollFirst() {
+        return deque.pollFirst();
+    }
+
+    @Override
+    public T pollLast() {
+        return deque.pollLast();
+    }
+
+    @Override
+    public T removeFirst() {
+        return deque.removeFirst();
+    }
+
+    @Override
+    public T removeLast() {
+        return deque.removeLast();
+    }
+
+    @Override
+    public T takeFirst() throws InterruptedException {
+        return await(true, -1);
+    }
+
+    @Override
+    public T takeLast() throws InterruptedException {
+        return await(false, -1);
+    }
+
+    @Override
+    public T pollFirst(long timeout, TimeUnit unit) throws InterruptedException {
+        return await(true, Math.max(0, unit.toNanos(timeout)));
+    }
+
+    @Override
+    public T pollLast(long timeout, TimeUnit unit) throws InterruptedException {
+        return await(false, Math.max(0, unit.toNanos(timeout)));
+    }
+
+    @Override
+    public T poll() {
+        return pollFirst();
+    }
+
+    @Override
+    public T take() throws InterruptedException {
+        return takeFirst();
+    }
+
+    @Override
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return pollFirst(timeout, unit);
+    }
+
+    @Override
+    public T pop() {
+        return removeFirst();
+    }
+
+    @Override
+    public boolean removeFirstOccurrence(Object o) {
+        return deque.removeFirstOccurrence(o);
+    }
+
+    @Override
+    public boolean removeLastOccurrence(Object o) {
+        return deque.removeLastOccurrence(o);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return deque.remove(o);
+    }
+
+    @Override
+    public void clear() {
+        deque.clear();
+    }
+
+    @Override
+    public int drainTo(Collection<? super T> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super T> c, int maxElements) {
+        Objects.requireNonNull(c);
+        if (c == this) {
+            throw new IllegalArgumentException("Cannot drain a deque into itself");
+        }
+        int drained = 0;
+        T item;
+        while (drained < maxElements && (item = deque.pollFirst()) != null) {
+            c.add(item);
+            drained++;
+        }
+        return drained;
+    }
+
+    // Reading
+
+    @Override
+    public T peekFirst() {
+        return deque.peekFirst();
+    }
+
+    @Override
+    public T peekLast() {
+        return deque.peekLast();
+    }
+
+    @Override
+    public T getFirst() {
+        return deque.getFirst();
+    }
+
+    @Override
+    public T getLast() {
+        return deque.getLast();
+    }
+
+    @Override
+    public T peek() {
+        return peekFirst();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return deque.contains(o);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return deque.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return deque.size();
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return deque.iterator();
+    }
+
+    @Override
+    public Iterator<T> descendingIterator() {
+        return deque.descendingIterator();
+    }
+
+    /**
+     * Wakes one waiting consumer. Consumers register as waiting before they poll for the last time, so a producer
+     * either sees the registration or the consumer sees the new element.
+     */
+    private void signalWaiting() {
+        if (waiting.get() > 0) {
+            lock.lock();
+            try {
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Polls an element, waiting for one to be added if the deque is empty.
+     *
+     * @param first whether to poll the first or the last element
+     * @param nanos the maximum time to wait, negative to wait without a limit
+     * @return the element, or null if the time ran out
+     */
+    private T await(boolean first, long nanos) throws InterruptedException {
+        T item = first ? deque.pollFirst() : deque.pollLast();
+        if (item != null) {
+            return item;
+        }
+        lock.lockInterruptibly();
+        try {
+            waiting.incrementAndGet();
+            try {
+                while ((item = first ? deque.pollFirst() : deque.pollLast()) == null) {
+                    if (nanos < 0) {
+                        notEmpty.await();
+                    } else if (nanos == 0) {
+                        return null;
+                    } else {
+                        nanos = Math.max(0, notEmpty.awaitNanos(nanos));
+                    }
+                }
+            } catch (InterruptedException e) {
+                // The signal this thread may have received is passed on
+                notEmpty.signal();
+                throw e;
+            } finally {
+                waiting.decrementAndGet();
+            }
+            if (waiting.get() > 0 && !deque.isEmpty()) {
+                notEmpty.signal();
+            }
+            return item;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
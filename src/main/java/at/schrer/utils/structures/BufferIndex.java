@@ -0,0 +1,122 @@
+package at.schrer.utils.structures;
+
+import java.nio.ByteBuffer;
+import java.util.function.LongPredicate;
+
+/**
+ * An open addressing hash table with linear probing inside a {@link ByteBuffer}, mapping hashes to record addresses.
+ * The table stores no keys, the owner decides whether the record at an address holds the key it is looking for.
+ * <p>
+ * Every slot takes 16 bytes: the address plus one, so zero marks a free slot, followed by the hash and 4 unused bytes.
+ */
+final class BufferIndex {
+
+    static final int SLOT_SIZE = 16;
+    private static final long FREE_SLOT = 0;
+
+    private final ByteBuffer buffer;
+    private final int base;
+    private final int slots;
+    private final int mask;
+
+    /**
+     * @param buffer the buffer holding the table, its slots have to be zeroed or hold a table written earlier
+     * @param base the offset of the first slot in the buffer
+     * @param slots the number of slots, a power of two
+     */
+    BufferIndex(ByteBuffer buffer, int base, int slots) {
+        this.buffer = buffer;
+        this.base = base;
+        this.slots = slots;
+        this.mask = slots - 1;
+    }
+
+    /**
+     * @param slots the number of slots
+     * @return the number of bytes a table with that many slots takes
+     */
+    static long bytesFor(int slots) {
+        return (long) slots * SLOT_SIZE;
+    }
+
+    int slots() {
+        return slots;
+    }
+
+    boolean isFree(int slot) {
+        return buffer.getLong(offsetOf(slot)) == FREE_SLOT;
+    }
+
+    long addressAt(int slot) {
+        return buffer.getLong(offsetOf(slot)) - 1;
+    }
+
+    void setAddressAt(int slot, long address) {
+        buffer.putLong(offsetOf(slot), address + 1);
+    }
+
+    int hashAt(int slot) {
+        return buffer.getInt(offsetOf(slot) + 8);
+    }
+
+    /**
+     * @param hash the hash of the key
+     * @param matches tells whether the record at an address holds the key
+     * @return the slot of the key or -1 if it is not in the table
+     */
+    int find(int hash, LongPredicate matches) {
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            if (isFree(slot)) {
+                return -1;
+            }
+            if (hashAt(slot) == hash && matches.test(addressAt(slot))) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Puts an address into the first free slot of the probe sequence, the key must not be in the table yet.
+     */
+    void insert(int hash, long address) {
+        int slot = hash & mask;
+        while (!isFree(slot)) {
+            slot = (slot + 1) & mask;
+        }
+        setAddressAt(slot, address);
+        buffer.putInt(offsetOf(slot) + 8, hash);
+    }
+
+    /**
+     * Empties a slot and shifts the following slots of the probe sequence back into the gap,
+     * unless that would move them in front of their home slot.
+     */
+    void remove(int slot) {
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (!isFree(next)) {
+            final int home = hashAt(next) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                buffer.put(offsetOf(gap), buffer, offsetOf(next), SLOT_SIZE);
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        buffer.putLong(offsetOf(gap), FREE_SLOT);
+    }
+
+    /**
+     * Inserts all addresses of this table into another one.
+     */
+    void copyTo(BufferIndex target) {
+        for (int slot = 0; slot < slots; slot++) {
+            if (!isFree(slot)) {
+                target.insert(hashAt(slot), addressAt(slot));
+            }
+        }
+    }
+
+    private int offsetOf(int slot) {
+        return base + slot * SLOT_SIZE;
+    }
+}
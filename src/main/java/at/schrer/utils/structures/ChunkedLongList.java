@@ -0,0 +1,282 @@
+package at.schrer.utils.structures;
+
+import java.util.*;
+
+/**
+ * A {@link LongList} kept in a chain of long arrays of a fixed capacity, 1024 values by default. Like
+ * {@link ChunkedSomeList} it never copies more than one chunk when values are added, which suits long buffers that
+ * mostly grow at the end.
+ * <p>
+ * Positional access walks the chain chunk by chunk. The list remembers the chunk it accessed last, so reading
+ * neighbouring indexes does not walk from one end every time. A full chunk is split in half when a value is inserted
+ * into it, an empty chunk is unlinked. The list is not thread safe.
+ */
+public class ChunkedLongList extends LongList {
+
+    private static final int DEFAULT_CHUNK_CAPACITY = 1024;
+    private static final int MIN_CHUNK_CAPACITY = 4;
+
+    private final int chunkCapacity;
+
+    private Chunk first;
+    private Chunk last;
+    private int size;
+
+    // The chunk accessed last and the index of its first value, finger is null if unknown
+    private Chunk finger;
+    private int fingerStart;
+
+    public ChunkedLongList() {
+        this(DEFAULT_CHUNK_CAPACITY);
+    }
+
+    /**
+     * @param chunkCapacity the maximum number of values in a chunk, at least 4
+     */
+    public ChunkedLongList(int chunkCapacity) {
+        if (chunkCapacity < MIN_CHUNK_CAPACITY) {
+            throw new IllegalArgumentException("Chunk capacity must be at least " + MIN_CHUNK_CAPACITY);
+        }
+        this.chunkCapacity = chunkCapacity;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long getLong(int index) {
+        Objects.checkIndex(index, size);
+        final Chunk chunk = chunkOf(index);
+        return chunk.values[index - fingerStart];
+    }
+
+    @Override
+    public long setLong(int index, long value) {
+        Objects.checkIndex(index, size);
+        final Chunk chunk = chunkOf(index);
+        final int offset = index - fingerStart;
+        final long oldValue = chunk.values[offset];
+        chunk.values[offset] = value;
+        return oldValue;
+    }
+
+    @Override
+    public boolean addLong(long value) {
+        if (last == null || last.count == chunkCapacity) {
+            linkLast(new Chunk(chunkCapacity));
+        }
+        last.values[last.count++] = value;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void addLong(int index, long value) {
+        Objects.checkIndex(index, size + 1);
+        if (index == size) {
+            addLong(value);
+            return;
+        }
+        Chunk chunk = chunkOf(index);
+        int offset = index - fingerStart;
+        if (chunk.count == chunkCapacity) {
+            final Chunk upper = split(chunk);
+            if (offset > chunk.count) {
+                offset -= chunk.count;
+                chunk = upper;
+            }
+        }
+        System.arraycopy(chunk.values, offset, chunk.values, offset + 1, chunk.count - offset);
+        chunk.values[offset] = value;
+        chunk.count++;
+        size++;
+        modCount++;
+        finger = null;
+    }
+
+    @Override
+    public long removeLong(int index) {
+        Objects.checkIndex(index, size);
+        final Chunk chunk = chunkOf(index);
+        final int offset = index - fingerStart;
+        final long oldValue = chunk.values[offset];
+        System.arraycopy(chunk.values, offset + 1, chunk.values, offset, chunk.count - offset - 1);
+        chunk.count--;
+        size--;
+        modCount++;
+        finger = null;
+
+        if (chunk.count == 0) {
+            unlink(chunk);
+        } else if (chunk.next != null && chunk.count + chunk.next.count <= chunkCapacity / 2) {
+            // Two sparse neighbours are merged, so the chain does not fill up with nearly empty chunks
+            final Chunk next = chunk.next;
+            System.arraycopy(next.values, 0, chunk.values, chunk.count, next.count);
+            chunk.count += next.count;
+            unlink(next);
+        }
+        return oldValue;
+    }
+
+    @Override
+    public void clear() {
+        first = null;
+        last = null;
+        size = 0;
+        finger = null;
+        modCount++;
+    }
+
+    @Override
+    public boolean addAll(long[] values) {
+        int copied = 0;
+        while (copied < values.length) {
+            if (last == null || last.count == chunkCapacity) {
+                linkLast(new Chunk(chunkCapacity));
+            }
+            final int length = Math.min(values.length - copied, chunkCapacity - last.count);
+            System.arraycopy(values, copied, last.values, last.count, length);
+            last.count += length;
+            copied += length;
+        }
+        size += values.length;
+        modCount++;
+        return values.length > 0;
+    }
+
+    @Override
+    public long[] toLongArray() {
+        final long[] array = new long[size];
+        int copied = 0;
+        for (Chunk chunk = first; chunk != null; chunk = chunk.next) {
+            System.arraycopy(chunk.values, 0, array, copied, chunk.count);
+            copied += chunk.count;
+        }
+        return array;
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong longIterator() {
+        return new PrimitiveIterator.OfLong() {
+            private Chunk chunk = first;
+            private int offset = 0;
+            private int remaining = size;
+            private final int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public long nextLong() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (remaining == 0) {
+                    throw new NoSuchElementException();
+                }
+                if (offset == chunk.count) {
+                    chunk = chunk.next;
+                    offset = 0;
+                }
+                remaining--;
+                return chunk.values[offset++];
+            }
+        };
+    }
+
+    /**
+     * @return the number of chunks in the chain
+     */
+    protected int getChunkCount() {
+        int count = 0;
+        for (Chunk chunk = first; chunk != null; chunk = chunk.next) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Walks to the chunk holding an index, starting from the first chunk, the last chunk or the finger, whichever
+     * is closest. The chunk becomes the new finger, the offset of the index in it is index - fingerStart.
+     */
+    private Chunk chunkOf(int index) {
+        if (finger == null || index < fingerStart / 2) {
+            finger = first;
+            fingerStart = 0;
+        } else if (index >= fingerStart && index - fingerStart >= (size - fingerStart) / 2) {
+            finger = last;
+            fingerStart = size - last.count;
+        }
+        while (index < fingerStart) {
+            finger = finger.previous;
+            fingerStart -= finger.count;
+        }
+        while (index >= fingerStart + finger.count) {
+            fingerStart += finger.count;
+            finger = finger.next;
+        }
+        return finger;
+    }
+
+    /**
+     * Moves the upper half of a chunk into a new chunk, which is linked behind it.
+     *
+     * @return the new chunk
+     */
+    private Chunk split(Chunk chunk) {
+        final Chunk upper = new Chunk(chunkCapacity);
+        final int lowerCount = chunk.count / 2;
+        upper.count = chunk.count - lowerCount;
+        System.arraycopy(chunk.values, lowerCount, upper.values, 0, upper.count);
+        chunk.count = lowerCount;
+
+        upper.previous = chunk;
+        upper.next = chunk.next;
+        if (chunk.next == null) {
+            last = upper;
+        } else {
+            chunk.next.previous = upper;
+        }
+        chunk.next = upper;
+        return upper;
+    }
+
+    private void linkLast(Chunk chunk) {
+        chunk.previous = last;
+        if (last == null) {
+            first = chunk;
+        } else {
+            last.next = chunk;
+        }
+        last = chunk;
+    }
+
+    private void unlink(Chunk chunk) {
+        if (chunk.previous == null) {
+            first = chunk.next;
+        } else {
+            chunk.previous.next = chunk.next;
+        }
+        if (chunk.next == null) {
+            last = chunk.previous;
+        } else {
+            chunk.next.previous = chunk.previous;
+        }
+    }
+
+    private static final class Chunk {
+        private final long[] values;
+        private int count;
+        private Chunk previous;
+        private Chunk next;
+
+        private Chunk(int capacity) {
+            this.values = new long[capacity];
+        }
+    }
+}
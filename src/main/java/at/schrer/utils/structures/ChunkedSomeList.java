@@ -0,0 +1,410 @@
+package at.schrer.utils.structures;
+
+import java.util.*;
+
+/**
+ * An unrolled linked list. Like {@link SomeList} it is a chain of nodes, but every node holds a small array of up to
+ * 64 elements instead of a single one. This cuts the memory spent on node headers and links, and iterating mostly
+ * reads consecutive array slots instead of following a pointer per element.
+ * <p>
+ * Adding and removing through the {@link ListIterator} only shifts elements inside one chunk. A full chunk is split in
+ * half, a chunk that falls below half full is merged with a neighbour if both fit into a single chunk.
+ * Positional access walks the chain chunk by chunk, from whichever end is closer.
+ * <p>
+ * Iterators are fail-fast. The list is not thread safe.
+ *
+ * @param <T> type of the elements
+ */
+public class ChunkedSomeList<T> extends AbstractList<T> {
+
+    private static final int DEFAULT_CHUNK_CAPACITY = 64;
+    private static final int MIN_CHUNK_CAPACITY = 4;
+
+    private final int chunkCapacity;
+
+    private Chunk<T> first;
+    private Chunk<T> last;
+    private int size;
+
+    public ChunkedSomeList() {
+        this(DEFAULT_CHUNK_CAPACITY);
+    }
+
+    /**
+     * @param chunkCapacity the maximum number of elements in a chunk, at least 4
+     */
+    public ChunkedSomeList(int chunkCapacity) {
+        if (chunkCapacity < MIN_CHUNK_CAPACITY) {
+            throw new IllegalArgumentException("Chunk capacity must be at least " + MIN_CHUNK_CAPACITY);
+        }
+        this.chunkCapacity = chunkCapacity;
+    }
+
+    public ChunkedSomeList(Collection<? extends T> c) {
+        this();
+        addAll(c);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean add(T t) {
+        if (last == null || last.count == chunkCapacity) {
+            linkLast(new Chunk<>(chunkCapacity));
+        }
+        last.elements[last.count++] = t;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public T get(int index) {
+        Objects.checkIndex(index, size);
+        final Position<T> position = position(index);
+        return position.chunk.get(position.offset);
+    }
+
+    @Override
+    public T set(int index, T element) {
+        Objects.checkIndex(index, size);
+        final Position<T> position = position(index);
+        final T oldValue = position.chunk.get(position.offset);
+        position.chunk.elements[position.offset] = element;
+        return oldValue;
+    }
+
+    @Override
+    public void add(int index, T element) {
+        Objects.checkIndex(index, size + 1);
+        if (index == size) {
+            add(element);
+            return;
+        }
+        final Position<T> position = position(index);
+        insert(position.chunk, position.offset, element);
+    }
+
+    @Override
+    public T remove(int index) {
+        Objects.checkIndex(index, size);
+        final Position<T> position = position(index);
+        final T oldValue = position.chunk.get(position.offset);
+        removeAt(position.chunk, position.offset);
+        return oldValue;
+    }
+
+    @Override
+    public void clear() {
+        first = null;
+        last = null;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return listIterator();
+    }
+
+    @Override
+    public ListIterator<T> listIterator() {
+        return listIterator(0);
+    }
+
+    @Override
+    public ListIterator<T> listIterator(int index) {
+        Objects.checkIndex(index, size + 1);
+        return new ChunkIterator(index);
+    }
+
+    /**
+     * @return the number of chunks in the chain
+     */
+    protected int getChunkCount() {
+        int count = 0;
+        for (Chunk<T> chunk = first; chunk != null; chunk = chunk.next) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Finds the chunk and offset of an index. An index equal to the size is placed behind the last element.
+     *
+     * @param index an index between 0 and the size of the list
+     * @return the position of the index
+     */
+    private Position<T> position(int index) {
+        if (index == size) {
+            return last == null ? new Position<>(null, 0) : new Position<>(last, last.count);
+        }
+        if (index < size / 2) {
+            Chunk<T> chunk = first;
+            int offset = index;
+            while (offset >= chunk.count) {
+                offset -= chunk.count;
+                chunk = chunk.next;
+            }
+            return new Position<>(chunk, offset);
+        }
+        Chunk<T> chunk = last;
+        int fromEnd = size - index;
+        while (fromEnd > chunk.count) {
+            fromEnd -= chunk.count;
+            chunk = chunk.previous;
+        }
+        return new Position<>(chunk, chunk.count - fromEnd);
+    }
+
+    /**
+     * Inserts an element in front of the element at the offset, splitting the chunk if it is full.
+     *
+     * @param chunk the chunk to insert into, or null if the list is empty
+     * @param offset the offset in the chunk, may be equal to its count
+     * @return the position of the inserted element
+     */
+    private Position<T> insert(Chunk<T> chunk, int offset, T element) {
+        if (chunk == null) {
+            chunk = new Chunk<>(chunkCapacity);
+            linkLast(chunk);
+        } else if (chunk.count == chunkCapacity) {
+            final Chunk<T> upper = split(chunk);
+            if (offset > chunk.count) {
+                offset -= chunk.count;
+                chunk = upper;
+            }
+        }
+        System.arraycopy(chunk.elements, offset, chunk.elements, offset + 1, chunk.count - offset);
+        chunk.elements[offset] = element;
+        chunk.count++;
+        size++;
+        modCount++;
+        return new Position<>(chunk, offset);
+    }
+
+    /**
+     * Moves the upper half of a chunk into a new chunk, which is linked behind it.
+     *
+     * @return the new chunk
+     */
+    private Chunk<T> split(Chunk<T> chunk) {
+        final Chunk<T> upper = new Chunk<>(chunkCapacity);
+        final int lowerCount = chunk.count / 2;
+        upper.count = chunk.count - lowerCount;
+        System.arraycopy(chunk.elements, lowerCount, upper.elements, 0, upper.count);
+        Arrays.fill(chunk.elements, lowerCount, chunk.count, null);
+        chunk.count = lowerCount;
+
+        upper.previous = chunk;
+        upper.next = chunk.next;
+        if (chunk.next == null) {
+            last = upper;
+        } else {
+            chunk.next.previous = upper;
+        }
+        chunk.next = upper;
+        return upper;
+    }
+
+    /**
+     * Removes the element at the offset. An empty chunk is unlinked. A chunk that is less than half full is merged
+     * into the previous chunk, or takes in the elements of the following chunk, if they fit.
+     *
+     * @return the position of the element that followed the removed one
+     */
+    private Position<T> removeAt(Chunk<T> chunk, int offset) {
+        final int moved = chunk.count - offset - 1;
+        System.arraycopy(chunk.elements, offset + 1, chunk.elements, offset, moved);
+        chunk.elements[--chunk.count] = null;
+        size--;
+        modCount++;
+
+        if (chunk.count == 0) {
+            unlink(chunk);
+            if (chunk.next != null) {
+                return new Position<>(chunk.next, 0);
+            }
+            return last == null ? new Position<>(null, 0) : new Position<>(last, last.count);
+        }
+        if (chunk.count >= chunkCapacity / 2) {
+            return new Position<>(chunk, offset);
+        }
+        final Chunk<T> previous = chunk.previous;
+        if (previous != null && previous.count + chunk.count <= chunkCapacity) {
+            final int previousCount = previous.count;
+            System.arraycopy(chunk.elements, 0, previous.elements, previousCount, chunk.count);
+            previous.count += chunk.count;
+            unlink(chunk);
+            return new Position<>(previous, previousCount + offset);
+        }
+        final Chunk<T> next = chunk.next;
+        if (next != null && chunk.count + next.count <= chunkCapacity) {
+            System.arraycopy(next.elements, 0, chunk.elements, chunk.count, next.count);
+            chunk.count += next.count;
+            unlink(next);
+        }
+        return new Position<>(chunk, offset);
+    }
+
+    private void linkLast(Chunk<T> chunk) {
+        chunk.previous = last;
+        if (last == null) {
+            first = chunk;
+        } else {
+            last.next = chunk;
+        }
+        last = chunk;
+    }
+
+    private void unlink(Chunk<T> chunk) {
+        if (chunk.previous == null) {
+            first = chunk.next;
+        } else {
+            chunk.previous.next = chunk.next;
+        }
+        if (chunk.next == null) {
+            last = chunk.previous;
+        } else {
+            chunk.next.previous = chunk.previous;
+        }
+    }
+
+    private static final class Chunk<T> {
+        private final Object[] elements;
+        private int count;
+        private Chunk<T> previous;
+        private Chunk<T> next;
+
+        private Chunk(int capacity) {
+            this.elements = new Object[capacity];
+        }
+
+        @SuppressWarnings("unchecked")
+        private T get(int offset) {
+            return (T) elements[offset];
+        }
+    }
+
+    private record Position<T>(Chunk<T> chunk, int offset) {
+    }
+
+    /**
+     * A cursor between two elements, given by a chunk and an offset. An offset equal to the count of the chunk stands
+     * for the gap before the first element of the next chunk.
+     */
+    private final class ChunkIterator implements ListIterator<T> {
+        private Chunk<T> chunk;
+        private int offset;
+        private int nextIndex;
+        private Chunk<T> lastChunk;
+        private int lastOffset;
+        private int expectedModCount = modCount;
+
+        private ChunkIterator(int index) {
+            final Position<T> position = position(index);
+            this.chunk = position.chunk;
+            this.offset = position.offset;
+            this.nextIndex = index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextIndex < size;
+        }
+
+        @Override
+        public T next() {
+            checkForComodification();
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (offset == chunk.count) {
+                chunk = chunk.next;
+                offset = 0;
+            }
+            lastChunk = chunk;
+            lastOffset = offset++;
+            nextIndex++;
+            return chunk.get(lastOffset);
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return nextIndex > 0;
+        }
+
+        @Override
+        public T previous() {
+            checkForComodification();
+            if (!hasPrevious()) {
+                throw new NoSuchElementException();
+            }
+            if (offset == 0) {
+                chunk = chunk.previous;
+                offset = chunk.count;
+            }
+            lastChunk = chunk;
+            lastOffset = --offset;
+            nextIndex--;
+            return chunk.get(lastOffset);
+        }
+
+        @Override
+        public int nextIndex() {
+            return nextIndex;
+        }
+
+        @Override
+        public int previousIndex() {
+            return nextIndex - 1;
+        }
+
+        @Override
+        public void remove() {
+            if (lastChunk == null) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            // After next() the cursor is behind the returned element, after previous() it is in front of it
+            final boolean forward = lastOffset < offset;
+            final Position<T> following = removeAt(lastChunk, lastOffset);
+            if (forward) {
+                nextIndex--;
+            }
+            chunk = following.chunk;
+            offset = following.offset;
+            lastChunk = null;
+            expectedModCount = modCount;
+        }
+
+        @Override
+        public void set(T t) {
+            if (lastChunk == null) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            lastChunk.elements[lastOffset] = t;
+        }
+
+        @Override
+        public void add(T t) {
+            checkForComodification();
+            final Position<T> inserted = insert(chunk, offset, t);
+            chunk = inserted.chunk;
+            offset = inserted.offset + 1;
+            nextIndex++;
+            lastChunk = null;
+            expectedModCount = modCount;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+}
@@ -0,0 +1,514 @@
+package at.schrer.utils.structures;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A lock free, unbounded deque of doubly linked nodes, following the CAS based deque by Maged M. Michael.
+ * <p>
+ * Both ends are held by a single immutable anchor, which is replaced with one compare and set. Adding or removing at
+ * either end takes a single successful compare and set on the anchor, so no thread ever waits for a lock. Adding
+ * leaves the anchor in an unstable state for a moment, until the link from the old end node to the new one is set.
+ * Any thread that finds the deque in that state completes the link first.
+ * <p>
+ * Elements in the middle are removed logically: {@link #removeFirstOccurrence}, {@link #removeLastOccurrence} and
+ * iterators clear the element of the node, the node itself is dropped when it reaches an end and is polled.
+ * Every element is claimed by exactly one remove or poll.
+ * <p>
+ * Iterators are weakly consistent. They never throw a {@link ConcurrentModificationException} and may or may not show
+ * changes made after they were created. {@link #size()} counts the elements and is not constant time.
+ * <p>
+ * Null elements are not permitted.
+ *
+ * @param <T> type of the elements
+ */
+public class ConcurrentSomeDeque<T> extends AbstractCollection<T> implements Deque<T> {
+
+    private static final int STABLE = 0;
+    private static final int RIGHT_PUSH = 1;
+    private static final int LEFT_PUSH = 2;
+
+    private static final VarHandle ITEM;
+    private static final VarHandle LEFT;
+    private static final VarHandle RIGHT;
+
+    static {
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            ITEM = lookup.findVarHandle(Node.class, "item", Object.class);
+            LEFT = lookup.findVarHandle(Node.class, "left", Node.class);
+            RIGHT = lookup.findVarHandle(Node.class, "right", Node.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final AtomicReference<Anchor<T>> anchor = new AtomicReference<>(new Anchor<>(null, null, STABLE));
+
+    public ConcurrentSomeDeque() {
+    }
+
+    public ConcurrentSomeDeque(Collection<? extends T> c) {
+        addAll(c);
+    }
+
+    // Adding
+
+    @Override
+    public void addFirst(T t) {
+        offerFirst(t);
+    }
+
+    @Override
+    public void addLast(T t) {
+        offerLast(t);
+    }
+
+    @Override
+    public boolean offerFirst(T t) {
+        pushLeft(new Node<>(Objects.requireNonNull(t)));
+        return true;
+    }
+
+    @Override
+    public boolean offerLast(T t) {
+        pushRight(new Node<>(Objects.requireNonNull(t)));
+        return true;
+    }
+
+    @Override
+    public boolean add(T t) {
+        return offerLast(t);
+    }
+
+    @Override
+    public boolean offer(T t) {
+        return offerLast(t);
+    }
+
+    @Override
+    public void push(T t) {
+        addFirst(t);
+    }
+
+    // Removing
+
+    @Override
+    public T pollFirst() {
+        while (true) {
+            final Node<T> node = popLeft();
+            if (node == null) {
+                return null;
+            }
+            final T item = claim(node);
+            if (item != null) {
+                return item;
+            }
+        }
+    }
+
+    @Override
+    public T pollLast() {
+        while (true) {
+            final Node<T> node = popRight();
+            if (node == null) {
+                return null;
+            }
+            final T item = claim(node);
+            if (item != null) {
+                return item;
+            }
+        }
+    }
+
+    @Override
+    public T removeFirst() {
+        final T item = pollFirst();
+        if (item == null) {
+            throw new NoSuchElementException();
+        }
+        return item;
+    }
+
+    @Override
+    public T removeLast() {
+        final T item = pollLast();
+        if (item == null) {
+            throw new NoSuchElementException();
+        }
+        return item;
+    }
+
+    @Override
+    public T poll() {
+        return pollFirst();
+    }
+
+    @Override
+    public T remove() {
+        return removeFirst();
+    }
+
+    @Override
+    public T pop() {
+        return removeFirst();
+    }
+
+    @Override
+    public boolean removeFirstOccurrence(Object o) {
+        return removeOccurrence(o, false);
+    }
+
+    @Override
+    public boolean removeLastOccurrence(Object o) {
+        return removeOccurrence(o, true);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return removeFirstOccurrence(o);
+    }
+
+    @Override
+    public void clear() {
+        while (pollFirst() != null) {
+            // Polling until empty
+        }
+    }
+
+    // Reading
+
+    @Override
+    public T peekFirst() {
+        final Iterator<T> iterator = iterator();
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    @Override
+    public T peekLast() {
+        final Iterator<T> iterator = descendingIterator();
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    @Override
+    public T getFirst() {
+        final T item = peekFirst();
+        if (item == null) {
+            throw new NoSuchElementException();
+        }
+        return item;
+    }
+
+    @Override
+    public T getLast() {
+        final T item = peekLast();
+        if (item == null) {
+            throw new NoSuchElementException();
+        }
+        return item;
+    }
+
+    @Override
+    public T peek() {
+        return peekFirst();
+    }
+
+    @Override
+    public T element() {
+        return getFirst();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return peekFirst() == null;
+    }
+
+    /**
+     * Counts the elements by iterating the deque. Under concurrent changes the result may be outdated right away.
+     */
+    @Override
+    public int size() {
+        int count = 0;
+        for (Iterator<T> iterator = iterator(); iterator.hasNext(); iterator.next()) {
+            if (++count == Integer.MAX_VALUE) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (o == null) {
+            return false;
+        }
+        for (T item : this) {
+            if (o.equals(item)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new NodeIterator(false);
+    }
+
+    @Override
+    public Iterator<T> descendingIterator() {
+        return new NodeIterator(true);
+    }
+
+    // The algorithm, left is the first and right the last end of the deque
+
+    private void pushRight(Node<T> node) {
+        while (true) {
+            final Anchor<T> current = anchor.get();
+            if (current.right == null) {
+                if (anchor.compareAndSet(current, new Anchor<>(node, node, STABLE))) {
+                    return;
+                }
+            } else if (current.status == STABLE) {
+                node.left = current.right;
+                final Anchor<T> pushed = new Anchor<>(current.left, node, RIGHT_PUSH);
+                if (anchor.compareAndSet(current, pushed)) {
+                    stabilizeRight(pushed);
+                    return;
+                }
+            } else {
+                stabilize(current);
+            }
+        }
+    }
+
+    private void pushLeft(Node<T> node) {
+        while (true) {
+            final Anchor<T> current = anchor.get();
+            if (current.left == null) {
+                if (anchor.compareAndSet(current, new Anchor<>(node, node, STABLE))) {
+                    return;
+                }
+            } else if (current.status == STABLE) {
+                node.right = current.left;
+                final Anchor<T> pushed = new Anchor<>(node, current.right, LEFT_PUSH);
+                if (anchor.compareAndSet(current, pushed)) {
+                    stabilizeLeft(pushed);
+                    return;
+                }
+            } else {
+                stabilize(current);
+            }
+        }
+    }
+
+    /**
+     * @return the node removed from the right end, or null if the deque is empty
+     */
+    private Node<T> popRight() {
+        while (true) {
+            final Anchor<T> current = anchor.get();
+            if (current.right == null) {
+                return null;
+            }
+            if (current.right == current.left) {
+                if (anchor.compareAndSet(current, new Anchor<>(null, null, STABLE))) {
+                    return current.right;
+                }
+            } else if (current.status == STABLE) {
+                if (anchor.compareAndSet(current, new Anchor<>(current.left, current.right.left, STABLE))) {
+                    return current.right;
+                }
+            } else {
+                stabilize(current);
+            }
+        }
+    }
+
+    /**
+     * @return the node removed from the left end, or null if the deque is empty
+     */
+    private Node<T> popLeft() {
+        while (true) {
+            final Anchor<T> current = anchor.get();
+            if (current.left == null) {
+                return null;
+            }
+            if (current.right == current.left) {
+                if (anchor.compareAndSet(current, new Anchor<>(null, null, STABLE))) {
+                    return current.left;
+                }
+            } else if (current.status == STABLE) {
+                if (anchor.compareAndSet(current, new Anchor<>(current.left.right, current.right, STABLE))) {
+                    return current.left;
+                }
+            } else {
+                stabilize(current);
+            }
+        }
+    }
+
+    private void stabilize(Anchor<T> current) {
+        if (current.status == RIGHT_PUSH) {
+            stabilizeRight(current);
+        } else {
+            stabilizeLeft(current);
+        }
+    }
+
+    /**
+     * Links the node before a newly pushed right end to it and marks the anchor as stable again.
+     */
+    private void stabilizeRight(Anchor<T> current) {
+        final Node<T> previous = current.right.left;
+        if (anchor.get() != current) {
+            return;
+        }
+        final Node<T> previousNext = previous.right;
+        if (previousNext != current.right) {
+            if (anchor.get() != current || !RIGHT.compareAndSet(previous, previousNext, current.right)) {
+                return;
+            }
+        }
+        anchor.compareAndSet(current, new Anchor<>(current.left, current.right, STABLE));
+    }
+
+    /**
+     * Links the node after a newly pushed left end to it and marks the anchor as stable again.
+     */
+    private void stabilizeLeft(Anchor<T> current) {
+        final Node<T> next = current.left.right;
+        if (anchor.get() != current) {
+            return;
+        }
+        final Node<T> nextPrevious = next.left;
+        if (nextPrevious != current.left) {
+            if (anchor.get() != current || !LEFT.compareAndSet(next, nextPrevious, current.left)) {
+                return;
+            }
+        }
+        anchor.compareAndSet(current, new Anchor<>(current.left, current.right, STABLE));
+    }
+
+    private Anchor<T> stableAnchor() {
+        while (true) {
+            final Anchor<T> current = anchor.get();
+            if (current.status == STABLE) {
+                return current;
+            }
+            stabilize(current);
+        }
+    }
+
+    /**
+     * Takes the element out of a node, unless another thread was faster.
+     *
+     * @return the element, or null if it was claimed already
+     */
+    private T claim(Node<T> node) {
+        while (true) {
+            final T item = node.item;
+            if (item == null) {
+                return null;
+            }
+            if (ITEM.compareAndSet(node, item, null)) {
+                return item;
+            }
+        }
+    }
+
+    private boolean removeOccurrence(Object o, boolean fromLast) {
+        Objects.requireNonNull(o);
+        final NodeIterator iterator = new NodeIterator(fromLast);
+        while (iterator.hasNext()) {
+            if (o.equals(iterator.next()) && iterator.claimLastReturned()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private record Anchor<T>(Node<T> left, Node<T> right, int status) {
+    }
+
+    private static final class Node<T> {
+        volatile T item;
+        volatile Node<T> left;
+        volatile Node<T> right;
+
+        Node(T item) {
+            this.item = item;
+        }
+    }
+
+    /**
+     * Walks the nodes between the two ends of a stable anchor and skips nodes whose element was claimed.
+     */
+    private final class NodeIterator implements Iterator<T> {
+        private final boolean descending;
+        private final Node<T> end;
+        private Node<T> next;
+        private T nextItem;
+        private Node<T> lastReturned;
+        private T lastReturnedItem;
+
+        NodeIterator(boolean descending) {
+            this.descending = descending;
+            final Anchor<T> snapshot = stableAnchor();
+            this.end = descending ? snapshot.left : snapshot.right;
+            advanceFrom(descending ? snapshot.right : snapshot.left);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next;
+            lastReturnedItem = nextItem;
+            advanceFrom(next == end ? null : step(next));
+            return lastReturnedItem;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            claimLastReturned();
+            lastReturned = null;
+        }
+
+        /**
+         * @return true if the element last returned was still in the deque and is removed now
+         */
+        boolean claimLastReturned() {
+            return ITEM.compareAndSet(lastReturned, lastReturnedItem, null);
+        }
+
+        private void advanceFrom(Node<T> node) {
+            while (node != null) {
+                final T item = node.item;
+                if (item != null) {
+                    next = node;
+                    nextItem = item;
+                    return;
+                }
+                node = node == end ? null : step(node);
+            }
+            next = null;
+            nextItem = null;
+        }
+
+        private Node<T> step(Node<T> node) {
+            return descending ? node.left : node.right;
+        }
+    }
+}
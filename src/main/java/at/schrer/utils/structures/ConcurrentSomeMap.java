@@ -0,0 +1,480 @@
+package at.schrer.utils.structures;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A thread safe map, that splits its keys over a number of {@link SomeMap} stripes.
+ * Every stripe is guarded by its own {@link StampedLock}, so writers only block each other when their keys fall into
+ * the same stripe.
+ * <p>
+ * Reads are lock free as long as no writer is active on the stripe: they use an optimistic read of the stripe and only
+ * fall back to the read lock, if a write happened while reading.
+ * {@link #putIfAbsent}, {@link #computeIfAbsent}, {@link #compute}, {@link #merge} and the other conditional
+ * operations are atomic. Functions passed to them are called while the stripe is locked and must not modify this map.
+ * <p>
+ * The views and their iterators are weakly consistent. An iterator copies one stripe at a time, it never throws a
+ * {@link ConcurrentModificationException} and may or may not show changes made after it was created.
+ * <p>
+ * Neither null keys nor null values are permitted.
+ *
+ * @param <K> type of the key
+ * @param <V> type of the value
+ */
+public class ConcurrentSomeMap<K extends Comparable<K>, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+
+    private static final int DEFAULT_INIT_SIZE = 30;
+    private static final int MAX_STRIPES = 1 << 16;
+
+    private final Stripe<K, V>[] stripes;
+    private final int stripeShift;
+
+    private KeySet keySet;
+    private Values values;
+    private EntrySet entrySet;
+
+    public ConcurrentSomeMap() {
+        this(DEFAULT_INIT_SIZE);
+    }
+
+    public ConcurrentSomeMap(int initialSize) {
+        this(initialSize, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param initialSize the number of entries the map should be able to hold without growing
+     * @param concurrencyLevel the expected number of concurrently writing threads, it is rounded up to a power of two
+     *                         and used as the number of stripes
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentSomeMap(int initialSize, int concurrencyLevel) {
+        if (initialSize < 1) {
+            initialSize = DEFAULT_INIT_SIZE;
+        }
+        final int stripeCount = concurrencyLevel <= 1
+                ? 1
+                : Math.min(MAX_STRIPES, Integer.highestOneBit(concurrencyLevel - 1) << 1);
+
+        this.stripes = (Stripe<K, V>[]) new Stripe<?, ?>[stripeCount];
+        // The low bits of the hash pick the slot inside a stripe, so the stripe is picked by the high bits
+        this.stripeShift = 32 - Integer.numberOfTrailingZeros(stripeCount);
+        final int stripeInitSize = Math.max(1, initialSize / stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe<>(stripeInitSize);
+        }
+    }
+
+    @Override
+    public int size() {
+        long size = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            size += read(stripe, SomeMap::size);
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Stripe<K, V> stripe : stripes) {
+            if (!read(stripe, SomeMap::isEmpty)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        Objects.requireNonNull(value);
+        for (Stripe<K, V> stripe : stripes) {
+            if (read(stripe, map -> map.containsValue(value))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public V get(Object key) {
+        Objects.requireNonNull(key);
+        final Stripe<K, V> stripe = stripeFor(key);
+        final StampedLock lock = stripe.lock;
+
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                final V value = stripe.map.get(key);
+                if (lock.validate(stamp)) {
+                    return value;
+                }
+            } catch (RuntimeException inconsistentRead) {
+                // A writer changed the stripe while reading it, read it again under the lock
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            return stripe.map.get(key);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        final V value = get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        Objects.requireNonNull(value);
+        return write(key, map -> map.put(key, value));
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        Objects.requireNonNull(value);
+        return write(key, map -> map.putIfAbsent(key, value));
+    }
+
+    @Override
+    public V remove(Object key) {
+        return write(key, map -> map.remove(key));
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (value == null) {
+            return false;
+        }
+        return write(key, map -> {
+            if (value.equals(map.get(key))) {
+                map.remove(key);
+                return true;
+            }
+            return false;
+        });
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        Objects.requireNonNull(oldValue);
+        Objects.requireNonNull(newValue);
+        return write(key, map -> {
+            if (oldValue.equals(map.get(key))) {
+                map.put(key, newValue);
+                return true;
+            }
+            return false;
+        });
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        Objects.requireNonNull(value);
+        return write(key, map -> map.containsKey(key) ? map.put(key, value) : null);
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        final V present = get(key);
+        if (present != null) {
+            return present;
+        }
+        return write(key, map -> map.computeIfAbsent(key, mappingFunction));
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        return write(key, map -> map.computeIfPresent(key, remappingFunction));
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        return write(key, map -> map.compute(key, remappingFunction));
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(value);
+        Objects.requireNonNull(remappingFunction);
+        return write(key, map -> map.merge(key, value, remappingFunction));
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        for (Map.Entry<? extends K, ? extends V> entry : m.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Stripe<K, V> stripe : stripes) {
+            final long stamp = stripe.lock.writeLock();
+            try {
+                stripe.map.clear();
+            } finally {
+                stripe.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        for (Stripe<K, V> stripe : stripes) {
+            for (Map.Entry<K, V> entry : snapshot(stripe)) {
+                action.accept(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        Objects.requireNonNull(function);
+        for (Stripe<K, V> stripe : stripes) {
+            final long stamp = stripe.lock.writeLock();
+            try {
+                stripe.map.replaceAll((key, value) -> Objects.requireNonNull(function.apply(key, value)));
+            } finally {
+                stripe.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    @Override
+    public Set<K> keySet() {
+        if (keySet == null) {
+            keySet = new KeySet();
+        }
+        return keySet;
+    }
+
+    @Override
+    public Collection<V> values() {
+        if (values == null) {
+            values = new Values();
+        }
+        return values;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    protected int getStripeCount() {
+        return stripes.length;
+    }
+
+    private Stripe<K, V> stripeFor(Object key) {
+        return stripes[stripeShift == 32 ? 0 : Hashing.hash(key) >>> stripeShift];
+    }
+
+    private <R> R read(Stripe<K, V> stripe, Function<SomeMap<K, V>, R> reader) {
+        final long stamp = stripe.lock.readLock();
+        try {
+            return reader.apply(stripe.map);
+        } finally {
+            stripe.lock.unlockRead(stamp);
+        }
+    }
+
+    private <R> R write(Object key, Function<SomeMap<K, V>, R> writer) {
+        Objects.requireNonNull(key);
+        final Stripe<K, V> stripe = stripeFor(key);
+        final long stamp = stripe.lock.writeLock();
+        try {
+            return writer.apply(stripe.map);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Copies the entries of one stripe, the returned entries write through to this map.
+     */
+    private List<Map.Entry<K, V>> snapshot(Stripe<K, V> stripe) {
+        return read(stripe, map -> {
+            final List<Map.Entry<K, V>> entries = new ArrayList<>(map.size());
+            for (Map.Entry<K, V> entry : map.entrySet()) {
+                entries.add(new WriteThroughEntry(entry.getKey(), entry.getValue()));
+            }
+            return entries;
+        });
+    }
+
+    private static final class Stripe<K extends Comparable<K>, V> {
+        private final StampedLock lock = new StampedLock();
+        private final SomeMap<K, V> map;
+
+        private Stripe(int initSize) {
+            this.map = new SomeMap<>(initSize);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private final class WriteThroughEntry extends SimpleEntry<K, V> {
+        private WriteThroughEntry(K key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+            Objects.requireNonNull(value);
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+
+    /**
+     * Weakly consistent iterator over all stripes, it copies the next stripe once the current one is exhausted.
+     */
+    private abstract class StripeIterator<T> implements Iterator<T> {
+        private int nextStripe = 0;
+        private Iterator<Map.Entry<K, V>> current = Collections.emptyIterator();
+        private Map.Entry<K, V> lastReturned;
+
+        abstract T element(Map.Entry<K, V> entry);
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && nextStripe < stripes.length) {
+                current = snapshot(stripes[nextStripe++]).iterator();
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = current.next();
+            return element(lastReturned);
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            ConcurrentSomeMap.this.remove(lastReturned.getKey());
+            lastReturned = null;
+        }
+    }
+
+    private final class KeySet extends AbstractSet<K> {
+        @Override
+        public Iterator<K> iterator() {
+            return new StripeIterator<>() {
+                @Override
+                K element(Map.Entry<K, V> entry) {
+                    return entry.getKey();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return ConcurrentSomeMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return ConcurrentSomeMap.this.remove(o) != null;
+        }
+
+        @Override
+        public void clear() {
+            ConcurrentSomeMap.this.clear();
+        }
+    }
+
+    private final class Values extends AbstractCollection<V> {
+        @Override
+        public Iterator<V> iterator() {
+            return new StripeIterator<>() {
+                @Override
+                V element(Map.Entry<K, V> entry) {
+                    return entry.getValue();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return ConcurrentSomeMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return containsValue(o);
+        }
+
+        @Override
+        public void clear() {
+            ConcurrentSomeMap.this.clear();
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new StripeIterator<>() {
+                @Override
+                Map.Entry<K, V> element(Map.Entry<K, V> entry) {
+                    return entry;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return ConcurrentSomeMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry<?, ?> entry) || entry.getKey() == null || entry.getValue() == null) {
+                return false;
+            }
+            return entry.getValue().equals(get(entry.getKey()));
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry<?, ?> entry) || entry.getKey() == null) {
+                return false;
+            }
+            return ConcurrentSomeMap.this.remove(entry.getKey(), entry.getValue());
+        }
+
+        @Override
+        public void clear() {
+            ConcurrentSomeMap.this.clear();
+        }
+    }
+}
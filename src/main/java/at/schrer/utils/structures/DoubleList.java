@@ -0,0 +1,145 @@
+package at.schrer.utils.structures;
+
+import java.util.*;
+import java.util.function.DoubleConsumer;
+import java.util.stream.DoubleStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A list of primitive double values. Next to the methods of {@link List}, which box every value, it has methods like
+ * {@link #addDouble(double)} and {@link #getDouble(int)}, a primitive iterator and a {@link DoubleStream} view, which never box.
+ * <p>
+ * {@link ArrayDoubleList} keeps the values in a single array that grows when needed. {@link ChunkedDoubleList} keeps them in a
+ * chain of fixed size arrays, so it never copies all values when it grows.
+ * <p>
+ * Null elements are not permitted.
+ */
+public abstract class DoubleList extends AbstractList<Double> {
+
+    public abstract double getDouble(int index);
+
+    /**
+     * @return the value previously at the index
+     */
+    public abstract double setDouble(int index, double value);
+
+    public abstract void addDouble(int index, double value);
+
+    /**
+     * @return the value removed from the index
+     */
+    public abstract double removeDouble(int index);
+
+    public boolean addDouble(double value) {
+        addDouble(size(), value);
+        return true;
+    }
+
+    public boolean addAll(double[] values) {
+        for (double value : values) {
+            addDouble(value);
+        }
+        return values.length > 0;
+    }
+
+    public int indexOfDouble(double value) {
+        final PrimitiveIterator.OfDouble iterator = doubleIterator();
+        for (int index = 0; iterator.hasNext(); index++) {
+            if (Double.compare(iterator.nextDouble(), value) == 0) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    public boolean containsDouble(double value) {
+        return indexOfDouble(value) >= 0;
+    }
+
+    public void forEachDouble(DoubleConsumer action) {
+        Objects.requireNonNull(action);
+        doubleIterator().forEachRemaining(action);
+    }
+
+    public double[] toDoubleArray() {
+        final double[] array = new double[size()];
+        final PrimitiveIterator.OfDouble iterator = doubleIterator();
+        for (int i = 0; i < array.length; i++) {
+            array[i] = iterator.nextDouble();
+        }
+        return array;
+    }
+
+    /**
+     * Returns a fail-fast iterator, which reads the values without boxing them.
+     */
+    public PrimitiveIterator.OfDouble doubleIterator() {
+        return new PrimitiveIterator.OfDouble() {
+            private int index = 0;
+            private final int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return index < size();
+            }
+
+            @Override
+            public double nextDouble() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return getDouble(index++);
+            }
+        };
+    }
+
+    /**
+     * Returns a sequential stream of the values, which are read without boxing them.
+     */
+    public DoubleStream doubleStream() {
+        return StreamSupport.doubleStream(Spliterators.spliterator(doubleIterator(), size(), Spliterator.ORDERED), false);
+    }
+
+    @Override
+    public Double get(int index) {
+        return getDouble(index);
+    }
+
+    @Override
+    public Double set(int index, Double element) {
+        return setDouble(index, element);
+    }
+
+    @Override
+    public void add(int index, Double element) {
+        addDouble(index, element);
+    }
+
+    @Override
+    public Double remove(int index) {
+        return removeDouble(index);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Double value && containsDouble(value);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        return o instanceof Double value ? indexOfDouble(value) : -1;
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = 1;
+        final PrimitiveIterator.OfDouble iterator = doubleIterator();
+        while (iterator.hasNext()) {
+            hashCode = 31 * hashCode + Double.hashCode(iterator.nextDouble());
+        }
+        return hashCode;
+    }
+}
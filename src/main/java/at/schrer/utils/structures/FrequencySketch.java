@@ -0,0 +1,98 @@
+package at.schrer.utils.structures;
+
+/**
+ * A count-min sketch, that estimates how often keys were accessed recently.
+ * Every key is counted in four 4-bit counters, the estimate is the smallest of them. Each counter is in a long picked
+ * by a differently seeded hash, so an update may touch four cache lines. The key's hash picks which group of four of
+ * the sixteen counters in a long it uses, so keys sharing a long mostly use different counters.
+ * <p>
+ * To let old popularity fade, all counters are halved once the number of increments reaches ten times the maximum
+ * size of the cache using the sketch.
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+    private static final int MAX_COUNT = 15;
+    private static final int MAX_TABLE_SIZE = 1 << 20;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param maximumSize the maximum number of entries of the cache using the sketch
+     */
+    FrequencySketch(long maximumSize) {
+        final int size = (int) Math.min(Math.max(maximumSize, 16), MAX_TABLE_SIZE);
+        final int tableSize = Integer.highestOneBit(size - 1) << 1;
+        this.table = new long[tableSize];
+        this.tableMask = tableSize - 1;
+        this.sampleSize = (int) Math.min(10L * size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param key the key to look up
+     * @return the estimated number of recent accesses of the key, at most 15
+     */
+    int frequency(Object key) {
+        final int hash = Hashing.hash(key);
+        final int start = (hash & 3) << 2;
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < SEEDS.length; i++) {
+            final int index = indexOf(hash, i);
+            final int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Counts an access of the key, saturating counters are left as they are.
+     *
+     * @param key the key that was accessed
+     */
+    void increment(Object key) {
+        final int hash = Hashing.hash(key);
+        final int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int index, int counter) {
+        final int offset = counter << 2;
+        final long mask = 0xfL << offset;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    private int indexOf(int hash, int seedIndex) {
+        long h = (hash + SEEDS[seedIndex]) * SEEDS[seedIndex];
+        h += h >>> 32;
+        return (int) h & tableMask;
+    }
+
+    /**
+     * Halves all counters. Counters with an odd value lose their remainder, which is subtracted from the additions.
+     */
+    private void reset() {
+        int odd = 0;
+        for (int i = 0; i < table.length; i++) {
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions = (additions >>> 1) - (odd >>> 2);
+    }
+}
@@ -0,0 +1,69 @@
+package at.schrer.utils.structures;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * Helpers shared by the hash based structures in this package.
+ * All tables are sized to powers of two, so a slot is found by masking the spread hash.
+ */
+final class Hashing {
+
+    private static final int GOLDEN_RATIO_32 = 0x9E3779B9;
+    private static final long GOLDEN_RATIO_64 = 0x9E3779B97F4A7C15L;
+    private static final int MAX_TABLE_SIZE = 1 << 30;
+
+    private Hashing(){}
+
+    /**
+     * Spreads the bits of a hash code, so keys with similar hash codes (e.g. small Integers) do not end up in the same
+     * cluster of a linear probing table.
+     *
+     * @param h the hash code to spread
+     * @return the spread hash
+     */
+    static int spread(int h) {
+        h *= GOLDEN_RATIO_32;
+        return h ^ (h >>> 16);
+    }
+
+    static int spread(long h) {
+        h *= GOLDEN_RATIO_64;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    static int hash(Object key) {
+        return spread(Objects.hashCode(key));
+    }
+
+    /**
+     * Hashes the bytes between the position and the limit of a buffer, for structures that compare keys by their
+     * encoded bytes. Unlike {@link #hash(Object)} it only depends on the bytes, so it is the same in every JVM and can
+     * be persisted.
+     *
+     * @param bytes the encoded key, its position is not changed
+     * @return the spread hash
+     */
+    static int hash(ByteBuffer bytes) {
+        int h = 1;
+        for (int i = bytes.position(); i < bytes.limit(); i++) {
+            h = 31 * h + bytes.get(i);
+        }
+        return spread(h);
+    }
+
+    /**
+     * Returns a power of two table size, that keeps the load of the table at or below one half
+     * when it holds the given number of elements.
+     *
+     * @param expectedElements the number of elements the table has to hold
+     * @return the table size
+     */
+    static int tableSizeFor(int expectedElements) {
+        if (expectedElements >= MAX_TABLE_SIZE / 2) {
+            return MAX_TABLE_SIZE;
+        }
+        int minimum = Math.max(2, expectedElements * 2);
+        return Integer.highestOneBit(minimum - 1) << 1;
+    }
+}
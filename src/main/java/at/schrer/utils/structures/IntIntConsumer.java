@@ -0,0 +1,9 @@
+package at.schrer.utils.structures;
+
+/**
+ * Consumer for the mappings of an {@link IntIntMap}, so they can be visited without boxing.
+ */
+@FunctionalInterface
+public interface IntIntConsumer {
+    void accept(int key, int value);
+}
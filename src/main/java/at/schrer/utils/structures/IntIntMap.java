@@ -0,0 +1,279 @@
+package at.schrer.utils.structures;
+
+import java.util.Arrays;
+
+/**
+ * A map from primitive int keys to primitive int values.
+ * Keys and values are stored in two parallel arrays, which form an open addressing hash table with linear probing.
+ * There are no entry objects and nothing is ever boxed.
+ * <p>
+ * As a value of 0 is returned for missing keys, use {@link #containsKey} or {@link #getOrDefault} where 0 is a valid value.
+ * The key 0 marks a free slot in the key array, so a mapping for 0 is kept in separate fields.
+ * The table is doubled whenever it would become more than half full. The map is not thread safe.
+ */
+public class IntIntMap {
+
+    private static final int DEFAULT_INIT_SIZE = 30;
+    private static final int FREE_KEY = 0;
+    private static final int NO_VALUE = 0;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+    private boolean hasFreeKey;
+    private int freeKeyValue;
+
+    public IntIntMap() {
+        this(DEFAULT_INIT_SIZE);
+    }
+
+    public IntIntMap(int initialSize) {
+        if (initialSize < 1) {
+            initialSize = DEFAULT_INIT_SIZE;
+        }
+        allocate(Hashing.tableSizeFor(initialSize));
+    }
+
+    public int size() {
+        return hasFreeKey ? size + 1 : size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean containsKey(int key) {
+        if (key == FREE_KEY) {
+            return hasFreeKey;
+        }
+        return findSlot(key) >= 0;
+    }
+
+    /**
+     * @param key the key to look for
+     * @return the value mapped to the key, or 0 if there is none
+     */
+    public int get(int key) {
+        return getOrDefault(key, NO_VALUE);
+    }
+
+    public int getOrDefault(int key, int defaultValue) {
+        if (key == FREE_KEY) {
+            return hasFreeKey ? freeKeyValue : defaultValue;
+        }
+        final int slot = findSlot(key);
+        return slot < 0 ? defaultValue : values[slot];
+    }
+
+    /**
+     * @param key the key to map the value to
+     * @param value the value
+     * @return the value previously mapped to the key, or 0 if there was none
+     */
+    public int put(int key, int value) {
+        if (key == FREE_KEY) {
+            final int old = hasFreeKey ? freeKeyValue : NO_VALUE;
+            hasFreeKey = true;
+            freeKeyValue = value;
+            return old;
+        }
+
+        final int slot = findOrInsertSlot(key);
+        final int old = values[slot];
+        values[slot] = value;
+        growIfNeeded();
+        return old;
+    }
+
+    /**
+     * Adds to the value mapped to a key, a missing mapping counts as 0.
+     *
+     * @param key the key of the value to add to
+     * @param delta the amount to add
+     * @return the new value mapped to the key
+     */
+    public int addTo(int key, int delta) {
+        if (key == FREE_KEY) {
+            freeKeyValue = (hasFreeKey ? freeKeyValue : NO_VALUE) + delta;
+            hasFreeKey = true;
+            return freeKeyValue;
+        }
+
+        final int slot = findOrInsertSlot(key);
+        final int result = values[slot] += delta;
+        growIfNeeded();
+        return result;
+    }
+
+    /**
+     * @param key the key to remove
+     * @return the value that was mapped to the key, or 0 if there was none
+     */
+    public int remove(int key) {
+        if (key == FREE_KEY) {
+            final int old = hasFreeKey ? freeKeyValue : NO_VALUE;
+            hasFreeKey = false;
+            freeKeyValue = NO_VALUE;
+            return old;
+        }
+        final int slot = findSlot(key);
+        if (slot < 0) {
+            return NO_VALUE;
+        }
+        final int old = values[slot];
+        removeSlot(slot);
+        size--;
+        return old;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE_KEY);
+        Arrays.fill(values, NO_VALUE);
+        size = 0;
+        hasFreeKey = false;
+        freeKeyValue = NO_VALUE;
+    }
+
+    /**
+     * Visits all mappings, in no particular order.
+     *
+     * @param action the action to call for every mapping
+     */
+    public void forEach(IntIntConsumer action) {
+        if (hasFreeKey) {
+            action.accept(FREE_KEY, freeKeyValue);
+        }
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != FREE_KEY) {
+                action.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    /**
+     * @return a new array with all keys of this map, in no particular order
+     */
+    public int[] keys() {
+        final int[] result = new int[size()];
+        int next = 0;
+        if (hasFreeKey) {
+            result[next++] = FREE_KEY;
+        }
+        for (int key : keys) {
+            if (key != FREE_KEY) {
+                result[next++] = key;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder("{");
+        forEach((key, value) -> {
+            if (builder.length() > 1) {
+                builder.append(", ");
+            }
+            builder.append(key).append('=').append(value);
+        });
+        return builder.append('}').toString();
+    }
+
+    protected int getTableSize() {
+        return keys.length;
+    }
+
+    /**
+     * @param key the key to look for, must not be the free key
+     * @return the slot of the key or -1 if it is not in the table
+     */
+    private int findSlot(int key) {
+        final int mask = keys.length - 1;
+        for (int slot = Hashing.spread(key) & mask; ; slot = (slot + 1) & mask) {
+            final int candidate = keys[slot];
+            if (candidate == key) {
+                return slot;
+            }
+            if (candidate == FREE_KEY) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Finds the slot of a key, or claims a free slot for it with a value of 0.
+     * The caller has to call {@link #growIfNeeded()} once it is done with the slot.
+     *
+     * @param key the key to look for, must not be the free key
+     * @return the slot of the key
+     */
+    private int findOrInsertSlot(int key) {
+        final int mask = keys.length - 1;
+        int slot = Hashing.spread(key) & mask;
+        while (keys[slot] != FREE_KEY) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = NO_VALUE;
+        size++;
+        return slot;
+    }
+
+    private void growIfNeeded() {
+        if (size > keys.length / 2) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    /**
+     * Empties a slot and shifts the following keys of the probe sequence back into the gap,
+     * unless that would move them in front of their home slot.
+     *
+     * @param slot the slot to empty
+     */
+    private void removeSlot(int slot) {
+        final int mask = keys.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != FREE_KEY) {
+            final int home = Hashing.spread(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = FREE_KEY;
+        values[gap] = NO_VALUE;
+    }
+
+    private void rehash(int newTableSize) {
+        final int[] oldKeys = keys;
+        final int[] oldValues = values;
+        allocate(newTableSize);
+
+        final int mask = newTableSize - 1;
+        for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+            final int key = oldKeys[oldSlot];
+            if (key == FREE_KEY) {
+                continue;
+            }
+            int slot = Hashing.spread(key) & mask;
+            while (keys[slot] != FREE_KEY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = oldValues[oldSlot];
+        }
+    }
+
+    private void allocate(int tableSize) {
+        this.keys = new int[tableSize];
+        this.values = new int[tableSize];
+    }
+}
@@ -0,0 +1,145 @@
+package at.schrer.utils.structures;
+
+import java.util.*;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A list of primitive int values. Next to the methods of {@link List}, which box every value, it has methods like
+ * {@link #addInt(int)} and {@link #getInt(int)}, a primitive iterator and a {@link IntStream} view, which never box.
+ * <p>
+ * {@link ArrayIntList} keeps the values in a single array that grows when needed. {@link ChunkedIntList} keeps them in a
+ * chain of fixed size arrays, so it never copies all values when it grows.
+ * <p>
+ * Null elements are not permitted.
+ */
+public abstract class IntList extends AbstractList<Integer> {
+
+    public abstract int getInt(int index);
+
+    /**
+     * @return the value previously at the index
+     */
+    public abstract int setInt(int index, int value);
+
+    public abstract void addInt(int index, int value);
+
+    /**
+     * @return the value removed from the index
+     */
+    public abstract int removeInt(int index);
+
+    public boolean addInt(int value) {
+        addInt(size(), value);
+        return true;
+    }
+
+    public boolean addAll(int[] values) {
+        for (int value : values) {
+            addInt(value);
+        }
+        return values.length > 0;
+    }
+
+    public int indexOfInt(int value) {
+        final PrimitiveIterator.OfInt iterator = intIterator();
+        for (int index = 0; iterator.hasNext(); index++) {
+            if (Integer.compare(iterator.nextInt(), value) == 0) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    public boolean containsInt(int value) {
+        return indexOfInt(value) >= 0;
+    }
+
+    public void forEachInt(IntConsumer action) {
+        Objects.requireNonNull(action);
+        intIterator().forEachRemaining(action);
+    }
+
+    public int[] toIntArray() {
+        final int[] array = new int[size()];
+        final PrimitiveIterator.OfInt iterator = intIterator();
+        for (int i = 0; i < array.length; i++) {
+            array[i] = iterator.nextInt();
+        }
+        return array;
+    }
+
+    /**
+     * Returns a fail-fast iterator, which reads the values without boxing them.
+     */
+    public PrimitiveIterator.OfInt intIterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int index = 0;
+            private final int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return index < size();
+            }
+
+            @Override
+            public int nextInt() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return getInt(index++);
+            }
+        };
+    }
+
+    /**
+     * Returns a sequential stream of the values, which are read without boxing them.
+     */
+    public IntStream intStream() {
+        return StreamSupport.intStream(Spliterators.spliterator(intIterator(), size(), Spliterator.ORDERED), false);
+    }
+
+    @Override
+    public Integer get(int index) {
+        return getInt(index);
+    }
+
+    @Override
+    public Integer set(int index, Integer element) {
+        return setInt(index, element);
+    }
+
+    @Override
+    public void add(int index, Integer element) {
+        addInt(index, element);
+    }
+
+    @Override
+    public Integer remove(int index) {
+        return removeInt(index);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Integer value && containsInt(value);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        return o instanceof Integer value ? indexOfInt(value) : -1;
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = 1;
+        final PrimitiveIterator.OfInt iterator = intIterator();
+        while (iterator.hasNext()) {
+            hashCode = 31 * hashCode + Integer.hashCode(iterator.nextInt());
+        }
+        return hashCode;
+    }
+}
@@ -0,0 +1,145 @@
+package at.schrer.utils.structures;
+
+import java.util.*;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A list of primitive long values. Next to the methods of {@link List}, which box every value, it has methods like
+ * {@link #addLong(long)} and {@link #getLong(int)}, a primitive iterator and a {@link LongStream} view, which never box.
+ * <p>
+ * {@link ArrayLongList} keeps the values in a single array that grows when needed. {@link ChunkedLongList} keeps them in a
+ * chain of fixed size arrays, so it never copies all values when it grows.
+ * <p>
+ * Null elements are not permitted.
+ */
+public abstract class LongList extends AbstractList<Long> {
+
+    public abstract long getLong(int index);
+
+    /**
+     * @return the value previously at the index
+     */
+    public abstract long setLong(int index, long value);
+
+    public abstract void addLong(int index, long value);
+
+    /**
+     * @return the value removed from the index
+     */
+    public abstract long removeLong(int index);
+
+    public boolean addLong(long value) {
+        addLong(size(), value);
+        return true;
+    }
+
+    public boolean addAll(long[] values) {
+        for (long value : values) {
+            addLong(value);
+        }
+        return values.length > 0;
+    }
+
+    public int indexOfLong(long value) {
+        final PrimitiveIterator.OfLong iterator = longIterator();
+        for (int index = 0; iterator.hasNext(); index++) {
+            if (Long.compare(iterator.nextLong(), value) == 0) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    public boolean containsLong(long value) {
+        return indexOfLong(value) >= 0;
+    }
+
+    public void forEachLong(LongConsumer action) {
+        Objects.requireNonNull(action);
+        longIterator().forEachRemaining(action);
+    }
+
+    public long[] toLongArray() {
+        final long[] array = new long[size()];
+        final PrimitiveIterator.OfLong iterator = longIterator();
+        for (int i = 0; i < array.length; i++) {
+            array[i] = iterator.nextLong();
+        }
+        return array;
+    }
+
+    /**
+     * Returns a fail-fast iterator, which reads the values without boxing them.
+     */
+    public PrimitiveIterator.OfLong longIterator() {
+        return new PrimitiveIterator.OfLong() {
+            private int index = 0;
+            private final int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return index < size();
+            }
+
+            @Override
+            public long nextLong() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return getLong(index++);
+            }
+        };
+    }
+
+    /**
+     * Returns a sequential stream of the values, which are read without boxing them.
+     */
+    public LongStream longStream() {
+        return StreamSupport.longStream(Spliterators.spliterator(longIterator(), size(), Spliterator.ORDERED), false);
+    }
+
+    @Override
+    public Long get(int index) {
+        return getLong(index);
+    }
+
+    @Override
+    public Long set(int index, Long element) {
+        return setLong(index, element);
+    }
+
+    @Override
+    public void add(int index, Long element) {
+        addLong(index, element);
+    }
+
+    @Override
+    public Long remove(int index) {
+        return removeLong(index);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Long value && containsLong(value);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        return o instanceof Long value ? indexOfLong(value) : -1;
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = 1;
+        final PrimitiveIterator.OfLong iterator = longIterator();
+        while (iterator.hasNext()) {
+            hashCode = 31 * hashCode + Long.hashCode(iterator.nextLong());
+        }
+        return hashCode;
+    }
+}
@@ -0,0 +1,9 @@
+package at.schrer.utils.structures;
+
+/**
+ * Consumer for the mappings of a {@link LongLongMap}, so they can be visited without boxing.
+ */
+@FunctionalInterface
+public interface LongLongConsumer {
+    void accept(long key, long value);
+}
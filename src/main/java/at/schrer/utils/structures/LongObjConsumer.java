@@ -0,0 +1,11 @@
+package at.schrer.utils.structures;
+
+/**
+ * Consumer for the mappings of a {@link LongObjectMap}, so they can be visited without boxing the key.
+ *
+ * @param <V> type of the value
+ */
+@FunctionalInterface
+public interface LongObjConsumer<V> {
+    void accept(long key, V value);
+}
@@ -0,0 +1,249 @@
+package at.schrer.utils.structures;
+
+import java.util.Arrays;
+
+/**
+ * A map from primitive long keys to objects.
+ * Keys and values are stored in two parallel arrays, which form an open addressing hash table with linear probing.
+ * There are no entry objects and keys are never boxed.
+ * <p>
+ * The key 0 marks a free slot in the key array, so a mapping for 0 is kept in separate fields.
+ * The table is doubled whenever it would become more than half full. The map is not thread safe.
+ *
+ * @param <V> type of the value
+ */
+public class LongObjectMap<V> {
+
+    private static final int DEFAULT_INIT_SIZE = 30;
+    private static final long FREE_KEY = 0;
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+
+    private boolean hasFreeKey;
+    private V freeKeyValue;
+
+    public LongObjectMap() {
+        this(DEFAULT_INIT_SIZE);
+    }
+
+    public LongObjectMap(int initialSize) {
+        if (initialSize < 1) {
+            initialSize = DEFAULT_INIT_SIZE;
+        }
+        allocate(Hashing.tableSizeFor(initialSize));
+    }
+
+    public int size() {
+        return hasFreeKey ? size + 1 : size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == FREE_KEY) {
+            return hasFreeKey;
+        }
+        return findSlot(key) >= 0;
+    }
+
+    /**
+     * @param key the key to look for
+     * @return the value mapped to the key, or null if there is none
+     */
+    public V get(long key) {
+        return getOrDefault(key, null);
+    }
+
+    public V getOrDefault(long key, V defaultValue) {
+        if (key == FREE_KEY) {
+            return hasFreeKey ? freeKeyValue : defaultValue;
+        }
+        final int slot = findSlot(key);
+        return slot < 0 ? defaultValue : valueAt(slot);
+    }
+
+    /**
+     * @param key the key to map the value to
+     * @param value the value, may be null
+     * @return the value previously mapped to the key, or null if there was none
+     */
+    public V put(long key, V value) {
+        if (key == FREE_KEY) {
+            final V old = freeKeyValue;
+            hasFreeKey = true;
+            freeKeyValue = value;
+            return old;
+        }
+
+        final int mask = keys.length - 1;
+        int slot = Hashing.spread(key) & mask;
+        while (keys[slot] != FREE_KEY) {
+            if (keys[slot] == key) {
+                final V old = valueAt(slot);
+                values[slot] = value;
+                return old;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        if (size > keys.length / 2) {
+            rehash(keys.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * @param key the key to remove
+     * @return the value that was mapped to the key, or null if there was none
+     */
+    public V remove(long key) {
+        if (key == FREE_KEY) {
+            final V old = freeKeyValue;
+            hasFreeKey = false;
+            freeKeyValue = null;
+            return old;
+        }
+        final int slot = findSlot(key);
+        if (slot < 0) {
+            return null;
+        }
+        final V old = valueAt(slot);
+        removeSlot(slot);
+        size--;
+        return old;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE_KEY);
+        Arrays.fill(values, null);
+        size = 0;
+        hasFreeKey = false;
+        freeKeyValue = null;
+    }
+
+    /**
+     * Visits all mappings, in no particular order.
+     *
+     * @param action the action to call for every mapping
+     */
+    public void forEach(LongObjConsumer<? super V> action) {
+        if (hasFreeKey) {
+            action.accept(FREE_KEY, freeKeyValue);
+        }
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != FREE_KEY) {
+                action.accept(keys[slot], valueAt(slot));
+            }
+        }
+    }
+
+    /**
+     * @return a new array with all keys of this map, in no particular order
+     */
+    public long[] keys() {
+        final long[] result = new long[size()];
+        int next = 0;
+        if (hasFreeKey) {
+            result[next++] = FREE_KEY;
+        }
+        for (long key : keys) {
+            if (key != FREE_KEY) {
+                result[next++] = key;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder("{");
+        forEach((key, value) -> {
+            if (builder.length() > 1) {
+                builder.append(", ");
+            }
+            builder.append(key).append('=').append(value);
+        });
+        return builder.append('}').toString();
+    }
+
+    protected int getTableSize() {
+        return keys.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int slot) {
+        return (V) values[slot];
+    }
+
+    /**
+     * @param key the key to look for, must not be the free key
+     * @return the slot of the key or -1 if it is not in the table
+     */
+    private int findSlot(long key) {
+        final int mask = keys.length - 1;
+        for (int slot = Hashing.spread(key) & mask; ; slot = (slot + 1) & mask) {
+            final long candidate = keys[slot];
+            if (candidate == key) {
+                return slot;
+            }
+            if (candidate == FREE_KEY) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Empties a slot and shifts the following keys of the probe sequence back into the gap,
+     * unless that would move them in front of their home slot.
+     *
+     * @param slot the slot to empty
+     */
+    private void removeSlot(int slot) {
+        final int mask = keys.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != FREE_KEY) {
+            final int home = Hashing.spread(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = FREE_KEY;
+        values[gap] = null;
+    }
+
+    private void rehash(int newTableSize) {
+        final long[] oldKeys = keys;
+        final Object[] oldValues = values;
+        allocate(newTableSize);
+
+        final int mask = newTableSize - 1;
+        for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+            final long key = oldKeys[oldSlot];
+            if (key == FREE_KEY) {
+                continue;
+            }
+            int slot = Hashing.spread(key) & mask;
+            while (keys[slot] != FREE_KEY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = oldValues[oldSlot];
+        }
+    }
+
+    private void allocate(int tableSize) {
+        this.keys = new long[tableSize];
+        this.values = new Object[tableSize];
+    }
+}
@@ -0,0 +1,572 @@
+package at.schrer.utils.structures;
+
+import at.schrer.utils.structures.codec.Codec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * A persistent map, that keeps its mappings in memory mapped files.
+ * <p>
+ * The data file is an append only log of records, encoded with a key and a value {@link Codec}. Every put appends a
+ * record and every remove appends a tombstone, old records are dropped by compacting the log into a new file once it
+ * holds more garbage than live data. Next to it, a second file with the suffix {@code .index} holds the hash index
+ * from {@link BufferIndex}, pointing to the latest record of every key.
+ * <p>
+ * Keys are hashed and compared by their encoded bytes, so a key codec has to encode equal keys to equal bytes. The
+ * hashCode of the keys is never used, the hashes written to the files are the same in every JVM.
+ * <p>
+ * Closing the map marks both files as clean. Reopening a cleanly closed map only maps the files again, without reading
+ * any records. If the map was not closed, e.g. because the process crashed, the index is rebuilt from the log instead.
+ * {@link #flush()} writes all changes to the storage device, without it they are only guaranteed to survive a crash of
+ * the process, but not of the operating system.
+ * <p>
+ * The data file may grow up to 2 GiB. Neither null keys nor null values are permitted. The map is not thread safe and
+ * a file must only be opened by one map at a time.
+ *
+ * @param <K> type of the key
+ * @param <V> type of the value
+ */
+public class MappedFileMap<K, V> implements Closeable {
+
+    private static final int MAGIC = 0x534d4d46;
+    private static final int VERSION = 1;
+    private static final int MIN_DATA_SIZE = 64 * 1024;
+    private static final int MIN_SLOTS = 64;
+    private static final int MAX_SLOTS = 1 << 26;
+
+    // Data header: [int magic][int version][long end of the log][int size][int clean][long live bytes]
+    private static final int DATA_HEADER_SIZE = 32;
+    private static final int END_OFFSET = 8;
+    private static final int SIZE_OFFSET = 16;
+    private static final int CLEAN_OFFSET = 20;
+    private static final int LIVE_BYTES_OFFSET = 24;
+
+    // Index header: [int magic][int slots][8 unused bytes], followed by the slots
+    private static final int INDEX_HEADER_SIZE = 16;
+
+    // Record: [int hash][int key length][int value length, -1 for a tombstone][key bytes][value bytes]
+    private static final int RECORD_HEADER_SIZE = 12;
+    private static final int TOMBSTONE = -1;
+
+    private final Path dataPath;
+    private final Path indexPath;
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+
+    private FileChannel dataChannel;
+    private MappedByteBuffer data;
+    private int writeOffset;
+    private long liveBytes;
+    private int size;
+
+    private FileChannel indexChannel;
+    private MappedByteBuffer indexBuffer;
+    private BufferIndex index;
+
+    private ByteBuffer keyBuffer = ByteBuffer.allocate(64);
+    private ByteBuffer valueBuffer = ByteBuffer.allocate(64);
+    private boolean closed;
+
+    /**
+     * Opens the map stored in the given file, or creates a new one if the file does not exist.
+     *
+     * @param file the data file, the index is stored next to it
+     * @param keyCodec codec for the keys, it has to encode equal keys to equal bytes
+     * @param valueCodec codec for the values
+     * @throws IOException if the files can not be opened or the data file holds no map
+     */
+    public MappedFileMap(Path file, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        this.dataPath = file;
+        this.indexPath = file.resolveSibling(file.getFileName() + ".index");
+        this.keyCodec = Objects.requireNonNull(keyCodec);
+        this.valueCodec = Objects.requireNonNull(valueCodec);
+
+        this.dataChannel = FileChannel.open(dataPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        final boolean clean = dataChannel.size() == 0 ? initData() : readData();
+        if (!clean || !openIndex()) {
+            rebuildIndex();
+        }
+        // Anything that happens from now on makes the index stale until the map is closed
+        data.putInt(CLEAN_OFFSET, 0);
+        data.force();
+    }
+
+    public int size() {
+        ensureOpen();
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean containsKey(K key) {
+        ensureOpen();
+        return findSlot(encodeKey(key)) >= 0;
+    }
+
+    /**
+     * @param key the key to look for
+     * @return a newly decoded copy of the value mapped to the key, or null if there is none
+     */
+    public V get(K key) {
+        ensureOpen();
+        final int slot = findSlot(encodeKey(key));
+        if (slot < 0) {
+            return null;
+        }
+        return decodeValue((int) index.addressAt(slot));
+    }
+
+    /**
+     * @param key the key to map the value to
+     * @param value the value
+     * @return the value previously mapped to the key, or null if there was none
+     */
+    public V put(K key, V value) {
+        ensureOpen();
+        Objects.requireNonNull(value);
+        final ByteBuffer keyBytes = encodeKey(key);
+        final int hash = Hashing.hash(keyBytes);
+        final ByteBuffer valueBytes = encodeValue(value);
+
+        final int slot = findSlot(hash, keyBytes);
+        if (slot >= 0) {
+            final int oldAddress = (int) index.addressAt(slot);
+            final V oldValue = decodeValue(oldAddress);
+            final int address = append(hash, keyBytes, valueBytes);
+            index.setAddressAt(slot, address);
+            liveBytes -= recordSize(oldAddress);
+            writeHeader();
+            compactIfNeeded();
+            return oldValue;
+        }
+
+        if (size + 1 > index.slots() / 2) {
+            if (index.slots() == MAX_SLOTS) {
+                throw new IllegalStateException("Map is full");
+            }
+            rehash(index.slots() * 2);
+        }
+        index.insert(hash, append(hash, keyBytes, valueBytes));
+        size++;
+        writeHeader();
+        return null;
+    }
+
+    /**
+     * @param key the key to remove
+     * @return the value that was mapped to the key, or null if there was none
+     */
+    public V remove(K key) {
+        ensureOpen();
+        final ByteBuffer keyBytes = encodeKey(key);
+        final int hash = Hashing.hash(keyBytes);
+        final int slot = findSlot(hash, keyBytes);
+        if (slot < 0) {
+            return null;
+        }
+        final int oldAddress = (int) index.addressAt(slot);
+        final V oldValue = decodeValue(oldAddress);
+        // The tombstone is only needed until the next compaction, so it does not count as live data
+        final int tombstoneAddress = append(hash, keyBytes, null);
+        index.remove(slot);
+        size--;
+        liveBytes -= recordSize(oldAddress) + recordSize(tombstoneAddress);
+        writeHeader();
+        compactIfNeeded();
+        return oldValue;
+    }
+
+    /**
+     * Removes all mappings and truncates both files.
+     */
+    public void clear() {
+        ensureOpen();
+        try {
+            dataChannel.truncate(DATA_HEADER_SIZE);
+            data = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, MIN_DATA_SIZE);
+            writeOffset = DATA_HEADER_SIZE;
+            liveBytes = 0;
+            size = 0;
+            writeHeader();
+            createIndex(MIN_SLOTS);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Decodes and visits all mappings, in no particular order.
+     *
+     * @param action the action to call for every mapping
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        ensureOpen();
+        for (int slot = 0; slot < index.slots(); slot++) {
+            if (index.isFree(slot)) {
+                continue;
+            }
+            final int address = (int) index.addressAt(slot);
+            final K key = keyCodec.decode(data.slice(address + RECORD_HEADER_SIZE, data.getInt(address + 4)));
+            action.accept(key, decodeValue(address));
+        }
+    }
+
+    /**
+     * Writes the latest records of all keys into a new data file, which replaces the current one.
+     * Tombstones and replaced records are dropped.
+     */
+    public void compact() {
+        ensureOpen();
+        final Path compactPath = dataPath.resolveSibling(dataPath.getFileName() + ".compact");
+        try {
+            final FileChannel newChannel = FileChannel.open(compactPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            final MappedByteBuffer newData = writeCompacted(newChannel);
+            // The channel stays valid after the move, so the new file can be used right away
+            Files.move(compactPath, dataPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dataChannel.close();
+            dataChannel = newChannel;
+            data = newData;
+            writeOffset = (int) newData.getLong(END_OFFSET);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Copies the latest records of all keys into the channel and points the index at the copies. The new file gets
+     * its complete header and is forced to the storage device before this returns, so it is a valid data file as
+     * soon as it replaces the current one. It is not marked clean, after a crash its index is rebuilt.
+     *
+     * @return the mapped new file
+     */
+    MappedByteBuffer writeCompacted(FileChannel newChannel) throws IOException {
+        final MappedByteBuffer newData = newChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                dataSizeFor(DATA_HEADER_SIZE + liveBytes));
+        int newOffset = DATA_HEADER_SIZE;
+        for (int slot = 0; slot < index.slots(); slot++) {
+            if (index.isFree(slot)) {
+                continue;
+            }
+            final int address = (int) index.addressAt(slot);
+            final int recordSize = recordSize(address);
+            newData.put(newOffset, data, address, recordSize);
+            index.setAddressAt(slot, newOffset);
+            newOffset += recordSize;
+        }
+        newData.putInt(0, MAGIC);
+        newData.putInt(4, VERSION);
+        writeHeader(newData, newOffset);
+        newData.force();
+        return newData;
+    }
+
+    /**
+     * Writes all changes of the data and index file to the storage device.
+     */
+    public void flush() {
+        ensureOpen();
+        data.force();
+        indexBuffer.force();
+    }
+
+    /**
+     * Writes all changes to the storage device, marks the files as clean and closes them.
+     * Any further use of the map throws an {@link IllegalStateException}.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        indexBuffer.force();
+        data.putInt(CLEAN_OFFSET, 1);
+        data.force();
+        closed = true;
+        try {
+            indexChannel.close();
+        } finally {
+            dataChannel.close();
+            data = null;
+            indexBuffer = null;
+            index = null;
+            keyBuffer = null;
+            valueBuffer = null;
+        }
+    }
+
+    /**
+     * @return the number of bytes in the log, including replaced records and tombstones
+     */
+    public long dataBytes() {
+        ensureOpen();
+        return writeOffset;
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Map is closed");
+        }
+    }
+
+    // Data file
+
+    /**
+     * Writes the header of a new, empty data file.
+     *
+     * @return false, a new file has no index yet
+     */
+    private boolean initData() throws IOException {
+        data = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, MIN_DATA_SIZE);
+        data.putInt(0, MAGIC);
+        data.putInt(4, VERSION);
+        writeOffset = DATA_HEADER_SIZE;
+        writeHeader();
+        return false;
+    }
+
+    /**
+     * Maps an existing data file and reads its header.
+     *
+     * @return whether the file was closed cleanly
+     */
+    private boolean readData() throws IOException {
+        final long fileSize = dataChannel.size();
+        if (fileSize < DATA_HEADER_SIZE || fileSize > Integer.MAX_VALUE) {
+            throw new IOException("Not a map file: " + dataPath);
+        }
+        data = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+        if (data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+            throw new IOException("Not a map file: " + dataPath);
+        }
+        final long end = data.getLong(END_OFFSET);
+        if (end < DATA_HEADER_SIZE || end > fileSize) {
+            throw new IOException("Corrupt map file: " + dataPath);
+        }
+        writeOffset = (int) end;
+        size = data.getInt(SIZE_OFFSET);
+        liveBytes = data.getLong(LIVE_BYTES_OFFSET);
+        return data.getInt(CLEAN_OFFSET) == 1;
+    }
+
+    private void writeHeader() {
+        writeHeader(data, writeOffset);
+    }
+
+    private void writeHeader(ByteBuffer target, int end) {
+        target.putLong(END_OFFSET, end);
+        target.putInt(SIZE_OFFSET, size);
+        target.putLong(LIVE_BYTES_OFFSET, liveBytes);
+    }
+
+    /**
+     * Appends a record to the log, mapping a larger part of the file if it does not fit.
+     *
+     * @param valueBytes the encoded value, or null for a tombstone
+     * @return the address of the record
+     */
+    private int append(int hash, ByteBuffer keyBytes, ByteBuffer valueBytes) {
+        final int keyLength = keyBytes.remaining();
+        final int valueLength = valueBytes == null ? 0 : valueBytes.remaining();
+        final long recordSize = (long) RECORD_HEADER_SIZE + keyLength + valueLength;
+        if (writeOffset + recordSize > data.capacity()) {
+            if (writeOffset + recordSize > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Map file is full");
+            }
+            try {
+                data = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                        Math.max(dataSizeFor(writeOffset + recordSize), data.capacity() * 2L));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        final int address = writeOffset;
+        data.putInt(address, hash);
+        data.putInt(address + 4, keyLength);
+        data.putInt(address + 8, valueBytes == null ? TOMBSTONE : valueLength);
+        data.put(address + RECORD_HEADER_SIZE, keyBytes, 0, keyLength);
+        if (valueBytes != null) {
+            data.put(address + RECORD_HEADER_SIZE + keyLength, valueBytes, 0, valueLength);
+        }
+        writeOffset += (int) recordSize;
+        liveBytes += recordSize;
+        return address;
+    }
+
+    private static long dataSizeFor(long bytes) {
+        return Math.min(Integer.MAX_VALUE, Math.max(MIN_DATA_SIZE, bytes));
+    }
+
+    private int recordSize(int address) {
+        final int valueLength = data.getInt(address + 8);
+        return RECORD_HEADER_SIZE + data.getInt(address + 4) + Math.max(valueLength, 0);
+    }
+
+    private void compactIfNeeded() {
+        final long garbageBytes = writeOffset - DATA_HEADER_SIZE - liveBytes;
+        if (garbageBytes > liveBytes && garbageBytes >= MIN_DATA_SIZE) {
+            compact();
+        }
+    }
+
+    // Encoding
+
+    private ByteBuffer encodeKey(K key) {
+        Objects.requireNonNull(key);
+        keyBuffer = encode(keyCodec, key, keyBuffer);
+        return keyBuffer;
+    }
+
+    private ByteBuffer encodeValue(V value) {
+        valueBuffer = encode(valueCodec, value, valueBuffer);
+        return valueBuffer;
+    }
+
+    private static <T> ByteBuffer encode(Codec<T> codec, T value, ByteBuffer buffer) {
+        final int encodedSize = codec.encodedSize(value);
+        if (buffer.capacity() < encodedSize) {
+            buffer = ByteBuffer.allocate(Math.max(encodedSize, buffer.capacity() * 2));
+        }
+        buffer.clear();
+        codec.encode(value, buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    private V decodeValue(int address) {
+        final int keyLength = data.getInt(address + 4);
+        final int valueLength = data.getInt(address + 8);
+        return valueCodec.decode(data.slice(address + RECORD_HEADER_SIZE + keyLength, valueLength));
+    }
+
+    // Index file
+
+    private int findSlot(ByteBuffer keyBytes) {
+        return findSlot(Hashing.hash(keyBytes), keyBytes);
+    }
+
+    private int findSlot(int hash, ByteBuffer keyBytes) {
+        return index.find(hash, address -> keyEquals((int) address, keyBytes));
+    }
+
+    private boolean keyEquals(int address, ByteBuffer keyBytes) {
+        final int keyLength = data.getInt(address + 4);
+        return keyLength == keyBytes.remaining()
+                && keyBytes.mismatch(data.slice(address + RECORD_HEADER_SIZE, keyLength)) < 0;
+    }
+
+    /**
+     * Maps the index file written when the map was closed.
+     *
+     * @return false if there is no usable index file
+     */
+    private boolean openIndex() throws IOException {
+        if (!Files.exists(indexPath)) {
+            return false;
+        }
+        final FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        final long fileSize = channel.size();
+        if (fileSize >= INDEX_HEADER_SIZE) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            final int slots = buffer.getInt(4);
+            if (buffer.getInt(0) == MAGIC && Integer.bitCount(slots) == 1 && slots <= MAX_SLOTS
+                    && fileSize == INDEX_HEADER_SIZE + BufferIndex.bytesFor(slots)) {
+                indexChannel = channel;
+                indexBuffer = buffer;
+                index = new BufferIndex(buffer, INDEX_HEADER_SIZE, slots);
+                return true;
+            }
+        }
+        channel.close();
+        return false;
+    }
+
+    /**
+     * Creates an empty index in a temporary file, which then replaces the index file.
+     * Mappings of the replaced file stay readable until they are collected.
+     */
+    private void createIndex(int slots) throws IOException {
+        final Path newPath = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        final FileChannel channel = FileChannel.open(newPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                INDEX_HEADER_SIZE + BufferIndex.bytesFor(slots));
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, slots);
+        if (indexChannel != null) {
+            indexChannel.close();
+        }
+        Files.move(newPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        indexChannel = channel;
+        indexBuffer = buffer;
+        index = new BufferIndex(buffer, INDEX_HEADER_SIZE, slots);
+    }
+
+    private void rehash(int slots) {
+        final BufferIndex oldIndex = index;
+        try {
+            createIndex(slots);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        oldIndex.copyTo(index);
+    }
+
+    /**
+     * Replays the log into a new index. Reading stops at the first incomplete record.
+     */
+    private void rebuildIndex() throws IOException {
+        createIndex(MIN_SLOTS);
+        size = 0;
+        liveBytes = 0;
+        int address = DATA_HEADER_SIZE;
+        while (address + RECORD_HEADER_SIZE <= writeOffset) {
+            final int keyLength = data.getInt(address + 4);
+            final int valueLength = data.getInt(address + 8);
+            if (keyLength < 0 || valueLength < TOMBSTONE
+                    || (long) address + RECORD_HEADER_SIZE + keyLength + Math.max(valueLength, 0) > writeOffset) {
+                break;
+            }
+            final ByteBuffer keyBytes = data.slice(address + RECORD_HEADER_SIZE, keyLength);
+            // Hashed again instead of trusting the hash of the record, which may be torn like the rest of the log
+            final int hash = Hashing.hash(keyBytes);
+            final int slot = findSlot(hash, keyBytes);
+            if (slot >= 0) {
+                liveBytes -= recordSize((int) index.addressAt(slot));
+            }
+            if (valueLength == TOMBSTONE) {
+                if (slot >= 0) {
+                    index.remove(slot);
+                    size--;
+                }
+            } else if (slot >= 0) {
+                index.setAddressAt(slot, address);
+                liveBytes += recordSize(address);
+            } else {
+                if (size + 1 > index.slots() / 2) {
+                    rehash(index.slots() * 2);
+                }
+                index.insert(hash, address);
+                liveBytes += recordSize(address);
+                size++;
+            }
+            address += recordSize(address);
+        }
+        writeOffset = address;
+        writeHeader();
+    }
+}
@@ -0,0 +1,375 @@
+package at.schrer.utils.structures;
+
+import at.schrer.utils.structures.codec.Codec;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * A map that keeps its keys and values outside of the Java heap.
+ * Mappings are serialized with a key and a value {@link Codec} into records, which are appended to direct
+ * {@link ByteBuffer} chunks. The chunks start small and double in size up to 256 MiB each.
+ * <p>
+ * The hash index is off heap as well: an open addressing table with linear probing in a direct buffer, whose slots hold
+ * the hash of the key and the address of its record. Keys are hashed and compared by their encoded bytes, so a key
+ * codec has to encode equal keys to equal bytes, while the hashCode of the keys is never used.
+ * <p>
+ * Replacing a value of the same encoded size overwrites it in place, otherwise the new record is appended and the old
+ * one becomes garbage. Once there is more garbage than live data, the records are compacted into new chunks.
+ * <p>
+ * Direct buffers can not be freed explicitly. {@link #close()} drops all of them, so they can be collected, and makes
+ * further use of the map fail. Neither null keys nor null values are permitted. The map is not thread safe.
+ *
+ * @param <K> type of the key
+ * @param <V> type of the value
+ */
+public class OffHeapMap<K, V> implements AutoCloseable {
+
+    private static final int DEFAULT_INIT_SIZE = 30;
+    private static final int MIN_CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_CHUNK_SIZE = 256 * 1024 * 1024;
+    private static final int MAX_SLOTS = 1 << 26;
+
+    // Record: [int hash][int key length][int value length][key bytes][value bytes]
+    private static final int RECORD_HEADER_SIZE = 12;
+
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    private final int initialSlots;
+
+    private List<ByteBuffer> chunks = new ArrayList<>();
+    private int writeOffset;
+
+    private BufferIndex index;
+    private int size;
+
+    private long liveBytes;
+    private long garbageBytes;
+
+    private ByteBuffer keyBuffer = ByteBuffer.allocate(64);
+    private ByteBuffer valueBuffer = ByteBuffer.allocate(64);
+    private boolean closed;
+
+    public OffHeapMap(Codec<K> keyCodec, Codec<V> valueCodec) {
+        this(keyCodec, valueCodec, DEFAULT_INIT_SIZE);
+    }
+
+    public OffHeapMap(Codec<K> keyCodec, Codec<V> valueCodec, int initialSize) {
+        if (initialSize < 1) {
+            initialSize = DEFAULT_INIT_SIZE;
+        }
+        this.keyCodec = Objects.requireNonNull(keyCodec);
+        this.valueCodec = Objects.requireNonNull(valueCodec);
+        this.initialSlots = Math.min(MAX_SLOTS, Hashing.tableSizeFor(initialSize));
+        allocateIndex(initialSlots);
+    }
+
+    public int size() {
+        ensureOpen();
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean containsKey(K key) {
+        ensureOpen();
+        return findSlot(encodeKey(key)) >= 0;
+    }
+
+    /**
+     * @param key the key to look for
+     * @return a newly decoded copy of the value mapped to the key, or null if there is none
+     */
+    public V get(K key) {
+        ensureOpen();
+        final int slot = findSlot(encodeKey(key));
+        if (slot < 0) {
+            return null;
+        }
+        return decodeValue(index.addressAt(slot));
+    }
+
+    /**
+     * @param key the key to map the value to
+     * @param value the value
+     * @return the value previously mapped to the key, or null if there was none
+     */
+    public V put(K key, V value) {
+        ensureOpen();
+        Objects.requireNonNull(value);
+        final ByteBuffer keyBytes = encodeKey(key);
+        final int hash = Hashing.hash(keyBytes);
+        final ByteBuffer valueBytes = encodeValue(value);
+
+        final int slot = findSlot(hash, keyBytes);
+        if (slot >= 0) {
+            final long address = index.addressAt(slot);
+            final V oldValue = decodeValue(address);
+            final ByteBuffer chunk = chunkOf(address);
+            final int offset = offsetOf(address);
+            final int oldValueLength = chunk.getInt(offset + 8);
+            if (oldValueLength == valueBytes.remaining()) {
+                chunk.put(offset + RECORD_HEADER_SIZE + keyBytes.remaining(), valueBytes, 0, oldValueLength);
+            } else {
+                final int oldRecordSize = RECORD_HEADER_SIZE + keyBytes.remaining() + oldValueLength;
+                index.setAddressAt(slot, appendRecord(hash, keyBytes, valueBytes));
+                liveBytes -= oldRecordSize;
+                garbageBytes += oldRecordSize;
+                compactIfNeeded();
+            }
+            return oldValue;
+        }
+
+        if (size + 1 > index.slots() / 2) {
+            if (index.slots() == MAX_SLOTS) {
+                throw new IllegalStateException("Map is full");
+            }
+            rehash(index.slots() * 2);
+        }
+        index.insert(hash, appendRecord(hash, keyBytes, valueBytes));
+        size++;
+        return null;
+    }
+
+    /**
+     * @param key the key to remove
+     * @return the value that was mapped to the key, or null if there was none
+     */
+    public V remove(K key) {
+        ensureOpen();
+        final int slot = findSlot(encodeKey(key));
+        if (slot < 0) {
+            return null;
+        }
+        final long address = index.addressAt(slot);
+        final V oldValue = decodeValue(address);
+        final int recordSize = recordSize(address);
+        index.remove(slot);
+        size--;
+        liveBytes -= recordSize;
+        garbageBytes += recordSize;
+        compactIfNeeded();
+        return oldValue;
+    }
+
+    public void clear() {
+        ensureOpen();
+        chunks = new ArrayList<>();
+        writeOffset = 0;
+        size = 0;
+        liveBytes = 0;
+        garbageBytes = 0;
+        // Back to the size the map was created with, a presized map should not grow again
+        allocateIndex(initialSlots);
+    }
+
+    /**
+     * Decodes and visits all mappings, in no particular order.
+     *
+     * @param action the action to call for every mapping
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        ensureOpen();
+        for (int slot = 0; slot < index.slots(); slot++) {
+            if (index.isFree(slot)) {
+                continue;
+            }
+            final long address = index.addressAt(slot);
+            final ByteBuffer chunk = chunkOf(address);
+            final int offset = offsetOf(address);
+            final int keyLength = chunk.getInt(offset + 4);
+            final K key = keyCodec.decode(chunk.slice(offset + RECORD_HEADER_SIZE, keyLength));
+            action.accept(key, decodeValue(address));
+        }
+    }
+
+    /**
+     * Copies all live records into new chunks, so the space of replaced and removed records is released.
+     */
+    public void compact() {
+        ensureOpen();
+        final List<ByteBuffer> oldChunks = chunks;
+        chunks = new ArrayList<>();
+        writeOffset = 0;
+        for (int slot = 0; slot < index.slots(); slot++) {
+            if (index.isFree(slot)) {
+                continue;
+            }
+            final long address = index.addressAt(slot);
+            final ByteBuffer oldChunk = oldChunks.get(chunkIndexOf(address));
+            final int oldOffset = offsetOf(address);
+            final int recordSize = RECORD_HEADER_SIZE + oldChunk.getInt(oldOffset + 4) + oldChunk.getInt(oldOffset + 8);
+
+            final long newAddress = reserve(recordSize);
+            chunkOf(newAddress).put(offsetOf(newAddress), oldChunk, oldOffset, recordSize);
+            index.setAddressAt(slot, newAddress);
+        }
+        garbageBytes = 0;
+    }
+
+    /**
+     * @return the number of bytes allocated outside the heap, for the index and all chunks
+     */
+    public long offHeapBytes() {
+        ensureOpen();
+        long bytes = BufferIndex.bytesFor(index.slots());
+        for (ByteBuffer chunk : chunks) {
+            bytes += chunk.capacity();
+        }
+        return bytes;
+    }
+
+    /**
+     * Drops all buffers of this map. Any further use of the map throws an {@link IllegalStateException}.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        chunks = null;
+        index = null;
+        keyBuffer = null;
+        valueBuffer = null;
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Map is closed");
+        }
+    }
+
+    // Encoding
+
+    private ByteBuffer encodeKey(K key) {
+        Objects.requireNonNull(key);
+        keyBuffer = encode(keyCodec, key, keyBuffer);
+        return keyBuffer;
+    }
+
+    private ByteBuffer encodeValue(V value) {
+        valueBuffer = encode(valueCodec, value, valueBuffer);
+        return valueBuffer;
+    }
+
+    /**
+     * Encodes a value into the buffer, or into a larger one if it does not fit.
+     *
+     * @return the buffer holding the encoded value between position 0 and its limit
+     */
+    private static <T> ByteBuffer encode(Codec<T> codec, T value, ByteBuffer buffer) {
+        final int encodedSize = codec.encodedSize(value);
+        if (buffer.capacity() < encodedSize) {
+            buffer = ByteBuffer.allocate(Math.max(encodedSize, buffer.capacity() * 2));
+        }
+        buffer.clear();
+        codec.encode(value, buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    private V decodeValue(long address) {
+        final ByteBuffer chunk = chunkOf(address);
+        final int offset = offsetOf(address);
+        final int keyLength = chunk.getInt(offset + 4);
+        final int valueLength = chunk.getInt(offset + 8);
+        return valueCodec.decode(chunk.slice(offset + RECORD_HEADER_SIZE + keyLength, valueLength));
+    }
+
+    // Records, an address holds the chunk index in the upper and the offset in the chunk in the lower 32 bits
+
+    private static int chunkIndexOf(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int offsetOf(long address) {
+        return (int) address;
+    }
+
+    private ByteBuffer chunkOf(long address) {
+        return chunks.get(chunkIndexOf(address));
+    }
+
+    private int recordSize(long address) {
+        final ByteBuffer chunk = chunkOf(address);
+        final int offset = offsetOf(address);
+        return RECORD_HEADER_SIZE + chunk.getInt(offset + 4) + chunk.getInt(offset + 8);
+    }
+
+    private long appendRecord(int hash, ByteBuffer keyBytes, ByteBuffer valueBytes) {
+        final int keyLength = keyBytes.remaining();
+        final int valueLength = valueBytes.remaining();
+        final int recordSize = RECORD_HEADER_SIZE + keyLength + valueLength;
+        final long address = reserve(recordSize);
+
+        final ByteBuffer chunk = chunkOf(address);
+        final int offset = offsetOf(address);
+        chunk.putInt(offset, hash);
+        chunk.putInt(offset + 4, keyLength);
+        chunk.putInt(offset + 8, valueLength);
+        chunk.put(offset + RECORD_HEADER_SIZE, keyBytes, 0, keyLength);
+        chunk.put(offset + RECORD_HEADER_SIZE + keyLength, valueBytes, 0, valueLength);
+        liveBytes += recordSize;
+        return address;
+    }
+
+    /**
+     * Reserves space for a record at the end of the last chunk, or in a new chunk if it does not fit.
+     *
+     * @return the address of the reserved space
+     */
+    private long reserve(int recordSize) {
+        if (chunks.isEmpty() || writeOffset + recordSize > chunks.getLast().capacity()) {
+            final int nextSize = chunks.isEmpty()
+                    ? MIN_CHUNK_SIZE
+                    : (int) Math.min(MAX_CHUNK_SIZE, chunks.getLast().capacity() * 2L);
+            chunks.add(ByteBuffer.allocateDirect(Math.max(nextSize, recordSize)));
+            writeOffset = 0;
+        }
+        final long address = ((long) (chunks.size() - 1) << 32) | writeOffset;
+        writeOffset += recordSize;
+        return address;
+    }
+
+    private void compactIfNeeded() {
+        if (garbageBytes > liveBytes && garbageBytes >= MIN_CHUNK_SIZE) {
+            compact();
+        }
+    }
+
+    // Index
+
+    private void allocateIndex(int slots) {
+        this.index = new BufferIndex(ByteBuffer.allocateDirect((int) BufferIndex.bytesFor(slots)), 0, slots);
+    }
+
+    private int findSlot(ByteBuffer keyBytes) {
+        return findSlot(Hashing.hash(keyBytes), keyBytes);
+    }
+
+    /**
+     * @param hash the hash of the encoded key
+     * @param keyBytes the encoded key
+     * @return the slot of the key or -1 if it is not in the index
+     */
+    private int findSlot(int hash, ByteBuffer keyBytes) {
+        return index.find(hash, address -> keyEquals(address, keyBytes));
+    }
+
+    private boolean keyEquals(long address, ByteBuffer keyBytes) {
+        final ByteBuffer chunk = chunkOf(address);
+        final int offset = offsetOf(address);
+        final int keyLength = chunk.getInt(offset + 4);
+        return keyLength == keyBytes.remaining()
+                && keyBytes.mismatch(chunk.slice(offset + RECORD_HEADER_SIZE, keyLength)) < 0;
+    }
+
+    private void rehash(int slots) {
+        final BufferIndex oldIndex = index;
+        allocateIndex(slots);
+        oldIndex.copyTo(index);
+    }
+}
@@ -0,0 +1,324 @@
+package at.schrer.utils.structures;
+
+import java.util.*;
+
+/**
+ * An immutable list, that is changed by creating new versions. {@link #with(Object)} appends an element,
+ * {@link #with(int, Object)} replaces one and {@link #withoutLast()} removes the last one. Each of them returns a new
+ * list in O(log32 n), which shares all but a handful of arrays with the old one.
+ * <p>
+ * The elements are kept in a tree of arrays with 32 slots each, a bit partitioned vector trie: every level of the tree
+ * takes 5 bits of the index. The last up to 32 elements are kept in a separate tail array outside of the tree, so
+ * appending mostly copies just the tail.
+ * <p>
+ * As nothing is ever changed in place, a list can be handed to any number of reader threads without locking or
+ * copying. Once it is published, for example through a volatile field, every thread sees the complete version.
+ * The methods of {@link List} that would change the list throw an {@link UnsupportedOperationException}.
+ *
+ * @param <T> type of the elements
+ */
+public final class PersistentSomeList<T> extends AbstractList<T> {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final Object[] EMPTY_NODE = new Object[WIDTH];
+    private static final PersistentSomeList<?> EMPTY = new PersistentSomeList<>(0, BITS, EMPTY_NODE, new Object[0]);
+
+    private final int size;
+    // Number of index bits below the root, a multiple of 5 and at least 5
+    private final int shift;
+    private final Object[] root;
+    private final Object[] tail;
+
+    private PersistentSomeList(int size, int shift, Object[] root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> PersistentSomeList<T> empty() {
+        return (PersistentSomeList<T>) EMPTY;
+    }
+
+    @SafeVarargs
+    public static <T> PersistentSomeList<T> of(T... elements) {
+        return build(Arrays.copyOf(elements, elements.length, Object[].class));
+    }
+
+    /**
+     * Creates a list of the elements of a collection. The tree is built bottom up, without any intermediate versions.
+     */
+    public static <T> PersistentSomeList<T> from(Collection<? extends T> c) {
+        if (c instanceof PersistentSomeList<?>) {
+            @SuppressWarnings("unchecked")
+            final PersistentSomeList<T> list = (PersistentSomeList<T>) c;
+            return list;
+        }
+        return build(c.toArray());
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        Objects.checkIndex(index, size);
+        return (T) arrayFor(index)[index & MASK];
+    }
+
+    /**
+     * @return a new list with the element appended
+     */
+    public PersistentSomeList<T> with(T element) {
+        final int tailLength = size - tailOffset();
+        if (tailLength < WIDTH) {
+            final Object[] newTail = Arrays.copyOf(tail, tailLength + 1);
+            newTail[tailLength] = element;
+            return new PersistentSomeList<>(size + 1, shift, root, newTail);
+        }
+
+        // The tail is full, it moves into the tree and the element starts a new tail
+        final Object[] newRoot;
+        int newShift = shift;
+        if ((size >>> BITS) > (1 << shift)) {
+            // The tree is full, it becomes the first child of a new root
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(shift, root, tail);
+        }
+        return new PersistentSomeList<>(size + 1, newShift, newRoot, new Object[] {element});
+    }
+
+    /**
+     * @return a new list with the element at the index replaced
+     */
+    public PersistentSomeList<T> with(int index, T element) {
+        Objects.checkIndex(index, size);
+        if (index >= tailOffset()) {
+            final Object[] newTail = tail.clone();
+            newTail[index & MASK] = element;
+            return new PersistentSomeList<>(size, shift, root, newTail);
+        }
+        return new PersistentSomeList<>(size, shift, replace(shift, root, index, element), tail);
+    }
+
+    /**
+     * @return a new list without the last element
+     * @throws NoSuchElementException if the list is empty
+     */
+    public PersistentSomeList<T> withoutLast() {
+        if (size == 0) {
+            throw new NoSuchElementException("List is empty");
+        }
+        if (size == 1) {
+            return empty();
+        }
+        if (size - tailOffset() > 1) {
+            return new PersistentSomeList<>(size - 1, shift, root, Arrays.copyOf(tail, tail.length - 1));
+        }
+
+        // The tail becomes empty, the last leaf of the tree takes its place
+        final Object[] newTail = arrayFor(size - 2);
+        Object[] newRoot = popTail(shift, root);
+        int newShift = shift;
+        if (newRoot == null) {
+            newRoot = EMPTY_NODE;
+        }
+        if (shift > BITS && newRoot[1] == null) {
+            newRoot = (Object[]) newRoot[0];
+            newShift -= BITS;
+        }
+        return new PersistentSomeList<>(size - 1, newShift, newRoot, newTail);
+    }
+
+    /**
+     * Returns a new list without the element at the index. Unless it is the last element, the following elements
+     * change their index, so the list is built anew in O(n).
+     */
+    public PersistentSomeList<T> without(int index) {
+        Objects.checkIndex(index, size);
+        if (index == size - 1) {
+            return withoutLast();
+        }
+        final Object[] elements = new Object[size - 1];
+        int i = 0;
+        for (T element : this) {
+            if (i != index) {
+                elements[i < index ? i : i - 1] = element;
+            }
+            i++;
+        }
+        return build(elements);
+    }
+
+    /**
+     * @return a new list with all elements of the collection appended
+     */
+    public PersistentSomeList<T> withAll(Collection<? extends T> c) {
+        PersistentSomeList<T> result = this;
+        for (T element : c) {
+            result = result.with(element);
+        }
+        return result;
+    }
+
+    /**
+     * Reads the leaf arrays one after another, instead of walking down the tree for every element.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<>() {
+            private int index = 0;
+            private Object[] leaf = tail;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                if ((index & MASK) == 0) {
+                    leaf = arrayFor(index);
+                }
+                return (T) leaf[index++ & MASK];
+            }
+        };
+    }
+
+    /**
+     * @return the index of the first element in the tail, all elements before it are in the tree
+     */
+    private int tailOffset() {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    /**
+     * @return the leaf array or the tail holding the index
+     */
+    private Object[] arrayFor(int index) {
+        if (index >= tailOffset()) {
+            return tail;
+        }
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return node;
+    }
+
+    private static Object[] replace(int level, Object[] node, int index, Object element) {
+        final Object[] copy = node.clone();
+        if (level == 0) {
+            copy[index & MASK] = element;
+        } else {
+            final int child = (index >>> level) & MASK;
+            copy[child] = replace(level - BITS, (Object[]) node[child], index, element);
+        }
+        return copy;
+    }
+
+    /**
+     * Copies the path to the last leaf and appends a full tail as a new leaf.
+     */
+    private Object[] pushTail(int level, Object[] parent, Object[] tailNode) {
+        final int child = ((size - 1) >>> level) & MASK;
+        final Object[] copy = parent.clone();
+        if (level == BITS) {
+            copy[child] = tailNode;
+        } else {
+            final Object[] existing = (Object[]) parent[child];
+            copy[child] = existing != null
+                    ? pushTail(level - BITS, existing, tailNode)
+                    : newPath(level - BITS, tailNode);
+        }
+        return copy;
+    }
+
+    /**
+     * Wraps a leaf into single child nodes, until it reaches the given level.
+     */
+    private static Object[] newPath(int level, Object[] leaf) {
+        if (level == 0) {
+            return leaf;
+        }
+        final Object[] node = new Object[WIDTH];
+        node[0] = newPath(level - BITS, leaf);
+        return node;
+    }
+
+    /**
+     * Copies the path to the last leaf without that leaf.
+     *
+     * @return the new node, or null if it would be empty
+     */
+    private Object[] popTail(int level, Object[] node) {
+        final int child = ((size - 2) >>> level) & MASK;
+        if (level > BITS) {
+            final Object[] newChild = popTail(level - BITS, (Object[]) node[child]);
+            if (newChild == null && child == 0) {
+                return null;
+            }
+            final Object[] copy = node.clone();
+            copy[child] = newChild;
+            return copy;
+        }
+        if (child == 0) {
+            return null;
+        }
+        final Object[] copy = node.clone();
+        copy[child] = null;
+        return copy;
+    }
+
+    /**
+     * Builds a list from an array it may keep parts of. The full leaves go into the tree, level by level, and the
+     * remaining elements into the tail.
+     */
+    private static <T> PersistentSomeList<T> build(Object[] elements) {
+        final int size = elements.length;
+        if (size == 0) {
+            return empty();
+        }
+        final int tailOffset = size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+        final Object[] tail = Arrays.copyOfRange(elements, tailOffset, size);
+
+        List<Object[]> nodes = new ArrayList<>();
+        for (int start = 0; start < tailOffset; start += WIDTH) {
+            nodes.add(Arrays.copyOfRange(elements, start, start + WIDTH));
+        }
+        int shift = BITS;
+        while (nodes.size() > WIDTH) {
+            final List<Object[]> parents = new ArrayList<>();
+            for (int start = 0; start < nodes.size(); start += WIDTH) {
+                final Object[] parent = new Object[WIDTH];
+                final int end = Math.min(start + WIDTH, nodes.size());
+                for (int i = start; i < end; i++) {
+                    parent[i - start] = nodes.get(i);
+                }
+                parents.add(parent);
+            }
+            nodes = parents;
+            shift += BITS;
+        }
+        final Object[] root = nodes.isEmpty() ? EMPTY_NODE : new Object[WIDTH];
+        for (int i = 0; i < nodes.size(); i++) {
+            root[i] = nodes.get(i);
+        }
+        return new PersistentSomeList<>(size, shift, root, tail);
+    }
+}
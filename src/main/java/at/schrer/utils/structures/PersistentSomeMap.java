@@ -0,0 +1,420 @@
+package at.schrer.utils.structures;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable map, that is changed by creating new versions. {@link #with} adds or replaces a mapping and
+ * {@link #without} removes one. Both return a new map in O(log32 n), which shares all but the nodes on the path to the
+ * key with the old one.
+ * <p>
+ * The entries are kept in a hash array mapped trie. Every level of the trie takes 5 bits of the spread hash of a key.
+ * A node only allocates slots for the parts of the hash that are used, a bitmap tells which ones. Keys whose full
+ * hashes are equal share a collision node.
+ * <p>
+ * As nothing is ever changed in place, a map can be handed to any number of reader threads without locking or
+ * copying. The methods of {@link Map} that would change the map throw an {@link UnsupportedOperationException}.
+ * Null keys and values are not permitted.
+ *
+ * @param <K> type of the key
+ * @param <V> type of the value
+ */
+public final class PersistentSomeMap<K, V> extends AbstractMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final PersistentSomeMap<?, ?> EMPTY = new PersistentSomeMap<>(BitmapNode.EMPTY, 0);
+
+    private final Node root;
+    private final int size;
+
+    private EntrySet entrySet;
+
+    private PersistentSomeMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentSomeMap<K, V> empty() {
+        return (PersistentSomeMap<K, V>) EMPTY;
+    }
+
+    public static <K, V> PersistentSomeMap<K, V> from(Map<? extends K, ? extends V> m) {
+        return PersistentSomeMap.<K, V>empty().withAll(m);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (key == null) {
+            return null;
+        }
+        return (V) root.find(0, Hashing.hash(key), key);
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        final V value = get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * @return a new map with the key mapped to the value, or this map if it maps the key to the value already
+     */
+    public PersistentSomeMap<K, V> with(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        final Change change = new Change();
+        final Node newRoot = root.with(0, Hashing.hash(key), key, value, change);
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentSomeMap<>(newRoot, change.added ? size + 1 : size);
+    }
+
+    /**
+     * @return a new map without the key, or this map if it does not contain the key
+     */
+    public PersistentSomeMap<K, V> without(Object key) {
+        if (key == null) {
+            return this;
+        }
+        final Node newRoot = root.without(0, Hashing.hash(key), key);
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentSomeMap<>(newRoot == null ? BitmapNode.EMPTY : newRoot, size - 1);
+    }
+
+    /**
+     * @return a new map with all mappings of the given map added
+     */
+    public PersistentSomeMap<K, V> withAll(Map<? extends K, ? extends V> m) {
+        PersistentSomeMap<K, V> result = this;
+        for (Map.Entry<? extends K, ? extends V> entry : m.entrySet()) {
+            result = result.with(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Walks the trie directly, without creating entry objects.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        root.forEach((BiConsumer<Object, Object>) action);
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    /**
+     * Tells whether a change added a new key or replaced the value of an existing one.
+     */
+    private static final class Change {
+        private boolean added;
+    }
+
+    private interface Node {
+        /**
+         * @return the value of the key, or null if it is not in this node
+         */
+        Object find(int shift, int hash, Object key);
+
+        /**
+         * @return a new node with the mapping, or this node if nothing changed
+         */
+        Node with(int shift, int hash, Object key, Object value, Change change);
+
+        /**
+         * @return a new node without the key, this node if it does not contain the key, or null if the node is empty
+         */
+        Node without(int shift, int hash, Object key);
+
+        void forEach(BiConsumer<Object, Object> action);
+
+        /**
+         * @return the array of this node, holding key and value pairs, or null and a child node
+         */
+        Object[] array();
+    }
+
+    /**
+     * A node with up to 32 slots, one for every value of the 5 hash bits of its level. Only used slots are allocated,
+     * the bitmap has a bit set for each of them. A slot takes two array elements: a key and its value, or null and a
+     * child node.
+     */
+    private record BitmapNode(int bitmap, Object[] array) implements Node {
+        private static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        @Override
+        public Object find(int shift, int hash, Object key) {
+            final int bit = bitFor(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            final int index = indexOf(bit);
+            final Object keyOrNull = array[index];
+            final Object valueOrNode = array[index + 1];
+            if (keyOrNull == null) {
+                return ((Node) valueOrNode).find(shift + BITS, hash, key);
+            }
+            return key.equals(keyOrNull) ? valueOrNode : null;
+        }
+
+        @Override
+        public Node with(int shift, int hash, Object key, Object value, Change change) {
+            final int bit = bitFor(hash, shift);
+            final int index = indexOf(bit);
+            if ((bitmap & bit) == 0) {
+                final Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, index);
+                newArray[index] = key;
+                newArray[index + 1] = value;
+                System.arraycopy(array, index, newArray, index + 2, array.length - index);
+                change.added = true;
+                return new BitmapNode(bitmap | bit, newArray);
+            }
+
+            final Object keyOrNull = array[index];
+            final Object valueOrNode = array[index + 1];
+            if (keyOrNull == null) {
+                final Node child = (Node) valueOrNode;
+                final Node newChild = child.with(shift + BITS, hash, key, value, change);
+                return newChild == child ? this : copyAndSet(index, null, newChild);
+            }
+            if (key.equals(keyOrNull)) {
+                return value == valueOrNode ? this : copyAndSet(index, keyOrNull, value);
+            }
+            // Two keys share the slot, they move into a child node
+            change.added = true;
+            final Node child = createNode(shift + BITS, keyOrNull, valueOrNode, hash, key, value);
+            return copyAndSet(index, null, child);
+        }
+
+        @Override
+        public Node without(int shift, int hash, Object key) {
+            final int bit = bitFor(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            final int index = indexOf(bit);
+            final Object keyOrNull = array[index];
+            final Object valueOrNode = array[index + 1];
+            if (keyOrNull == null) {
+                final Node child = (Node) valueOrNode;
+                final Node newChild = child.without(shift + BITS, hash, key);
+                if (newChild == child) {
+                    return this;
+                }
+                if (newChild != null) {
+                    return copyAndSet(index, null, newChild);
+                }
+            } else if (!key.equals(keyOrNull)) {
+                return this;
+            }
+            if (bitmap == bit) {
+                return null;
+            }
+            final Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, index);
+            System.arraycopy(array, index + 2, newArray, index, array.length - index - 2);
+            return new BitmapNode(bitmap ^ bit, newArray);
+        }
+
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null) {
+                    ((Node) array[i + 1]).forEach(action);
+                } else {
+                    action.accept(array[i], array[i + 1]);
+                }
+            }
+        }
+
+        private int indexOf(int bit) {
+            return 2 * Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        private BitmapNode copyAndSet(int index, Object key, Object valueOrNode) {
+            final Object[] newArray = array.clone();
+            newArray[index] = key;
+            newArray[index + 1] = valueOrNode;
+            return new BitmapNode(bitmap, newArray);
+        }
+
+        private static int bitFor(int hash, int shift) {
+            return 1 << ((hash >>> shift) & MASK);
+        }
+
+        private static Node createNode(int shift, Object key1, Object value1, int hash2, Object key2, Object value2) {
+            final int hash1 = Hashing.hash(key1);
+            if (hash1 == hash2) {
+                return new CollisionNode(hash1, new Object[] {key1, value1, key2, value2});
+            }
+            final Change ignored = new Change();
+            return EMPTY.with(shift, hash1, key1, value1, ignored).with(shift, hash2, key2, value2, ignored);
+        }
+    }
+
+    /**
+     * The keys of a collision node all have the same hash, they are kept as key and value pairs and searched linearly.
+     */
+    private record CollisionNode(int hash, Object[] array) implements Node {
+
+        @Override
+        public Object find(int shift, int hash, Object key) {
+            final int index = indexOf(key);
+            return index < 0 ? null : array[index + 1];
+        }
+
+        @Override
+        public Node with(int shift, int hash, Object key, Object value, Change change) {
+            if (hash != this.hash) {
+                // A key with another hash ends up here, this node moves one level down
+                final BitmapNode parent = new BitmapNode(BitmapNode.bitFor(this.hash, shift), new Object[] {null, this});
+                return parent.with(shift, hash, key, value, change);
+            }
+            final int index = indexOf(key);
+            if (index >= 0) {
+                if (array[index + 1] == value) {
+                    return this;
+                }
+                final Object[] newArray = array.clone();
+                newArray[index + 1] = value;
+                return new CollisionNode(hash, newArray);
+            }
+            final Object[] newArray = Arrays.copyOf(array, array.length + 2);
+            newArray[array.length] = key;
+            newArray[array.length + 1] = value;
+            change.added = true;
+            return new CollisionNode(hash, newArray);
+        }
+
+        @Override
+        public Node without(int shift, int hash, Object key) {
+            final int index = indexOf(key);
+            if (index < 0) {
+                return this;
+            }
+            if (array.length == 2) {
+                return null;
+            }
+            final Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, index);
+            System.arraycopy(array, index + 2, newArray, index, array.length - index - 2);
+            return new CollisionNode(hash, newArray);
+        }
+
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                action.accept(array[i], array[i + 1]);
+            }
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Map.Entry<?, ?> entry
+                    && entry.getValue() != null
+                    && entry.getValue().equals(get(entry.getKey()));
+        }
+    }
+
+    /**
+     * Walks the trie depth first, with an explicit stack of the node arrays and the positions in them.
+     */
+    private final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        // 7 levels of 5 bits cover the hash, one more for collision nodes
+        private final Object[][] arrays = new Object[8][];
+        private final int[] positions = new int[8];
+        private int depth = 0;
+
+        EntryIterator() {
+            arrays[0] = root.array();
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return depth >= 0;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Map.Entry<K, V> next() {
+            if (depth < 0) {
+                throw new NoSuchElementException();
+            }
+            final Object[] array = arrays[depth];
+            final int position = positions[depth];
+            positions[depth] += 2;
+            final Map.Entry<K, V> entry = new AbstractMap.SimpleImmutableEntry<>(
+                    (K) array[position], (V) array[position + 1]);
+            advance();
+            return entry;
+        }
+
+        /**
+         * Moves to the next key and value pair, descending into child nodes and returning from finished ones.
+         * The depth becomes -1 once all nodes are done.
+         */
+        private void advance() {
+            while (depth >= 0) {
+                final Object[] array = arrays[depth];
+                final int position = positions[depth];
+                if (position >= array.length) {
+                    depth--;
+                } else if (array[position] == null) {
+                    positions[depth] += 2;
+                    depth++;
+                    arrays[depth] = ((Node) array[position + 1]).array();
+                    positions[depth] = 0;
+                } else {
+                    return;
+                }
+            }
+        }
+    }
+}
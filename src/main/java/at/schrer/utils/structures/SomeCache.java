@@ -0,0 +1,582 @@
+package at.schrer.utils.structures;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * A bounded cache based on a {@link SomeMap}, which maps every key to a node holding the value.
+ * The nodes are additionally linked into access order queues, so finding the entry to evict is O(1).
+ * <p>
+ * Two eviction policies are available:
+ * <ul>
+ *     <li>{@link Policy#LRU} evicts the least recently used entry.</li>
+ *     <li>{@link Policy#TINY_LFU} is W-TinyLFU. New entries enter a small LRU window. When they drop out of the window,
+ *     they only make it into the main space, if they were accessed more often recently than the entry they would
+ *     replace there. The main space is a segmented LRU with a probation and a protected part, entries are promoted to
+ *     the protected part when they are accessed again. Access frequencies are estimated with a {@link FrequencySketch}.
+ *     </li>
+ * </ul>
+ * The cache is bounded by the number of entries, or by their total weight if a weigher is given. Entries can expire a
+ * fixed time after they were written. Expired entries are removed when the cache is used, or by {@link #cleanUp()}.
+ * <p>
+ * Hits, misses and evictions are counted and can be read with {@link #stats()}.
+ * Instances are created with {@link #builder()}. The cache is not thread safe.
+ *
+ * @param <K> type of the key
+ * @param <V> type of the value
+ */
+public class SomeCache<K extends Comparable<K>, V> {
+
+    private static final int WINDOW_PERCENT = 1;
+    private static final int PROTECTED_PERCENT = 80;
+
+    private final SomeMap<K, Node<K, V>> data;
+    private final Policy policy;
+    private final long maximumWeight;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final ToIntBiFunction<? super K, ? super V> weigher;
+    private final long expireAfterWriteNanos;
+    private final LongSupplier ticker;
+    private final EvictionListener<? super K, ? super V> evictionListener;
+    private final FrequencySketch sketch;
+
+    private final AccessQueue<K, V> window = new AccessQueue<>();
+    private final AccessQueue<K, V> probation = new AccessQueue<>();
+    private final AccessQueue<K, V> protectedQueue = new AccessQueue<>();
+    private final WriteQueue<K, V> writeQueue = new WriteQueue<>();
+    private long weightedSize;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    private SomeCache(Builder<K, V> builder) {
+        this.policy = builder.policy;
+        this.maximumWeight = builder.maximumWeight;
+        this.weigher = builder.weigher;
+        this.expireAfterWriteNanos = builder.expireAfterWriteNanos;
+        this.ticker = builder.ticker;
+        this.evictionListener = builder.evictionListener;
+
+        if (policy == Policy.TINY_LFU) {
+            this.windowMaximum = Math.max(1, maximumWeight * WINDOW_PERCENT / 100);
+            this.protectedMaximum = (maximumWeight - windowMaximum) * PROTECTED_PERCENT / 100;
+            this.sketch = new FrequencySketch(maximumWeight);
+        } else {
+            this.windowMaximum = 0;
+            this.protectedMaximum = 0;
+            this.sketch = null;
+        }
+        this.data = new SomeMap<>((int) Math.min(maximumWeight, builder.initialSize));
+    }
+
+    public static <K extends Comparable<K>, V> Builder<K, V> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Returns the value cached for a key and counts a hit or a miss.
+     *
+     * @param key the key to look for
+     * @return the cached value or null if there is none
+     */
+    public V get(K key) {
+        Objects.requireNonNull(key);
+        expireEntries();
+        final Node<K, V> node = data.get(key);
+        if (node == null) {
+            missCount++;
+            recordAccess(key);
+            return null;
+        }
+        hitCount++;
+        onAccess(node);
+        return node.value;
+    }
+
+    /**
+     * Returns the value cached for a key, or loads and caches it on a miss.
+     *
+     * @param key the key to look for
+     * @param loader called with the key on a miss, if it returns null nothing is cached
+     * @return the cached or loaded value
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        Objects.requireNonNull(key);
+        expireEntries();
+        final Node<K, V> node = data.get(key);
+        if (node != null) {
+            hitCount++;
+            onAccess(node);
+            return node.value;
+        }
+
+        // The access is recorded by put, so it is not counted twice
+        missCount++;
+        final V loaded = loader.apply(key);
+        if (loaded != null) {
+            put(key, loaded);
+        } else {
+            recordAccess(key);
+        }
+        return loaded;
+    }
+
+    /**
+     * Caches a value. This might evict other entries, or even the new one if it is too heavy.
+     *
+     * @param key the key of the value
+     * @param value the value
+     * @return the value previously cached for the key or null if there was none
+     */
+    public V put(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        expireEntries();
+        final int weight = weigher.applyAsInt(key, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("Weight must not be negative");
+        }
+        if (weight > maximumWeight) {
+            // It could never fit, so it is evicted right away instead of flushing the whole cache for it
+            final V oldValue = invalidate(key);
+            evictionCount++;
+            if (evictionListener != null) {
+                evictionListener.onEviction(key, value, EvictionCause.SIZE);
+            }
+            return oldValue;
+        }
+
+        Node<K, V> node = data.get(key);
+        final V oldValue;
+        if (node == null) {
+            node = new Node<>(key, value, weight);
+            data.put(key, node);
+            weightedSize += weight;
+            if (policy == Policy.TINY_LFU) {
+                node.region = Region.WINDOW;
+                window.addLast(node);
+            } else {
+                node.region = Region.PROBATION;
+                probation.addLast(node);
+            }
+            recordAccess(key);
+            oldValue = null;
+        } else {
+            oldValue = node.value;
+            node.value = value;
+            final AccessQueue<K, V> queue = queueFor(node.region);
+            queue.remove(node);
+            weightedSize += weight - node.weight;
+            node.weight = weight;
+            queue.addLast(node);
+            writeQueue.remove(node);
+            onAccess(node);
+        }
+        node.writeTime = ticker.getAsLong();
+        writeQueue.addLast(node);
+
+        evictIfNeeded();
+        return oldValue;
+    }
+
+    /**
+     * Checks whether a value is cached for a key, without counting a hit or miss.
+     *
+     * @param key the key to look for
+     * @return true if a value is cached
+     */
+    public boolean containsKey(K key) {
+        expireEntries();
+        return data.containsKey(key);
+    }
+
+    /**
+     * Removes the entry of a key. This is not an eviction, the eviction listener is not called.
+     *
+     * @param key the key to remove
+     * @return the value that was cached for the key or null if there was none
+     */
+    public V invalidate(K key) {
+        final Node<K, V> node = data.remove(key);
+        if (node == null) {
+            return null;
+        }
+        unlink(node);
+        return node.value;
+    }
+
+    public void invalidateAll() {
+        data.clear();
+        window.clear();
+        probation.clear();
+        protectedQueue.clear();
+        writeQueue.clear();
+        weightedSize = 0;
+    }
+
+    /**
+     * Removes all expired entries.
+     */
+    public void cleanUp() {
+        expireEntries();
+    }
+
+    public int size() {
+        expireEntries();
+        return data.size();
+    }
+
+    /**
+     * @return the total weight of all cached entries, equal to the size if no weigher is set
+     */
+    public long weightedSize() {
+        expireEntries();
+        return weightedSize;
+    }
+
+    public Stats stats() {
+        return new Stats(hitCount, missCount, evictionCount);
+    }
+
+    private void recordAccess(K key) {
+        if (sketch != null) {
+            sketch.increment(key);
+        }
+    }
+
+    private void onAccess(Node<K, V> node) {
+        recordAccess(node.key);
+        switch (node.region) {
+            case WINDOW -> window.moveToLast(node);
+            case PROTECTED -> protectedQueue.moveToLast(node);
+            case PROBATION -> {
+                if (policy == Policy.LRU) {
+                    probation.moveToLast(node);
+                } else {
+                    // A second access promotes the entry, which might push others out of the protected part
+                    probation.remove(node);
+                    node.region = Region.PROTECTED;
+                    protectedQueue.addLast(node);
+                    demoteProtectedOverflow();
+                }
+            }
+        }
+    }
+
+    private void demoteProtectedOverflow() {
+        while (protectedQueue.weight > protectedMaximum) {
+            final Node<K, V> demoted = protectedQueue.peekFirst();
+            protectedQueue.remove(demoted);
+            demoted.region = Region.PROBATION;
+            probation.addLast(demoted);
+        }
+    }
+
+    private void evictIfNeeded() {
+        if (policy == Policy.TINY_LFU) {
+            while (window.weight > windowMaximum) {
+                final Node<K, V> candidate = window.peekFirst();
+                window.remove(candidate);
+                if (admit(candidate)) {
+                    candidate.region = Region.PROBATION;
+                    probation.addLast(candidate);
+                } else {
+                    evict(candidate, EvictionCause.SIZE);
+                }
+            }
+        }
+
+        while (weightedSize > maximumWeight) {
+            Node<K, V> victim = probation.peekFirst();
+            if (victim == null) {
+                victim = protectedQueue.peekFirst();
+            }
+            if (victim == null) {
+                victim = window.peekFirst();
+            }
+            evict(victim, EvictionCause.SIZE);
+        }
+    }
+
+    /**
+     * Lets an entry that dropped out of the window compete with the least recently used entries of the main space.
+     * While the cache is too heavy, the candidate has to be more popular than the next victim, who is then evicted.
+     *
+     * @param candidate the entry to admit to the main space, it must not be linked into a queue
+     * @return true if the candidate was admitted
+     */
+    private boolean admit(Node<K, V> candidate) {
+        while (weightedSize > maximumWeight) {
+            Node<K, V> victim = probation.peekFirst();
+            if (victim == null) {
+                victim = protectedQueue.peekFirst();
+            }
+            if (victim == null) {
+                return true;
+            }
+            if (sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+                return false;
+            }
+            evict(victim, EvictionCause.SIZE);
+        }
+        return true;
+    }
+
+    private void expireEntries() {
+        if (expireAfterWriteNanos <= 0) {
+            return;
+        }
+        final long now = ticker.getAsLong();
+        Node<K, V> oldest = writeQueue.peekFirst();
+        while (oldest != null && now - oldest.writeTime >= expireAfterWriteNanos) {
+            evict(oldest, EvictionCause.EXPIRED);
+            oldest = writeQueue.peekFirst();
+        }
+    }
+
+    private void evict(Node<K, V> node, EvictionCause cause) {
+        data.remove(node.key);
+        unlink(node);
+        evictionCount++;
+        if (evictionListener != null) {
+            evictionListener.onEviction(node.key, node.value, cause);
+        }
+    }
+
+    private void unlink(Node<K, V> node) {
+        if (node.accessNext != null) {
+            queueFor(node.region).remove(node);
+        }
+        writeQueue.remove(node);
+        weightedSize -= node.weight;
+    }
+
+    private AccessQueue<K, V> queueFor(Region region) {
+        return switch (region) {
+            case WINDOW -> window;
+            case PROBATION -> probation;
+            case PROTECTED -> protectedQueue;
+        };
+    }
+
+    public enum Policy {
+        LRU,
+        TINY_LFU
+    }
+
+    public enum EvictionCause {
+        /**
+         * The entry was evicted to stay within the maximum size or weight.
+         */
+        SIZE,
+        /**
+         * The entry expired.
+         */
+        EXPIRED
+    }
+
+    /**
+     * Called for every evicted entry. It is called while the cache is updated and must not modify the cache.
+     */
+    @FunctionalInterface
+    public interface EvictionListener<K, V> {
+        void onEviction(K key, V value, EvictionCause cause);
+    }
+
+    /**
+     * Snapshot of the counters of a cache.
+     *
+     * @param hitCount number of lookups that found a value
+     * @param missCount number of lookups that found no value
+     * @param evictionCount number of entries evicted because of size or expiry
+     */
+    public record Stats(long hitCount, long missCount, long evictionCount) {
+        public double hitRate() {
+            final long requests = hitCount + missCount;
+            return requests == 0 ? 1.0 : (double) hitCount / requests;
+        }
+    }
+
+    public static final class Builder<K extends Comparable<K>, V> {
+        private static final int DEFAULT_INIT_SIZE = 30;
+
+        private Policy policy = Policy.TINY_LFU;
+        private long maximumWeight = -1;
+        private ToIntBiFunction<? super K, ? super V> weigher = (key, value) -> 1;
+        private long expireAfterWriteNanos = 0;
+        private LongSupplier ticker = System::nanoTime;
+        private EvictionListener<? super K, ? super V> evictionListener;
+        private int initialSize = DEFAULT_INIT_SIZE;
+
+        private Builder() {
+        }
+
+        /**
+         * Bounds the cache by the number of entries.
+         */
+        public Builder<K, V> maximumSize(long maximumSize) {
+            return maximumWeight(maximumSize, (key, value) -> 1);
+        }
+
+        /**
+         * Bounds the cache by the total weight of the entries.
+         */
+        public Builder<K, V> maximumWeight(long maximumWeight, ToIntBiFunction<? super K, ? super V> weigher) {
+            if (maximumWeight < 0) {
+                throw new IllegalArgumentException("Maximum must not be negative");
+            }
+            this.maximumWeight = maximumWeight;
+            this.weigher = Objects.requireNonNull(weigher);
+            return this;
+        }
+
+        public Builder<K, V> policy(Policy policy) {
+            this.policy = Objects.requireNonNull(policy);
+            return this;
+        }
+
+        public Builder<K, V> expireAfterWrite(Duration duration) {
+            if (duration.isNegative() || duration.isZero()) {
+                throw new IllegalArgumentException("Duration must be positive");
+            }
+            this.expireAfterWriteNanos = duration.toNanos();
+            return this;
+        }
+
+        /**
+         * Sets the time source in nanoseconds used for expiry, {@link System#nanoTime()} by default.
+         */
+        public Builder<K, V> ticker(LongSupplier ticker) {
+            this.ticker = Objects.requireNonNull(ticker);
+            return this;
+        }
+
+        public Builder<K, V> evictionListener(EvictionListener<? super K, ? super V> evictionListener) {
+            this.evictionListener = evictionListener;
+            return this;
+        }
+
+        public Builder<K, V> initialSize(int initialSize) {
+            this.initialSize = initialSize;
+            return this;
+        }
+
+        public SomeCache<K, V> build() {
+            if (maximumWeight < 0) {
+                throw new IllegalStateException("A maximum size or weight is required");
+            }
+            return new SomeCache<>(this);
+        }
+    }
+
+    private enum Region {
+        WINDOW,
+        PROBATION,
+        PROTECTED
+    }
+
+    private static final class Node<K, V> {
+        private final K key;
+        private V value;
+        private int weight;
+        private long writeTime;
+        private Region region;
+
+        private Node<K, V> accessPrevious;
+        private Node<K, V> accessNext;
+        private Node<K, V> writePrevious;
+        private Node<K, V> writeNext;
+
+        private Node(K key, V value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Circular doubly linked list of nodes in access order, least recently used first.
+     * It keeps track of the total weight of its nodes.
+     */
+    private static final class AccessQueue<K, V> {
+        private final Node<K, V> head = new Node<>(null, null, 0);
+        private long weight;
+
+        private AccessQueue() {
+            clear();
+        }
+
+        private Node<K, V> peekFirst() {
+            return head.accessNext == head ? null : head.accessNext;
+        }
+
+        private void addLast(Node<K, V> node) {
+            node.accessPrevious = head.accessPrevious;
+            node.accessNext = head;
+            head.accessPrevious.accessNext = node;
+            head.accessPrevious = node;
+            weight += node.weight;
+        }
+
+        private void remove(Node<K, V> node) {
+            node.accessPrevious.accessNext = node.accessNext;
+            node.accessNext.accessPrevious = node.accessPrevious;
+            node.accessPrevious = null;
+            node.accessNext = null;
+            weight -= node.weight;
+        }
+
+        private void moveToLast(Node<K, V> node) {
+            remove(node);
+            addLast(node);
+        }
+
+        private void clear() {
+            head.accessPrevious = head;
+            head.accessNext = head;
+            weight = 0;
+        }
+    }
+
+    /**
+     * Circular doubly linked list of nodes in write order, oldest first.
+     */
+    private static final class WriteQueue<K, V> {
+        private final Node<K, V> head = new Node<>(null, null, 0);
+
+        private WriteQueue() {
+            clear();
+        }
+
+        private Node<K, V> peekFirst() {
+            return head.writeNext == head ? null : head.writeNext;
+        }
+
+        private void addLast(Node<K, V> node) {
+            node.writePrevious = head.writePrevious;
+            node.writeNext = head;
+            head.writePrevious.writeNext = node;
+            head.writePrevious = node;
+        }
+
+        private void remove(Node<K, V> node) {
+            if (node.writeNext == null) {
+                return;
+            }
+            node.writePrevious.writeNext = node.writeNext;
+            node.writeNext.writePrevious = node.writePrevious;
+            node.writePrevious = null;
+            node.writeNext = null;
+        }
+
+        private void clear() {
+            head.writePrevious = head;
+            head.writeNext = head;
+        }
+    }
+}
@@ -1,14 +1,69 @@
 package at.schrer.utils.structures;
 
+import javax.management.ObjectName;
 import java.lang.reflect.Array;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.function.UnaryOperator;
 
+/**
+ * A doubly linked list implementation.
+ * <p>
+ * Next to the first and last node the list remembers the node it accessed last, the finger. Positional access walks
+ * from whichever of the three is closest to the index, so loops over neighbouring indexes cost O(1) per step instead
+ * of walking from one end every time.
+ * <p>
+ * The list iterator adds, removes and sets elements in place at its current node. Iterators and spliterators are
+ * fail-fast, they throw a {@link ConcurrentModificationException} once the list was structurally changed by anything
+ * else than themselves.
+ * <p>
+ * {@link #subList} returns a live view, which maps its indexes to this list.
+ * <p>
+ * {@link #sort} is a stable merge sort, that relinks the nodes instead of copying the elements into an array.
+ * {@link #parallelSort} sorts parts of large lists on the common fork/join pool and merges them.
+ * <p>
+ * Searching by element scans the list. {@link #enableMembershipIndex()} adds a hash index from every element to its
+ * nodes, which makes {@link #contains} and {@link #remove(Object)} O(1) on average, at the cost of memory and some
+ * extra work for every change. {@link #containsAll}, {@link #removeAll} and {@link #retainAll} pass over the list once,
+ * looking up the elements in a hashed copy of the argument, unless it is a set already.
+ * <p>
+ * Lists used as queues create and drop a node for every element. {@link #enableNodeRecycling} keeps a bounded pool of
+ * removed nodes, which are reused for the next elements added instead of allocating new ones.
+ * <p>
+ * {@link #enableStats()} counts how far positional access has to walk, which can also be watched over JMX, see
+ * {@link StructureStats}.
+ *
+ * @param <T> type of the elements
+ */
 public class SomeList<T> implements List<T> {
 
     private Node<T> first = null;
     private Node<T> last = null;
     private int size = 0;
+    private int modCount = 0;
+
+    // The node accessed last and its index, finger is null if unknown
+    private Node<T> finger = null;
+    private int fingerIndex = 0;
+
+    // Only kept after enableMembershipIndex was called
+    private MembershipIndex<T> membershipIndex = null;
+
+    // Smaller collections are searched directly instead of being copied into a hash set
+    private static final int HASHED_VIEW_THRESHOLD = 8;
+
+    // Stack of removed nodes with cleared links, only filled after enableNodeRecycling was called
+    private Object[] nodePool = new Object[0];
+    private int pooledNodes = 0;
+    private int maxPooledNodes = 0;
+    private long recycleHits = 0;
+    private long recycleMisses = 0;
+
+    // Only kept while stats are enabled
+    private StatsRecorder stats = StatsRecorder.createIfEnabledByDefault();
 
     @Override
     public int size() {
@@ -22,6 +77,9 @@ public class SomeList<T> implements List<T> {
 
     @Override
     public boolean contains(Object o) {
+        if (membershipIndex != null) {
+            return membershipIndex.contains(o);
+        }
         if (size == 0) {
             return false;
         }
@@ -42,6 +100,15 @@ public class SomeList<T> implements List<T> {
         return this.listIterator();
     }
 
+    /**
+     * Returns a spliterator, that knows the exact size of every part it is split into. Splitting walks to the middle
+     * node of the remaining part, so parallel streams can process both halves independently.
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        return new SomeListSpliterator(first, size);
+    }
+
     @Override
     public Object[] toArray() {
         Object[] arr = new Object[size];
@@ -71,8 +138,9 @@ public class SomeList<T> implements List<T> {
             a = (T1[]) Array.newInstance(arrayType, this.size());
         }
 
-        for (int i=0; i < this.size(); i++) {
-            T value = this.get(i);
+        int i = 0;
+        for (Node<T> node = first; node != null; node = node.getNext()) {
+            T value = node.getValue();
             if (value != null) {
                 Class<?> valueType = value.getClass();
                 if (!arrayType.isAssignableFrom(valueType)){
@@ -80,7 +148,7 @@ public class SomeList<T> implements List<T> {
                             + " to target class of array which is " + arrayType);
                 }
             }
-            a[i] = (T1) value;
+            a[i++] = (T1) value;
         }
 
         return a;
@@ -88,71 +156,52 @@ public class SomeList<T> implements List<T> {
 
     @Override
     public boolean add(T t) {
-        Node<T> newNode = new Node<>(t);
-        if (first == null) {
-            first = newNode;
-        } else {
-            newNode.setPrevious(last);
-            last.setNext(newNode);
-        }
-        last = newNode;
-        size++;
-
+        linkLast(t);
         return true;
     }
 
     @Override
     public boolean remove(Object o) {
-        if (size == 0) {
-            return false;
-        }
-
-        if (first.contains(o)) {
-            Node<T> second = first.getNext();
-            if (second != null) {
-                second.setPrevious(null);
+        if (membershipIndex != null) {
+            final Occurrences<T> occurrences = membershipIndex.get(o);
+            if (occurrences == null) {
+                return false;
             }
-            first = second;
-            size--;
-            return true;
+            if (occurrences.count == 1) {
+                unlink(occurrences.nodeAt(0));
+                return true;
+            }
+            // Which of the nodes comes first is only known by walking the list
         }
-
-
-        Node<T> node = first.getNext();
-        do {
+        for (Node<T> node = first; node != null; node = node.getNext()) {
             if (node.contains(o)) {
-                Node<T> prev = node.getPrevious();
-                Node<T> next = node.getNext();
-
-                prev.setNext(next);
-                next.setPrevious(prev);
-
+                unlink(node);
                 return true;
             }
-            node = node.getNext();
-        } while (node.hasNext());
-
-        // Last node contains object
-        if (node.contains(o)) {
-            Node<T> secondToLast = last.getPrevious();
-            secondToLast.setNext(null);
-            last = secondToLast;
-            size--;
-            return true;
         }
-
         return false;
     }
 
+    /**
+     * Looks up every element in the membership index if it is enabled. Otherwise the elements of the collection are
+     * copied into a hash set, which is emptied in a single pass over the list.
+     */
     @Override
     public boolean containsAll(Collection<?> c) {
-        for (Object element : c) {
-            if (!this.contains(element)) {
-                return false;
+        if (membershipIndex != null || c.size() <= HASHED_VIEW_THRESHOLD) {
+            for (Object element : c) {
+                if (!this.contains(element)) {
+                    return false;
+                }
             }
+            return true;
         }
 
-        return true;
+        final Set<Object> missing = new HashSet<>(c);
+        for (Node<T> node = first; node != null && !missing.isEmpty(); node = node.getNext()) {
+            missing.remove(node.getValue());
+        }
+        return missing.isEmpty();
     }
 
     @Override
@@ -175,77 +224,339 @@ public class SomeList<T> implements List<T> {
             return false;
         }
 
-        if (this.isEmpty() || index == size) {
-            // Append at end
-            return this.addAll(c);
+        // Copied first, in case c is this list
+        final Object[] elements = c.toArray();
+        final Node<T> successor = index == size ? null : getNode(index);
+        for (Object element : elements) {
+            linkBefore(successor, (T) element);
         }
+        return true;
+    }
 
-        if (c.size() == 1) {
-            // Single element list
-            this.add(index, c.iterator().next());
-            return true;
+    /**
+     * With the membership index enabled and a collection smaller than the list, the nodes of every element are
+     * unlinked directly. Otherwise the list is filtered in a single pass, see {@link #hashedView}.
+     */
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        Objects.requireNonNull(c);
+        if (membershipIndex != null && c.size() < size) {
+            boolean removed = false;
+            for (Object element : c) {
+                for (Occurrences<T> occurrences = membershipIndex.get(element); occurrences != null;
+                        occurrences = membershipIndex.get(element)) {
+                    unlink(occurrences.nodeAt(occurrences.count - 1));
+                    removed = true;
+                }
+            }
+            return removed;
+        }
+        final Collection<?> view = hashedView(c);
+        return removeIf(view::contains);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        Objects.requireNonNull(c);
+        final Collection<?> view = hashedView(c);
+        return removeIf(element -> !view.contains(element));
+    }
+
+    /**
+     * Returns a collection with fast lookups for the bulk operations. Sets and small collections are used as they
+     * are, anything else is copied into a hash set.
+     */
+    private static Collection<?> hashedView(Collection<?> c) {
+        if (c instanceof Set<?> || c.size() <= HASHED_VIEW_THRESHOLD) {
+            return c;
         }
+        return new HashSet<>(c);
+    }
 
-        Iterator<? extends T> elements = c.iterator();
-        int sizeIncrease = c.size();
+    /**
+     * Starts keeping a hash index from every element to the nodes holding it. From then on {@link #contains},
+     * {@link #remove(Object)} and {@link #removeAll} find elements without scanning the list, and {@link #indexOf}
+     * only scans if the element is in the list.
+     * <p>
+     * The index costs an entry per distinct element, and every change of the list updates it. Like with a
+     * {@link HashSet}, the hash codes of the elements must not change while they are in the list.
+     */
+    public void enableMembershipIndex() {
+        if (membershipIndex != null) {
+            return;
+        }
+        final MembershipIndex<T> index = new MembershipIndex<>(size);
+        for (Node<T> node = first; node != null; node = node.getNext()) {
+            index.add(node);
+        }
+        this.membershipIndex = index;
+    }
 
-        Node<T> appenderNode;
-        if (index == 0) {
-            addFirst(elements.next());
-            appenderNode = first;
-            sizeIncrease--;
-        } else {
-            appenderNode = getNode(index).getPrevious();
+    /**
+     * Drops the index created by {@link #enableMembershipIndex()}.
+     */
+    public void disableMembershipIndex() {
+        this.membershipIndex = null;
+    }
+
+    public boolean isMembershipIndexEnabled() {
+        return membershipIndex != null;
+    }
+
+    /**
+     * Keeps up to the given number of removed nodes in a pool and reuses them for new elements. This saves an
+     * allocation per element for lists that constantly add at one end and remove at the other.
+     * Only removals feed the pool, {@link #clear()} drops all nodes.
+     *
+     * @param maxPooledNodes the maximum number of nodes kept in the pool, at least 1
+     */
+    public void enableNodeRecycling(int maxPooledNodes) {
+        if (maxPooledNodes < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        this.maxPooledNodes = maxPooledNodes;
+        while (pooledNodes > maxPooledNodes) {
+            nodePool[--pooledNodes] = null;
         }
-        Node<T> afterElementsNode = appenderNode.getNext();
+    }
 
-        Node<T> lastAddedNode;
-        do {
-            Node<T> newNode = new Node<>(elements.next());
-            newNode.setPrevious(appenderNode);
-            appenderNode.setNext(newNode);
-            lastAddedNode = appenderNode = newNode;
-        } while (elements.hasNext());
-
-        lastAddedNode.setNext(afterElementsNode);
-        afterElementsNode.setPrevious(lastAddedNode);
-        size = size + sizeIncrease;
-        return true;
+    /**
+     * Drops the pool of {@link #enableNodeRecycling} and stops recycling nodes. The counters are kept.
+     */
+    public void disableNodeRecycling() {
+        this.maxPooledNodes = 0;
+        this.nodePool = new Object[0];
+        this.pooledNodes = 0;
     }
 
+    public RecyclingStats recyclingStats() {
+        return new RecyclingStats(recycleHits, recycleMisses, pooledNodes);
+    }
+
+    /**
+     * Starts counting the walks to nodes by index and the nodes passed on the way, see {@link StructureStats}.
+     * The counters are kept until {@link #disableStats()}, enabling the stats again keeps counting on.
+     */
+    public void enableStats() {
+        if (stats == null) {
+            this.stats = new StatsRecorder();
+        }
+    }
+
+    /**
+     * Stops counting and drops the counters. An MBean registered for them keeps the last values.
+     */
+    public void disableStats() {
+        this.stats = null;
+    }
+
+    public boolean isStatsEnabled() {
+        return stats != null;
+    }
+
+    /**
+     * @return a snapshot of the counters, all 0 if stats are not enabled
+     */
+    public StructureStats stats() {
+        final StatsRecorder recorder = stats;
+        return recorder == null ? StructureStats.EMPTY : recorder.snapshot();
+    }
+
+    /**
+     * Enables the stats and registers their counters as a {@link StructureStatsMXBean} with the platform MBean
+     * server. The MBean only references the counters, not the list, but it stays registered until it is unregistered
+     * with the returned name.
+     *
+     * @param name the value of the name key of the MBean
+     * @return the name the MBean was registered under
+     * @throws IllegalStateException if an MBean with this name is registered already
+     */
+    public ObjectName registerStatsMBean(String name) {
+        enableStats();
+        return stats.register("SomeList", name);
+    }
+
+    /**
+     * Removes all matching elements in a single pass, through the list iterator.
+     */
     @Override
-    public boolean removeAll(Collection<?> c) {
-        boolean listHasChanged = false;
-        for (Object element : c) {
-            listHasChanged = listHasChanged || this.remove(element);
+    public boolean removeIf(Predicate<? super T> filter) {
+        Objects.requireNonNull(filter);
+        boolean removed = false;
+        final Iterator<T> iterator = iterator();
+        while (iterator.hasNext()) {
+            if (filter.test(iterator.next())) {
+                iterator.remove();
+                removed = true;
+            }
         }
+        return removed;
+    }
 
-        return listHasChanged;
+    /**
+     * Replaces all elements in a single pass, through the list iterator.
+     */
+    @Override
+    public void replaceAll(UnaryOperator<T> operator) {
+        Objects.requireNonNull(operator);
+        final ListIterator<T> iterator = listIterator();
+        while (iterator.hasNext()) {
+            iterator.set(operator.apply(iterator.next()));
+        }
     }
 
+    /**
+     * Sorts the list with a bottom-up merge sort on the next links of the nodes. It is stable, runs in O(n log n) and
+     * needs no memory apart from a few variables.
+     * <p>
+     * The previous links are only fixed once the sort is done. If the comparator throws an exception, they are used to
+     * restore the original order.
+     *
+     * @param c the comparator, or null for the natural order of the elements
+     */
     @Override
-    public boolean retainAll(Collection<?> c) {
-        if (c.isEmpty()) {
-            if (this.isEmpty()) {
-                return false;
-            } else {
-                this.clear();
-                return true;
+    public void sort(Comparator<? super T> c) {
+        if (size < 2) {
+            modCount++;
+            return;
+        }
+        final Comparator<? super T> comparator = comparatorOrNatural(c);
+        try {
+            relinkSorted(mergeSort(first, comparator));
+        } catch (RuntimeException | Error e) {
+            restoreOrder();
+            throw e;
+        }
+    }
+
+    /**
+     * Sorts the list like {@link #sort}, but splits large lists into parts that are sorted in parallel on the common
+     * fork/join pool and merged afterwards.
+     *
+     * @param c the comparator, or null for the natural order of the elements
+     */
+    public void parallelSort(Comparator<? super T> c) {
+        if (size < SortTask.SEQUENTIAL_THRESHOLD * 2) {
+            sort(c);
+            return;
+        }
+        final Comparator<? super T> comparator = comparatorOrNatural(c);
+        try {
+            relinkSorted(ForkJoinPool.commonPool().invoke(new SortTask<>(first, size, comparator)));
+        } catch (RuntimeException | Error e) {
+            restoreOrder();
+            throw e;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Comparator<? super T> comparatorOrNatural(Comparator<? super T> c) {
+        return c != null ? c : (Comparator<? super T>) Comparator.naturalOrder();
+    }
+
+    /**
+     * Sorts a chain of nodes, that is terminated by a null next link. Only the next links are changed.
+     * Runs of doubling length are merged pairwise until a single run is left.
+     *
+     * @return the first node of the sorted chain
+     */
+    private static <T> Node<T> mergeSort(Node<T> head, Comparator<? super T> c) {
+        for (int runLength = 1; ; runLength *= 2) {
+            Node<T> p = head;
+            Node<T> tail = null;
+            head = null;
+            int merges = 0;
+
+            while (p != null) {
+                merges++;
+                // p is the start of the left run, q of the right run
+                Node<T> q = p;
+                int pSize = 0;
+                while (pSize < runLength && q != null) {
+                    pSize++;
+                    q = q.next;
+                }
+                int qSize = runLength;
+
+                while (pSize > 0 || (qSize > 0 && q != null)) {
+                    final Node<T> next;
+                    if (pSize == 0) {
+                        next = q;
+                        q = q.next;
+                        qSize--;
+                    } else if (qSize == 0 || q == null || c.compare(p.value, q.value) <= 0) {
+                        // Taking from the left run on ties keeps the sort stable
+                        next = p;
+                        p = p.next;
+                        pSize--;
+                    } else {
+                        next = q;
+                        q = q.next;
+                        qSize--;
+                    }
+                    if (tail == null) {
+                        head = next;
+                    } else {
+                        tail.next = next;
+                    }
+                    tail = next;
+                }
+                p = q;
+            }
+            tail.next = null;
+
+            if (merges <= 1) {
+                return head;
             }
         }
+    }
 
-        int initialSize = this.size;
-        Node<T> iteratorNode = first;
-        while (iteratorNode != null) {
-            if (c.contains(iteratorNode.getValue())) {
-                iteratorNode = iteratorNode.getNext();
-                continue;
+    /**
+     * Merges two sorted chains, taking from the left one on ties.
+     *
+     * @return the first node of the merged chain
+     */
+    private static <T> Node<T> merge(Node<T> left, Node<T> right, Comparator<? super T> c) {
+        final Node<T> head = new Node<>(null);
+        Node<T> tail = head;
+        while (left != null && right != null) {
+            if (c.compare(left.value, right.value) <= 0) {
+                tail.next = left;
+                left = left.next;
+            } else {
+                tail.next = right;
+                right = right.next;
             }
-            Node<T> forRemoval = iteratorNode;
-            iteratorNode = iteratorNode.getNext();
-            removeNode(forRemoval);
+            tail = tail.next;
+        }
+        tail.next = left != null ? left : right;
+        return head.next;
+    }
+
+    /**
+     * Takes over a sorted chain of next links and fixes the previous links, first and last.
+     */
+    private void relinkSorted(Node<T> head) {
+        Node<T> previous = null;
+        for (Node<T> node = head; node != null; node = node.next) {
+            node.previous = previous;
+            previous = node;
+        }
+        first = head;
+        last = previous;
+        modCount++;
+        forgetFinger();
+    }
+
+    /**
+     * Rebuilds the next links from the previous links, which a sort leaves untouched until it is done.
+     */
+    private void restoreOrder() {
+        Node<T> next = null;
+        for (Node<T> node = last; node != null; node = node.previous) {
+            node.next = next;
+            next = node;
         }
-        return initialSize != this.size;
     }
 
     @Override
@@ -253,6 +564,11 @@ public class SomeList<T> implements List<T> {
         this.first = null;
         this.last = null;
         this.size = 0;
+        this.modCount++;
+        forgetFinger();
+        if (membershipIndex != null) {
+            membershipIndex = new MembershipIndex<>(0);
+        }
     }
 
     @Override
@@ -260,29 +576,65 @@ public class SomeList<T> implements List<T> {
         return getNode(index).getValue();
     }
 
+    /**
+     * Walks to the node at an index, starting from the first node, the last node or the finger, whichever is closest.
+     * The node becomes the new finger.
+     *
+     * @param index index of the node
+     * @return the node at the index
+     * @throws IndexOutOfBoundsException if there is no node at the index
+     */
     private Node<T> getNode(int index) throws IndexOutOfBoundsException {
         checkIndexBounds(index, false);
 
-        if (index == 0) {
-            return first;
+        if (index == 0 || index == size-1) {
+            if (stats != null) {
+                stats.lookup(0);
+            }
+            return index == 0 ? first : last;
         }
 
-        if (index == size-1) {
-            return last;
+        Node<T> node = first;
+        int nodeIndex = 0;
+        int distance = index;
+        if (size - 1 - index < distance) {
+            node = last;
+            nodeIndex = size - 1;
+            distance = size - 1 - index;
+        }
+        if (finger != null && Math.abs(index - fingerIndex) < distance) {
+            node = finger;
+            nodeIndex = fingerIndex;
+        }
+        if (stats != null) {
+            stats.lookup(Math.abs(index - nodeIndex));
         }
 
-        boolean isInFirstHalf = index <= (size/2);
-        Node<T> node = isInFirstHalf ? first : last;
-        UnaryOperator<Node<T>> travFunc = isInFirstHalf ? Node::getNext : Node::getPrevious;
-        int iterations = isInFirstHalf ? index : (size - 1 - index);
-
-        for(int i=0; i<iterations; i++) {
-            node = travFunc.apply(node);
+        while (nodeIndex < index) {
+            node = node.getNext();
+            nodeIndex++;
+        }
+        while (nodeIndex > index) {
+            node = node.getPrevious();
+            nodeIndex--;
         }
 
+        setFinger(node, index);
         return node;
     }
 
+    private void setFinger(Node<T> node, int index) {
+        this.finger = node;
+        this.fingerIndex = index;
+    }
+
+    /**
+     * Has to be called by every change that moves nodes to other indexes, unless it sets a new finger.
+     */
+    private void forgetFinger() {
+        this.finger = null;
+    }
+
     @Override
     public T getFirst() {
         if (size == 0) {
@@ -303,7 +655,7 @@ public class SomeList<T> implements List<T> {
     public T set(int index, T element) {
         checkIndexBounds(index, false);
         Node<T> node = getNode(index);
-        return node.setValue(element);
+        return replaceValue(node, element);
     }
 
     @Override
@@ -314,18 +666,8 @@ public class SomeList<T> implements List<T> {
             return;
         }
 
-        Node<T> nodeAtIndex = getNode(index);
-        Node<T> newNode = new Node<>(element);
-        Node<T> previous = nodeAtIndex.getPrevious();
-
-        newNode.setNext(nodeAtIndex);
-        newNode.setPrevious(previous);
-        if (previous != null) {
-            previous.setNext(newNode);
-        } else {
-            this.first = newNode;
-        }
-        size++;
+        Node<T> newNode = linkBefore(getNode(index), element);
+        setFinger(newNode, index);
     }
 
     @Override
@@ -333,82 +675,67 @@ public class SomeList<T> implements List<T> {
         checkIndexBounds(index, false);
 
         Node<T> target = getNode(index);
-        Node<T> previous = target.getPrevious();
         Node<T> next = target.getNext();
-
-        if (previous == null) {
-            this.first = next;
-        } else {
-            previous.setNext(next);
-        }
-
-        if (next == null) {
-            this.last = previous;
-        } else {
-            next.setPrevious(previous);
+        T value = unlink(target);
+        if (next != null) {
+            setFinger(next, index);
         }
-
-        size--;
-        return target.getValue();
+        return value;
     }
 
     @Override
     public int indexOf(Object o) {
-        return findWithFunction(this.first, o, Node::getNext);
+        if (membershipIndex != null && !membershipIndex.contains(o)) {
+            return -1;
+        }
+        int index = 0;
+        for (Node<T> node = first; node != null; node = node.getNext()) {
+            if (node.contains(o)) {
+                return index;
+            }
+            index++;
+        }
+        return -1;
     }
 
     @Override
     public int lastIndexOf(Object o) {
-        int steps = findWithFunction(this.last, o, Node::getPrevious);
-        if (steps == -1) {
+        if (membershipIndex != null && !membershipIndex.contains(o)) {
             return -1;
         }
-        return this.size - 1 - steps;
-    }
-
-    /**
-     *
-     * @param node the node to start with
-     * @param o the object to look for
-     * @param travOperator the operator that returns the following node
-     * @return the number of times the operator has to be applied for the search object to be found, or -1 if it is not found
-     */
-    private int findWithFunction(Node<T> node, Object o, UnaryOperator<Node<T>> travOperator) {
-        int stepCounter = 0;
-        do {
+        int index = size - 1;
+        for (Node<T> node = last; node != null; node = node.getPrevious()) {
             if (node.contains(o)) {
-                return stepCounter;
+                return index;
             }
-            node = travOperator.apply(node);
-            stepCounter++;
-        } while (node != null);
+            index--;
+        }
         return -1;
     }
 
     @Override
     public ListIterator<T> listIterator() {
-        return new SomeListIterator<>(this.first);
+        return new SomeListIterator(0);
     }
 
     @Override
     public ListIterator<T> listIterator(int index) {
-        checkIndexBounds(index, false);
-        Node<T> startNode = getNode(index);
-        return new SomeListIterator<>(startNode, index);
+        checkIndexBounds(index, true);
+        return new SomeListIterator(index);
     }
 
+    /**
+     * Returns a view of a range of this list, nothing is copied. Changes made through the view are visible in this
+     * list and the other way round. Once this list is structurally changed other than through the view, the view
+     * throws a {@link ConcurrentModificationException}.
+     */
     @Override
     public List<T> subList(int fromIndex, int toIndex) {
         if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
             throw new IndexOutOfBoundsException();
         }
 
-        Node<T> node = getNode(fromIndex);
-        List<T> copiedList = new SomeList<>();
-        for (int i = fromIndex; i < toIndex; i++) {
-            copiedList.add(node.getValue());
-        }
-        return copiedList;
+        return new SubList(fromIndex, toIndex - fromIndex);
     }
 
     /**
@@ -436,39 +763,166 @@ public class SomeList<T> implements List<T> {
 
     }
 
-    private void removeNode(Node<T> node){
-        if (size==1 && node==first) {
-            clear();
-            return;
+    // All structural changes go through linkLast, linkBefore and unlink, all other element changes through replaceValue
+
+    private Node<T> linkLast(T element) {
+        Node<T> newNode = newNode(element);
+        if (last == null) {
+            first = newNode;
+        } else {
+            newNode.setPrevious(last);
+            last.setNext(newNode);
         }
+        last = newNode;
+        size++;
+        modCount++;
+        if (membershipIndex != null) {
+            membershipIndex.add(newNode);
+        }
+        return newNode;
+    }
 
-        size--;
-        if (first == node) {
-            Node<T> second = first.getNext();
-            if (second != null) {
-                second.setPrevious(null);
-            }
+    /**
+     * Inserts a new node in front of another one.
+     *
+     * @param successor the node to insert before, or null to append at the end
+     * @param element the element of the new node
+     * @return the new node
+     */
+    private Node<T> linkBefore(Node<T> successor, T element) {
+        if (successor == null) {
+            return linkLast(element);
+        }
+
+        Node<T> newNode = newNode(element);
+        Node<T> previous = successor.getPrevious();
+        newNode.setPrevious(previous);
+        newNode.setNext(successor);
+        successor.setPrevious(newNode);
+        if (previous == null) {
+            first = newNode;
+        } else {
+            previous.setNext(newNode);
+        }
+        size++;
+        modCount++;
+        forgetFinger();
+        if (membershipIndex != null) {
+            membershipIndex.add(newNode);
+        }
+        return newNode;
+    }
+
+    /**
+     * Removes a node from the chain.
+     *
+     * @param node the node to remove
+     * @return the element of the removed node
+     */
+    private T unlink(Node<T> node) {
+        Node<T> previous = node.getPrevious();
+        Node<T> next = node.getNext();
+
+        if (previous == null) {
+            first = next;
+        } else {
+            previous.setNext(next);
+            node.setPrevious(null);
+        }
+
+        if (next == null) {
+            last = previous;
+        } else {
+            next.setPrevious(previous);
             node.setNext(null);
-            first = second;
-            return;
         }
 
-        if (last == node) {
-            Node<T> secondToLast = last.getPrevious();
-            secondToLast.setNext(null);
-            last = secondToLast;
-            return;
+        size--;
+        modCount++;
+        forgetFinger();
+        if (membershipIndex != null) {
+            membershipIndex.remove(node);
         }
+        final T value = node.getValue();
+        recycle(node);
+        return value;
+    }
 
+    /**
+     * Appends elements in bulk, for {@link BinaryFormat}. The nodes are chained in a single loop, size and modCount are
+     * updated once.
+     *
+     * @param elements array holding the elements
+     * @param count the number of elements to take from the start of the array
+     */
+    @SuppressWarnings("unchecked")
+    void appendAll(Object[] elements, int count) {
+        if (membershipIndex != null) {
+            for (int i = 0; i < count; i++) {
+                linkLast((T) elements[i]);
+            }
+            return;
+        }
+        Node<T> tail = last;
+        for (int i = 0; i < count; i++) {
+            final Node<T> node = newNode((T) elements[i]);
+            node.previous = tail;
+            if (tail == null) {
+                first = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+        }
+        last = tail;
+        size += count;
+        modCount++;
+    }
 
-        Node<T> prev = node.getPrevious();
-        Node<T> next = node.getNext();
+    /**
+     * Takes a node from the pool, or allocates one if the pool is empty.
+     */
+    private Node<T> newNode(T element) {
+        if (pooledNodes == 0) {
+            if (maxPooledNodes > 0) {
+                recycleMisses++;
+            }
+            return new Node<>(element);
+        }
+        @SuppressWarnings("unchecked")
+        final Node<T> node = (Node<T>) nodePool[--pooledNodes];
+        nodePool[pooledNodes] = null;
+        recycleHits++;
+        node.value = element;
+        return node;
+    }
 
-        node.setNext(null);
-        node.setPrevious(null);
+    /**
+     * Puts an unlinked node into the pool, if recycling is enabled and the pool is not full.
+     * The pool is an array, so the links of the node are cleared: an iterator or spliterator still holding the node
+     * can not walk from it into the pool or into the list it is reused in. They check for modifications before every
+     * node they read, which stops them before they get there.
+     */
+    private void recycle(Node<T> node) {
+        if (pooledNodes < maxPooledNodes) {
+            node.value = null;
+            node.previous = null;
+            node.next = null;
+            if (pooledNodes == nodePool.length) {
+                nodePool = Arrays.copyOf(nodePool, Math.min(maxPooledNodes, Math.max(8, pooledNodes * 2)));
+            }
+            nodePool[pooledNodes++] = node;
+        }
+    }
 
-        prev.setNext(next);
-        next.setPrevious(prev);
+    private T replaceValue(Node<T> node, T value) {
+        if (membershipIndex == null) {
+            return node.setValue(value);
+        }
+        membershipIndex.remove(node);
+        final T oldValue = node.setValue(value);
+        membershipIndex.add(node);
+        return oldValue;
     }
 
     private static class Node<T> {
@@ -521,45 +975,494 @@ public class SomeList<T> implements List<T> {
         }
     }
 
-    private static class SomeListIterator<T> implements ListIterator<T> {
-        Node<T> nextNode;
-        int nextIndex;
+    /**
+     * Snapshot of the counters of {@link #enableNodeRecycling}.
+     *
+     * @param hitCount number of new elements that got a node from the pool
+     * @param missCount number of new elements that got a newly allocated node while recycling was enabled
+     * @param pooledNodes number of nodes in the pool right now
+     */
+    public record RecyclingStats(long hitCount, long missCount, int pooledNodes) {
+        public double hitRate() {
+            final long requests = hitCount + missCount;
+            return requests == 0 ? 1.0 : (double) hitCount / requests;
+        }
+    }
+
+    /**
+     * The nodes holding equal elements, in no particular order.
+     */
+    private static final class Occurrences<T> {
+        private final Object element;
+        private final int hash;
+        private Object[] nodes = new Object[1];
+        private int count;
+
+        Occurrences(Object element, int hash) {
+            this.element = element;
+            this.hash = hash;
+        }
+
+        @SuppressWarnings("unchecked")
+        Node<T> nodeAt(int i) {
+            return (Node<T>) nodes[i];
+        }
+
+        void add(Node<T> node) {
+            if (count == nodes.length) {
+                nodes = Arrays.copyOf(nodes, count * 2);
+            }
+            nodes[count++] = node;
+        }
+
+        /**
+         * Removes a node by identity, the last one is moved into its place.
+         */
+        void remove(Node<T> node) {
+            for (int i = count - 1; i >= 0; i--) {
+                if (nodes[i] == node) {
+                    nodes[i] = nodes[--count];
+                    nodes[count] = null;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * A hash multiset from elements to their nodes. Open addressing with linear probing, like the index of
+     * {@link SomeMap}, with one slot per distinct element.
+     */
+    private static final class MembershipIndex<T> {
+        private Occurrences<T>[] table;
+        private int distinct;
 
+        @SuppressWarnings("unchecked")
+        MembershipIndex(int expectedElements) {
+            this.table = (Occurrences<T>[]) new Occurrences<?>[Hashing.tableSizeFor(expectedElements)];
+        }
 
-        public SomeListIterator(Node<T> startNode){
-            this.nextNode = startNode;
-            this.nextIndex = 0;
+        boolean contains(Object element) {
+            return get(element) != null;
         }
 
-        public SomeListIterator(Node<T> startNode, int startIndex){
-            this.nextNode = startNode;
+        /**
+         * @return the nodes holding the element, or null if it is not in the list
+         */
+        Occurrences<T> get(Object element) {
+            final int slot = find(element, Hashing.hash(element));
+            return slot < 0 ? null : table[slot];
+        }
+
+        void add(Node<T> node) {
+            final int hash = Hashing.hash(node.value);
+            final int slot = find(node.value, hash);
+            if (slot >= 0) {
+                table[slot].add(node);
+                return;
+            }
+            final Occurrences<T> occurrences = new Occurrences<>(node.value, hash);
+            occurrences.add(node);
+            table[-(slot + 1)] = occurrences;
+            distinct++;
+            if (distinct * 2 > table.length) {
+                rehash();
+            }
+        }
+
+        /**
+         * Removes a node, which has to hold the same element as when it was added.
+         */
+        void remove(Node<T> node) {
+            final int slot = find(node.value, Hashing.hash(node.value));
+            if (slot < 0) {
+                return;
+            }
+            final Occurrences<T> occurrences = table[slot];
+            occurrences.remove(node);
+            if (occurrences.count == 0) {
+                removeSlot(slot);
+                distinct--;
+            }
+        }
+
+        /**
+         * @return the slot of the element, or (-(free slot) - 1) if it is not in the table
+         */
+        private int find(Object element, int hash) {
+            final int mask = table.length - 1;
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                final Occurrences<T> candidate = table[slot];
+                if (candidate == null) {
+                    return -(slot + 1);
+                }
+                if (candidate.hash == hash && Objects.equals(candidate.element, element)) {
+                    return slot;
+                }
+            }
+        }
+
+        /**
+         * Empties a slot and shifts the following slots of the probe sequence back into the gap.
+         */
+        private void removeSlot(int slot) {
+            final int mask = table.length - 1;
+            int gap = slot;
+            int next = (gap + 1) & mask;
+            while (table[next] != null) {
+                final int home = table[next].hash & mask;
+                if (((next - home) & mask) >= ((next - gap) & mask)) {
+                    table[gap] = table[next];
+                    gap = next;
+                }
+                next = (next + 1) & mask;
+            }
+            table[gap] = null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void rehash() {
+            final Occurrences<T>[] oldTable = table;
+            table = (Occurrences<T>[]) new Occurrences<?>[oldTable.length * 2];
+            final int mask = table.length - 1;
+            for (Occurrences<T> occurrences : oldTable) {
+                if (occurrences != null) {
+                    int slot = occurrences.hash & mask;
+                    while (table[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    table[slot] = occurrences;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sorts a chain of nodes by cutting it in half, sorting both halves in parallel and merging them.
+     */
+    @SuppressWarnings("serial")
+    private static final class SortTask<T> extends RecursiveTask<Node<T>> {
+        private static final int SEQUENTIAL_THRESHOLD = 8192;
+
+        private final Node<T> head;
+        private final int length;
+        private final Comparator<? super T> comparator;
+
+        SortTask(Node<T> head, int length, Comparator<? super T> comparator) {
+            this.head = head;
+            this.length = length;
+            this.comparator = comparator;
+        }
+
+        @Override
+        protected Node<T> compute() {
+            if (length <= SEQUENTIAL_THRESHOLD) {
+                Node<T> lastNode = head;
+                for (int i = 1; i < length; i++) {
+                    lastNode = lastNode.next;
+                }
+                // Cut the chain behind this part, the nodes after it belong to another task
+                lastNode.next = null;
+                return mergeSort(head, comparator);
+            }
+
+            final int leftLength = length / 2;
+            Node<T> middle = head;
+            for (int i = 0; i < leftLength; i++) {
+                middle = middle.next;
+            }
+            final SortTask<T> right = new SortTask<>(middle, length - leftLength, comparator);
+            right.fork();
+            final Node<T> left;
+            try {
+                left = new SortTask<>(head, leftLength, comparator).compute();
+            } catch (RuntimeException | Error e) {
+                // The links must not change anymore once the list restores its order
+                right.quietlyJoin();
+                throw e;
+            }
+            return merge(left, right.join(), comparator);
+        }
+    }
+
+    /**
+     * A range of the list, given by its offset and size. All operations are delegated to the list, thanks to the
+     * finger its nodes are found without walking from one end every time.
+     */
+    private class SubList extends AbstractList<T> {
+        private final int offset;
+        private int size;
+        private int expectedModCount = SomeList.this.modCount;
+
+        SubList(int offset, int size) {
+            this.offset = offset;
+            this.size = size;
+        }
+
+        @Override
+        public T get(int index) {
+            Objects.checkIndex(index, size);
+            checkForComodification();
+            return SomeList.this.get(offset + index);
+        }
+
+        @Override
+        public T set(int index, T element) {
+            Objects.checkIndex(index, size);
+            checkForComodification();
+            return SomeList.this.set(offset + index, element);
+        }
+
+        @Override
+        public int size() {
+            checkForComodification();
+            return size;
+        }
+
+        @Override
+        public void add(int index, T element) {
+            Objects.checkIndex(index, size + 1);
+            checkForComodification();
+            SomeList.this.add(offset + index, element);
+            changedSize(1);
+        }
+
+        @Override
+        public T remove(int index) {
+            Objects.checkIndex(index, size);
+            checkForComodification();
+            final T removed = SomeList.this.remove(offset + index);
+            changedSize(-1);
+            return removed;
+        }
+
+        @Override
+        public boolean addAll(Collection<? extends T> c) {
+            return addAll(size, c);
+        }
+
+        @Override
+        public boolean addAll(int index, Collection<? extends T> c) {
+            Objects.checkIndex(index, size + 1);
+            checkForComodification();
+            final int added = c.size();
+            if (!SomeList.this.addAll(offset + index, c)) {
+                return false;
+            }
+            changedSize(added);
+            return true;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return listIterator();
+        }
+
+        @Override
+        public ListIterator<T> listIterator(int index) {
+            Objects.checkIndex(index, size + 1);
+            checkForComodification();
+            final ListIterator<T> iterator = SomeList.this.listIterator(offset + index);
+            return new ListIterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return nextIndex() < size;
+                }
+
+                @Override
+                public T next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return iterator.next();
+                }
+
+                @Override
+                public boolean hasPrevious() {
+                    return nextIndex() > 0;
+                }
+
+                @Override
+                public T previous() {
+                    if (!hasPrevious()) {
+                        throw new NoSuchElementException();
+                    }
+                    return iterator.previous();
+                }
+
+                @Override
+                public int nextIndex() {
+                    return iterator.nextIndex() - offset;
+                }
+
+                @Override
+                public int previousIndex() {
+                    return nextIndex() - 1;
+                }
+
+                @Override
+                public void remove() {
+                    iterator.remove();
+                    changedSize(-1);
+                }
+
+                @Override
+                public void set(T t) {
+                    iterator.set(t);
+                }
+
+                @Override
+                public void add(T t) {
+                    iterator.add(t);
+                    changedSize(1);
+                }
+            };
+        }
+
+        /**
+         * Takes over a structural change made through this view.
+         */
+        private void changedSize(int delta) {
+            size += delta;
+            expectedModCount = SomeList.this.modCount;
+            // Views created from this view check this counter
+            modCount++;
+        }
+
+        private void checkForComodification() {
+            if (SomeList.this.modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    private class SomeListSpliterator implements Spliterator<T> {
+        // Parts smaller than this are not worth handing to another thread
+        private static final int MIN_SPLIT_SIZE = 1024;
+
+        private Node<T> node;
+        private int remaining;
+        private final int expectedModCount = modCount;
+
+        SomeListSpliterator(Node<T> node, int remaining) {
+            this.node = node;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            Objects.requireNonNull(action);
+            if (remaining == 0) {
+                return false;
+            }
+            checkForComodification();
+            final T value = node.value;
+            node = node.next;
+            remaining--;
+            action.accept(value);
+            return true;
+        }
+
+        /**
+         * Checks for modifications before every element, so an action that changes the list ends the walk with a
+         * {@link ConcurrentModificationException}, before it follows the links of a node that was unlinked.
+         */
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            Objects.requireNonNull(action);
+            Node<T> current = node;
+            for (int i = remaining; i > 0; i--) {
+                checkForComodification();
+                action.accept(current.value);
+                current = current.next;
+            }
+            node = current;
+            remaining = 0;
+            checkForComodification();
+        }
+
+        /**
+         * Splits off the first half of the remaining nodes, this spliterator continues at the middle node.
+         */
+        @Override
+        public Spliterator<T> trySplit() {
+            if (remaining < MIN_SPLIT_SIZE) {
+                return null;
+            }
+            checkForComodification();
+            final int half = remaining / 2;
+            final Spliterator<T> prefix = new SomeListSpliterator(node, half);
+            for (int i = 0; i < half; i++) {
+                node = node.next;
+            }
+            remaining -= half;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /**
+     * A cursor between two nodes. Removing and adding link and unlink nodes at the cursor, nothing is searched.
+     */
+    private class SomeListIterator implements ListIterator<T> {
+        // The node after the cursor, null at the end of the list
+        private Node<T> nextNode;
+        private int nextIndex;
+        private Node<T> lastReturned;
+        private int expectedModCount = modCount;
+
+        SomeListIterator(int startIndex){
+            this.nextNode = startIndex == size ? null : getNode(startIndex);
             this.nextIndex = startIndex;
         }
 
         @Override
         public boolean hasNext() {
-            return nextNode.hasNext();
+            return nextIndex < size;
         }
 
         @Override
         public T next() {
-            T value = nextNode.getValue();
+            checkForComodification();
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = nextNode;
             nextNode = nextNode.getNext();
             nextIndex++;
-            return value;
+            return lastReturned.getValue();
         }
 
         @Override
         public boolean hasPrevious() {
-            return nextNode.hasPrevious();
+            return nextIndex > 0;
         }
 
         @Override
         public T previous() {
-            Node<T> previous = nextNode.getPrevious();
-            nextNode = previous;
+            checkForComodification();
+            if (!hasPrevious()) {
+                throw new NoSuchElementException();
+            }
+            nextNode = nextNode == null ? last : nextNode.getPrevious();
+            lastReturned = nextNode;
             nextIndex--;
-            return previous.getValue();
+            return lastReturned.getValue();
         }
 
         @Override
@@ -574,17 +1477,45 @@ public class SomeList<T> implements List<T> {
 
         @Override
         public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
 
+            Node<T> following = lastReturned.getNext();
+            unlink(lastReturned);
+            if (nextNode == lastReturned) {
+                // Returned by previous(), the cursor stays in front of the following node
+                nextNode = following;
+            } else {
+                nextIndex--;
+            }
+            lastReturned = null;
+            expectedModCount = modCount;
         }
 
         @Override
         public void set(T t) {
-
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            replaceValue(lastReturned, t);
         }
 
         @Override
         public void add(T t) {
+            checkForComodification();
+            linkBefore(nextNode, t);
+            nextIndex++;
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
 
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
         }
     }
 }
@@ -1,11 +1,39 @@
 package at.schrer.utils.structures;
 
+import javax.management.ObjectName;
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collector;
 
 /**
  * A map implementation based on simple arrays.
  * It is initialized with a size of 30, unless a specific initial size is given in the constructor. For initial sizes lower than 1 the default size is used.
  * Because of the array nature of the map it is grown when necessary.
+ * <p>
+ * Lookups do not scan the entries array. Next to it the map keeps an open addressing hash index with linear probing,
+ * which references the entries and is rebuilt whenever the entries array is grown or shrunk.
+ * This makes get, put, containsKey and remove O(1) on average. The positions freed by removals are kept on a stack, so
+ * a put never searches the entries array for a free position.
+ * <p>
+ * The map grows when it is full and shrinks to half its size once less than a third of it is used, so a map that
+ * hovers around a size does not resize back and forth. By default a resize copies all entries at once. With
+ * {@link #enableIncrementalResize()} it only allocates the new arrays and every following insert or remove moves a
+ * bounded number of positions over, so there is no single call that pays for the whole map. Until all entries are
+ * moved, lookups probe the new and the old index.
+ * <p>
+ * {@link #enableStats()} counts probe lengths, resizes and the cost of finding free positions, which can also be
+ * watched over JMX, see {@link StructureStats}.
+ * <p>
+ * {@link #keySet()}, {@link #values()} and {@link #entrySet()} are live views backed by the entries array, nothing is
+ * copied when they are created or iterated. Their iterators support removal and are fail-fast.
+ * <p>
+ * For batches, {@link #putAll}, {@link #removeAll} and {@link #getAll} resize the arrays at most once per call.
+ * {@link #compute}, {@link #merge} and the other default methods of {@link Map} are implemented with a single probe of
+ * the index. Functions passed to them must not modify the map, if they do a {@link ConcurrentModificationException} is
+ * thrown.
+ * Unmodifiable maps can be created with a {@link #builder()} or collected with {@link #toUnmodifiableMap}.
  *
  * @param <K> type of the key
  * @param <V> type of the value
@@ -14,13 +42,39 @@ public class SomeMap<K extends Comparable<K>, V> implements Map<K, V> {
 
     private static final int DEFAULT_INIT_SIZE = 30;
     private static final int GROW_FACTOR = 2;
-    private static final double SHRINK_FACTOR = 0.75;
+    private static final double SHRINK_LOAD = 1.0 / 3;
+    // Positions of the old entries array visited per insert or remove during an incremental resize
+    private static final int RESIZE_STEP = 32;
 
     private final int initSize;
     private int maxSize;
 
     private int size;
     private Entry<K, V>[] entries;
+    private Entry<K, V>[] index;
+    private int modCount;
+
+    // Positions from here to the end of the entries array were not used since the last resize
+    private int usedPositions;
+    // Stack of the positions below usedPositions, that were freed by removals
+    private int[] freePositions = new int[0];
+    private int freeCount;
+
+    private boolean incrementalResize = false;
+    // While resizing incrementally: the old arrays, holding the entries that were not moved yet
+    private Entry<K, V>[] oldEntries;
+    private Entry<K, V>[] oldIndex;
+    private int pendingEntries;
+    private int resizeCursor;
+    private int nextMovedPosition;
+    private int reservedPositions;
+
+    // Only kept while stats are enabled
+    private StatsRecorder stats = StatsRecorder.createIfEnabledByDefault();
+
+    private KeySet keySet;
+    private Values values;
+    private EntrySet entrySet;
 
     public SomeMap() {
         this(DEFAULT_INIT_SIZE);
@@ -35,6 +89,7 @@ public class SomeMap<K extends Comparable<K>, V> implements Map<K, V> {
         this.maxSize = initialSize;
         this.size = 0;
         this.entries = new Entry[initSize];
+        this.index = new Entry[Hashing.tableSizeFor(initSize)];
     }
 
     @Override
@@ -49,7 +104,7 @@ public class SomeMap<K extends Comparable<K>, V> implements Map<K, V> {
 
     @Override
     public boolean containsKey(Object key) {
-        return findEntryIndexByKey(key) >= 0;
+        return findEntryByKey(key) != null;
     }
 
     @Override
@@ -63,198 +118,1025 @@ public class SomeMap<K extends Comparable<K>, V> implements Map<K, V> {
         return entry == null ? null : entry.getValue();
     }
 
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        final Entry<K, V> entry = findEntryByKey(key);
+        return entry == null ? defaultValue : entry.getValue();
+    }
+
     @Override
     public V put(K key, V value) {
-        Entry<K, V> entry = findEntryByKey(key);
-        V oldValue;
-        if (entry == null) {
-            int freePosition = findFreePosition();
-            if (freePosition < 0) {
-                grow();
-                freePosition = findFreePosition();
-            }
+        final int slot = probe(key);
+        if (slot < 0) {
+            insert(-(slot + 1), key, value);
+            return null;
+        }
+        return entryAt(slot).setValue(value);
+    }
 
-            entry = new Entry<>(key, value);
-            this.entries[freePosition] = entry;
-            size++;
-            oldValue = null;
-        } else {
-            oldValue = entry.getValue();
-            entry.setValue(value);
+    @Override
+    public V putIfAbsent(K key, V value) {
+        final int slot = probe(key);
+        if (slot < 0) {
+            insert(-(slot + 1), key, value);
+            return null;
+        }
+        final Entry<K, V> entry = entryAt(slot);
+        return entry.getValue() == null ? entry.setValue(value) : entry.getValue();
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        final int slot = probe(key);
+        if (slot >= 0 && entryAt(slot).getValue() != null) {
+            return entryAt(slot).getValue();
         }
 
-        return oldValue;
+        final int expectedModCount = modCount;
+        final V value = mappingFunction.apply(key);
+        checkModCount(expectedModCount);
+        if (value != null) {
+            store(slot, key, value);
+        }
+        return value;
     }
 
     @Override
-    public V remove(Object key) {
-        final int index = findEntryIndexByKey(key);
-        if (index < 0) {
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        final int slot = probe(key);
+        if (slot < 0 || entryAt(slot).getValue() == null) {
             return null;
         }
 
-        V value = entries[index].getValue();
-        entries[index] = null;
-        size--;
+        final int expectedModCount = modCount;
+        final V value = remappingFunction.apply(key, entryAt(slot).getValue());
+        checkModCount(expectedModCount);
+        return store(slot, key, value);
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        final int slot = probe(key);
+        final V oldValue = slot < 0 ? null : entryAt(slot).getValue();
+
+        final int expectedModCount = modCount;
+        final V value = remappingFunction.apply(key, oldValue);
+        checkModCount(expectedModCount);
+        return store(slot, key, value);
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(value);
+        Objects.requireNonNull(remappingFunction);
+        final int slot = probe(key);
+        final V oldValue = slot < 0 ? null : entryAt(slot).getValue();
+        if (oldValue == null) {
+            return store(slot, key, value);
+        }
+
+        final int expectedModCount = modCount;
+        final V newValue = remappingFunction.apply(oldValue, value);
+        checkModCount(expectedModCount);
+        return store(slot, key, newValue);
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        final int expectedModCount = modCount;
+        for (Entry<K, V>[] array : entryArrays()) {
+            for (Entry<K, V> entry : array) {
+                if (entry != null) {
+                    action.accept(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        checkModCount(expectedModCount);
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        Objects.requireNonNull(function);
+        final int expectedModCount = modCount;
+        for (Entry<K, V>[] array : entryArrays()) {
+            for (Entry<K, V> entry : array) {
+                if (entry != null) {
+                    entry.setValue(function.apply(entry.getKey(), entry.getValue()));
+                }
+            }
+        }
+        checkModCount(expectedModCount);
+    }
+
+    @Override
+    public V remove(Object key) {
+        final int slot = findIndexSlotByKey(key);
+        if (slot < 0) {
+            return null;
+        }
 
+        Entry<K, V> entry = entryAt(slot);
+        removeAtSlot(slot);
         shrinkIfNeeded();
-        return value;
+        return entry.getValue();
     }
 
+    /**
+     * Grows the map once to hold all mappings of m, even if none of their keys are in this map yet, and puts them.
+     */
     @Override
     public void putAll(Map<? extends K, ? extends V> m) {
+        ensureCapacity(size + m.size());
         for (Map.Entry<? extends K, ? extends V> entry: m.entrySet()) {
             this.put(entry.getKey(), entry.getValue());
         }
     }
 
+    /**
+     * Removes the mappings of all given keys. The arrays are shrunk once at the end, instead of after every removal.
+     *
+     * @param keys the keys to remove
+     * @return true if any mapping was removed
+     */
+    public boolean removeAll(Collection<?> keys) {
+        final int oldSize = size;
+        for (Object key : keys) {
+            final int slot = findIndexSlotByKey(key);
+            if (slot >= 0) {
+                removeAtSlot(slot);
+            }
+        }
+        if (size == oldSize) {
+            return false;
+        }
+
+        int newMaxSize = maxSize;
+        while (newMaxSize > initSize && size < newMaxSize * SHRINK_LOAD) {
+            newMaxSize /= GROW_FACTOR;
+        }
+        newMaxSize = Math.max(newMaxSize, initSize);
+        if (newMaxSize < maxSize) {
+            resize(newMaxSize);
+        } else if (oldEntries != null) {
+            resizeStep();
+        }
+        return true;
+    }
+
+    /**
+     * Looks up all given keys and passes the ones that are in the map to the action, together with their value.
+     *
+     * @param keys the keys to look up
+     * @param action the action to call for every key that is in the map
+     */
+    public void getAll(Collection<? extends K> keys, BiConsumer<? super K, ? super V> action) {
+        for (K key : keys) {
+            final Entry<K, V> entry = findEntryByKey(key);
+            if (entry != null) {
+                action.accept(key, entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Grows the map, so that it can hold the given number of mappings without growing again.
+     *
+     * @param capacity the number of mappings the map should be able to hold
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > maxSize) {
+            resize(Math.max(capacity, maxSize * GROW_FACTOR));
+        }
+    }
+
+    /**
+     * Spreads the work of growing and shrinking over the following inserts and removes. When the map has to resize,
+     * only the new arrays are allocated, every insert or remove then moves the entries of a bounded number of
+     * positions to them. Gets do not move entries, so they can still run concurrently with each other.
+     * Bulk operations like {@link #putAll} and {@link #ensureCapacity} still resize at once.
+     */
+    public void enableIncrementalResize() {
+        this.incrementalResize = true;
+    }
+
+    /**
+     * Turns incremental resizing off and finishes a resize that is in progress.
+     */
+    public void disableIncrementalResize() {
+        this.incrementalResize = false;
+        completeResize();
+    }
+
+    public boolean isIncrementalResizeEnabled() {
+        return incrementalResize;
+    }
+
+    /**
+     * Starts counting probes of the hash index, resizes and searches for free positions, see {@link StructureStats}.
+     * The counters are kept until {@link #disableStats()}, enabling the stats again keeps counting on.
+     */
+    public void enableStats() {
+        if (stats == null) {
+            this.stats = new StatsRecorder();
+        }
+    }
+
+    /**
+     * Stops counting and drops the counters. An MBean registered for them keeps the last values.
+     */
+    public void disableStats() {
+        this.stats = null;
+    }
+
+    public boolean isStatsEnabled() {
+        return stats != null;
+    }
+
+    /**
+     * @return a snapshot of the counters, all 0 if stats are not enabled
+     */
+    public StructureStats stats() {
+        final StatsRecorder recorder = stats;
+        return recorder == null ? StructureStats.EMPTY : recorder.snapshot();
+    }
+
+    /**
+     * Enables the stats and registers their counters as a {@link StructureStatsMXBean} with the platform MBean
+     * server. The MBean only references the counters, not the map, but it stays registered until it is unregistered
+     * with the returned name.
+     *
+     * @param name the value of the name key of the MBean
+     * @return the name the MBean was registered under
+     * @throws IllegalStateException if an MBean with this name is registered already
+     */
+    public ObjectName registerStatsMBean(String name) {
+        enableStats();
+        return stats.register("SomeMap", name);
+    }
+
+    /**
+     * @return true while entries are left in the old arrays of an incremental resize
+     */
+    protected boolean isResizing() {
+        return oldEntries != null;
+    }
+
     @Override
     public void clear() {
         this.size = 0;
+        this.modCount++;
+        this.maxSize = initSize;
         this.entries = new Entry[initSize];
+        this.index = new Entry[Hashing.tableSizeFor(initSize)];
+        this.oldEntries = null;
+        this.oldIndex = null;
+        this.usedPositions = 0;
+        this.freeCount = 0;
     }
 
     @Override
     public Set<K> keySet() {
-        Set<K> keys = new HashSet<>();
-        for (Entry<K,V> entry : entries) {
-            if (entry == null) {
-                continue;
-            }
-            keys.add(entry.getKey());
+        if (keySet == null) {
+            keySet = new KeySet();
         }
-        return keys;
+        return keySet;
     }
 
     @Override
     public Collection<V> values() {
-        Set<V> values = HashSet.newHashSet(this.size);
-        for (Entry<K,V> entry : entries) {
-            if (entry == null) {
-                continue;
-            }
-            values.add(entry.getValue());
+        if (values == null) {
+            values = new Values();
         }
         return values;
     }
 
     @Override
     public Set<Map.Entry<K, V>> entrySet() {
-        Set<Map.Entry<K, V>> entrySet = HashSet.newHashSet(this.size);
-        for (Entry<K,V> entry : entries) {
-            if (entry == null) {
-                continue;
-            }
-            entrySet.add(entry);
+        if (entrySet == null) {
+            entrySet = new EntrySet();
         }
         return entrySet;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof Map<?, ?> other) || other.size() != size) {
+            return false;
+        }
+        for (Entry<K, V>[] array : entryArrays()) {
+            for (Entry<K, V> entry : array) {
+                if (entry == null) {
+                    continue;
+                }
+                final Object otherValue = other.get(entry.getKey());
+                if (!Objects.equals(entry.getValue(), otherValue)
+                        || (otherValue == null && !other.containsKey(entry.getKey()))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = 0;
+        for (Entry<K, V>[] array : entryArrays()) {
+            for (Entry<K, V> entry : array) {
+                if (entry != null) {
+                    hashCode += entry.hashCode();
+                }
+            }
+        }
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        final StringJoiner joiner = new StringJoiner(", ", "{", "}");
+        for (Entry<K, V>[] array : entryArrays()) {
+            for (Entry<K, V> entry : array) {
+                if (entry != null) {
+                    joiner.add(entry.toString());
+                }
+            }
+        }
+        return joiner.toString();
+    }
+
     private void grow(){
-        final int newMaxSize = this.maxSize*GROW_FACTOR;
-        final Entry[] newEntryArray = new Entry[newMaxSize];
-        System.arraycopy(this.entries, 0, newEntryArray, 0, size);
-        this.entries = newEntryArray;
-        this.maxSize = newMaxSize;
+        if (incrementalResize) {
+            startResize(this.maxSize*GROW_FACTOR);
+        } else {
+            resize(this.maxSize*GROW_FACTOR);
+        }
     }
 
+    /**
+     * Called after every remove. Halves the map once less than a third of it is used, so after shrinking there is
+     * room for removes and inserts without resizing again right away. During an incremental resize it moves the next
+     * entries instead.
+     */
     private void shrinkIfNeeded(){
-        int newMaxSize = (int) Math.round(this.maxSize*SHRINK_FACTOR);
-        if (newMaxSize < initSize) {
-            // Never go below initSize
-            newMaxSize = initSize;
+        if (oldEntries != null) {
+            resizeStep();
+            return;
         }
-        if (newMaxSize < size) {
-            // Better not do that then
+        if (maxSize <= initSize || size >= maxSize * SHRINK_LOAD) {
             return;
         }
+        // Never go below initSize
+        final int newMaxSize = Math.max(initSize, maxSize / GROW_FACTOR);
+        if (incrementalResize) {
+            startResize(newMaxSize);
+        } else {
+            resize(newMaxSize);
+        }
+    }
 
+    /**
+     * Moves all entries to the start of a new entries array and rebuilds the index for it.
+     *
+     * @param newMaxSize the length of the new array, at least the size of the map
+     */
+    private void resize(int newMaxSize){
+        completeResize();
+        if (stats != null) {
+            stats.resize();
+        }
         final Entry[] newEntryArray = new Entry[newMaxSize];
         int nextEntryIndex = 0;
         for (Entry<K, V> entry : entries) {
             if (entry == null) {
                 continue;
             }
+            entry.position = nextEntryIndex;
             newEntryArray[nextEntryIndex] = entry;
             nextEntryIndex++;
         }
         this.entries = newEntryArray;
         this.maxSize = newMaxSize;
+        this.usedPositions = nextEntryIndex;
+        this.freeCount = 0;
+        // Positions have changed, iterators must not continue
+        this.modCount++;
+        rebuildIndex();
+    }
+
+    /**
+     * Starts an incremental resize: allocates the new arrays and keeps the current ones as old arrays, until all
+     * entries are moved over by {@link #resizeStep()}. The moved entries are packed at the start of the new entries
+     * array, entries inserted meanwhile are put behind the positions reserved for them.
+     *
+     * @param newMaxSize the length of the new array, more than the size of the map
+     */
+    private void startResize(int newMaxSize){
+        this.oldEntries = entries;
+        this.oldIndex = index;
+        this.entries = new Entry[newMaxSize];
+        this.index = new Entry[Hashing.tableSizeFor(newMaxSize)];
+        this.maxSize = newMaxSize;
+        this.pendingEntries = size;
+        this.resizeCursor = 0;
+        this.nextMovedPosition = 0;
+        this.reservedPositions = size;
+        this.usedPositions = size;
+        this.freeCount = 0;
+        // Positions will change, iterators must not continue
+        this.modCount++;
+        if (stats != null) {
+            stats.resize();
+        }
+    }
+
+    /**
+     * Moves the entries of the next {@link #RESIZE_STEP} positions of the old entries array to the new arrays, and
+     * drops the old arrays once no entries are left in them.
+     */
+    private void resizeStep(){
+        final int end = Math.min(resizeCursor + RESIZE_STEP, oldEntries.length);
+        for (; resizeCursor < end && pendingEntries > 0; resizeCursor++) {
+            final Entry<K, V> entry = oldEntries[resizeCursor];
+            if (entry != null) {
+                moveEntry(entry);
+            }
+        }
+        if (pendingEntries == 0) {
+            this.oldEntries = null;
+            this.oldIndex = null;
+            // Reserved for entries that were removed before they were moved
+            for (int position = nextMovedPosition; position < reservedPositions; position++) {
+                pushFreePosition(position);
+            }
+        }
+    }
+
+    private void completeResize(){
+        while (oldEntries != null) {
+            resizeStep();
+        }
     }
 
+    private void moveEntry(Entry<K, V> entry){
+        final int mask = oldIndex.length - 1;
+        int slot = entry.hash & mask;
+        while (oldIndex[slot] != entry) {
+            slot = (slot + 1) & mask;
+        }
+        removeFromIndex(oldIndex, slot);
+        oldEntries[entry.position] = null;
+        entry.position = nextMovedPosition++;
+        entries[entry.position] = entry;
+        addToIndex(index, entry);
+        pendingEntries--;
+    }
+
+    /**
+     * @return the entries array and, during an incremental resize, the old entries array
+     */
+    private Entry<K, V>[][] entryArrays(){
+        final Entry<K, V>[] pending = oldEntries;
+        return pending == null ? new Entry[][] {entries} : new Entry[][] {entries, pending};
+    }
+
+    /**
+     * Looks the key up without changing anything, so it is safe for concurrent readers.
+     */
     private Entry<K, V> findEntryByKey(Object key){
-        final int entryIndex = findEntryIndexByKey(key);
-        if (entryIndex < 0) {
-            return null;
+        final Entry<K, V>[] table = index;
+        final Entry<K, V>[] oldTable = oldIndex;
+        final int slot = probe(table, key);
+        if (slot >= 0) {
+            return table[slot];
+        }
+        if (oldTable != null) {
+            final int oldSlot = probe(oldTable, key);
+            if (oldSlot >= 0) {
+                return oldTable[oldSlot];
+            }
         }
-        return entries[entryIndex];
+        return null;
     }
 
     private Entry<K, V> findEntryByValue(Object value){
-        for (Entry<K,V> entry : entries) {
-            if (entry == null) {
-                continue;
-            }
-            if(entry.getValue().equals(value)){
-                return entry;
+        for (Entry<K, V>[] array : entryArrays()) {
+            for (Entry<K,V> entry : array) {
+                if (entry == null) {
+                    continue;
+                }
+                if (Objects.equals(entry.getValue(), value)) {
+                    return entry;
+                }
             }
         }
         return null;
     }
 
     /**
-     * Returns the index of the entry with this key in the entries array.
+     * Returns the slot of the entry with this key in the hash index, see {@link #probe(Object)}.
      *
      * @param key the key to look for
-     * @return the index of the entry or -1 if there is no entry with this key
+     * @return the slot of the entry or -1 if there is no entry with this key
      */
-    private int findEntryIndexByKey(Object key) {
-        for (int i = 0; i < entries.length; i++) {
-            Entry<K,V> entry = entries[i];
-            if (entry == null) {
-                continue;
+    private int findIndexSlotByKey(Object key) {
+        final int slot = probe(key);
+        return slot < 0 ? -1 : slot;
+    }
+
+    /**
+     * Probes the hash index for a key. During an incremental resize the old index is probed too, its slots are
+     * returned behind the slots of the new index. Use {@link #entryAt} to get the entry of a slot.
+     *
+     * @param key the key to look for
+     * @return the slot of the entry, or (-(free slot in the new index) - 1) if there is no entry with this key
+     */
+    private int probe(Object key) {
+        final int slot = probe(index, key);
+        if (slot < 0 && oldIndex != null) {
+            final int oldSlot = probe(oldIndex, key);
+            if (oldSlot >= 0) {
+                return index.length + oldSlot;
+            }
+        }
+        return slot;
+    }
+
+    private Entry<K, V> entryAt(int slot) {
+        return slot < index.length ? index[slot] : oldIndex[slot - index.length];
+    }
+
+    /**
+     * Probes the hash index for a key, like {@link #findIndexSlotByKey}, but also reports where the key would be
+     * inserted.
+     *
+     * @param table the hash index
+     * @param key the key to look for
+     * @return the slot of the entry, or (-(free slot) - 1) if there is no entry with this key
+     */
+    private int probe(Entry<K, V>[] table, Object key) {
+        final int hash = Hashing.hash(key);
+        final int mask = table.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            Entry<K, V> candidate = table[slot];
+            if (candidate == null) {
+                recordProbe(hash, slot, mask);
+                return -(slot + 1);
+            }
+            if (candidate.hash == hash && Objects.equals(candidate.getKey(), key)) {
+                recordProbe(hash, slot, mask);
+                return slot;
+            }
+        }
+    }
+
+    private void recordProbe(int hash, int lastSlot, int mask) {
+        final StatsRecorder recorder = stats;
+        if (recorder != null) {
+            recorder.lookup(((lastSlot - hash) & mask) + 1);
+        }
+    }
+
+    /**
+     * Adds a new entry. The free slot found by {@link #probe} is used for the index, unless the map has to grow
+     * or finish an incremental resize, which changes the index.
+     *
+     * @param freeSlot the free slot in the hash index for this key
+     * @param key the key of the new entry
+     * @param value the value of the new entry
+     */
+    private void insert(int freeSlot, K key, V value) {
+        final Entry<K, V> entry = new Entry<>(key, value);
+        boolean indexChanged = false;
+        int freePosition = findFreePosition();
+        if (freePosition < 0 && oldEntries != null) {
+            // No room left behind the positions reserved for the entries that were not moved yet
+            completeResize();
+            freePosition = findFreePosition();
+            indexChanged = true;
+        }
+        if (freePosition < 0) {
+            grow();
+            freePosition = findFreePosition();
+            indexChanged = true;
+        }
+        entry.position = freePosition;
+        if (indexChanged) {
+            addToIndex(index, entry);
+        } else {
+            index[freeSlot] = entry;
+        }
+        this.entries[freePosition] = entry;
+        size++;
+        modCount++;
+        if (oldEntries != null) {
+            resizeStep();
+        }
+    }
+
+    /**
+     * Adds a new entry behind the last one, for filling a new map in bulk. Unlike {@link #insert} it does not search
+     * for a free position, so it must only be used on maps nothing was removed from.
+     *
+     * @param entry the new entry
+     * @throws IllegalArgumentException if the key is in the map already
+     */
+    void appendEntry(Entry<K, V> entry) {
+        completeResize();
+        if (size == maxSize) {
+            resize(maxSize * GROW_FACTOR);
+        }
+        final int slot = probe(entry.getKey());
+        if (slot >= 0) {
+            throw new IllegalArgumentException("Duplicate key: " + entry.getKey());
+        }
+        entry.position = size;
+        entries[size++] = entry;
+        usedPositions = size;
+        index[-(slot + 1)] = entry;
+        modCount++;
+    }
+
+    /**
+     * Applies the result of a compute or merge function to the result of a {@link #probe}.
+     * A null value removes the entry.
+     *
+     * @return the new value
+     */
+    private V store(int slot, K key, V value) {
+        if (slot < 0) {
+            if (value != null) {
+                insert(-(slot + 1), key, value);
             }
-            if (entry.getKey().equals(key)) {
-                return i;
+        } else if (value == null) {
+            removeAtSlot(slot);
+            shrinkIfNeeded();
+        } else {
+            entryAt(slot).setValue(value);
+        }
+        return value;
+    }
+
+    private void checkModCount(int expectedModCount) {
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Removes the entry in this slot of the hash index from the index and the entries array.
+     * The entries array is not shrunk, so the positions of all other entries stay the same.
+     *
+     * @param slot the slot of the entry to remove, as returned by {@link #probe(Object)}
+     */
+    private void removeAtSlot(int slot) {
+        if (slot < index.length) {
+            final Entry<K, V> entry = index[slot];
+            removeFromIndex(index, slot);
+            entries[entry.position] = null;
+            pushFreePosition(entry.position);
+        } else {
+            // The entry was not moved by the incremental resize yet
+            final int oldSlot = slot - index.length;
+            final Entry<K, V> entry = oldIndex[oldSlot];
+            removeFromIndex(oldIndex, oldSlot);
+            oldEntries[entry.position] = null;
+            pendingEntries--;
+        }
+        size--;
+        modCount++;
+    }
+
+    /**
+     * Removes a mapping if the map contains this exact key and value.
+     *
+     * @param o the entry to look for
+     * @return true if the mapping was removed
+     */
+    private boolean removeMapping(Object o) {
+        if (!(o instanceof Map.Entry<?, ?> mapping)) {
+            return false;
+        }
+        final int slot = findIndexSlotByKey(mapping.getKey());
+        if (slot < 0 || !Objects.equals(entryAt(slot).getValue(), mapping.getValue())) {
+            return false;
+        }
+        removeAtSlot(slot);
+        shrinkIfNeeded();
+        return true;
+    }
+
+    private static <K extends Comparable<K>, V> void addToIndex(Entry<K, V>[] table, Entry<K, V> entry) {
+        final int mask = table.length - 1;
+        int slot = entry.hash & mask;
+        while (table[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = entry;
+    }
+
+    /**
+     * Empties a slot of the hash index. No tombstone is left behind, instead the following entries of the probe
+     * sequence are shifted back into the gap, unless that would move them in front of their home slot.
+     *
+     * @param table the hash index
+     * @param slot the slot to empty
+     */
+    private static <K extends Comparable<K>, V> void removeFromIndex(Entry<K, V>[] table, int slot) {
+        final int mask = table.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (table[next] != null) {
+            final int home = table[next].hash & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                table[gap] = table[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[gap] = null;
+    }
+
+    private void rebuildIndex() {
+        this.index = new Entry[Hashing.tableSizeFor(maxSize)];
+        for (Entry<K, V> entry : entries) {
+            if (entry != null) {
+                addToIndex(index, entry);
             }
         }
-        return -1;
     }
 
     /**
-     * Finds a free position in the entries array.
+     * Finds a free position in the entries array in O(1): the position freed last, or the first one that was never
+     * used.
      *
      * @return the index of a free position or -1 if there is no free position.
      */
     private int findFreePosition(){
-        if (size == maxSize) {
+        final boolean reused = freeCount > 0;
+        final int position;
+        if (reused) {
+            position = freePositions[--freeCount];
+        } else if (usedPositions < entries.length) {
+            position = usedPositions++;
+        } else {
             return -1;
         }
-        if (entries[size] == null) {
+        if (stats != null) {
+            stats.freeSlotSearch(reused);
+        }
+        return position;
+    }
+
+    private void pushFreePosition(int position) {
+        if (freeCount == freePositions.length) {
+            freePositions = Arrays.copyOf(freePositions, Math.min(entries.length, Math.max(8, freeCount * 2)));
+        }
+        freePositions[freeCount++] = position;
+    }
+
+    protected int getMaxSize(){
+        return this.maxSize;
+    }
+
+    /**
+     * @return a builder for an unmodifiable map
+     */
+    public static <K extends Comparable<K>, V> Builder<K, V> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Returns a collector, that collects elements into an unmodifiable map. The map is sized once, when all
+     * elements are collected.
+     *
+     * @param keyMapper creates the key of an element
+     * @param valueMapper creates the value of an element
+     * @return the collector
+     * @throws IllegalArgumentException from the collector, if two elements are mapped to the same key
+     */
+    public static <T, K extends Comparable<K>, V> Collector<T, ?, Map<K, V>> toUnmodifiableMap(
+            Function<? super T, ? extends K> keyMapper, Function<? super T, ? extends V> valueMapper) {
+        return Collector.of(
+                SomeMap.Builder<K, V>::new,
+                (builder, element) -> builder.put(keyMapper.apply(element), valueMapper.apply(element)),
+                Builder::putAll,
+                Builder::build);
+    }
+
+    /**
+     * Collects mappings for an unmodifiable map. The mappings are buffered, so the map only needs to be sized once
+     * in {@link #build()}.
+     */
+    public static final class Builder<K extends Comparable<K>, V> {
+        private final List<Entry<K, V>> mappings = new ArrayList<>();
+
+        private Builder(){}
+
+        public Builder<K, V> put(K key, V value) {
+            mappings.add(new Entry<>(key, value));
+            return this;
+        }
+
+        public Builder<K, V> putAll(Map<? extends K, ? extends V> m) {
+            for (Map.Entry<? extends K, ? extends V> entry : m.entrySet()) {
+                put(entry.getKey(), entry.getValue());
+            }
+            return this;
+        }
+
+        private Builder<K, V> putAll(Builder<K, V> other) {
+            mappings.addAll(other.mappings);
+            return this;
+        }
+
+        /**
+         * @return an unmodifiable map with all mappings put into this builder
+         * @throws IllegalArgumentException if a key was put more than once
+         */
+        public Map<K, V> build() {
+            final SomeMap<K, V> map = new SomeMap<>(Math.max(mappings.size(), 1));
+            for (Entry<K, V> mapping : mappings) {
+                // Fresh entries, so building twice does not share them between maps
+                map.appendEntry(new Entry<>(mapping.getKey(), mapping.getValue()));
+            }
+            return Collections.unmodifiableMap(map);
+        }
+    }
+
+    /**
+     * Iterates the entries array in position order and skips free positions. During an incremental resize the old
+     * entries array follows, with the entries that were not moved yet.
+     * Removing through the iterator does not shrink the array or move entries, so the positions of the remaining
+     * entries stay valid.
+     */
+    private abstract class EntryIterator<T> implements Iterator<T> {
+        private Entry<K, V>[] array = entries;
+        private final Entry<K, V>[] pendingArray = oldEntries;
+        private int nextPosition = 0;
+        private int remaining = size;
+        private Entry<K, V> lastReturned;
+        private int expectedModCount = modCount;
+
+        abstract T element(Entry<K, V> entry);
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public T next() {
+            if (expectedModCount != modCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (remaining == 0) {
+                throw new NoSuchElementException();
+            }
+            while (nextPosition == array.length || array[nextPosition] == null) {
+                if (nextPosition == array.length) {
+                    array = pendingArray;
+                    nextPosition = 0;
+                } else {
+                    nextPosition++;
+                }
+            }
+            lastReturned = array[nextPosition++];
+            remaining--;
+            return element(lastReturned);
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            if (expectedModCount != modCount) {
+                throw new ConcurrentModificationException();
+            }
+            removeAtSlot(findIndexSlotByKey(lastReturned.getKey()));
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
+    }
+
+    private final class KeySet extends AbstractSet<K> {
+        @Override
+        public Iterator<K> iterator() {
+            return new EntryIterator<>() {
+                @Override
+                K element(Entry<K, V> entry) {
+                    return entry.getKey();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
             return size;
         }
 
-        for (int i = 0; i < entries.length; i++) {
-            if (entries[i] == null) {
-                return i;
+        @Override
+        public boolean contains(Object o) {
+            return containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            final int slot = findIndexSlotByKey(o);
+            if (slot < 0) {
+                return false;
             }
+            removeAtSlot(slot);
+            shrinkIfNeeded();
+            return true;
         }
 
-        // It should never get here but whatever
-        return -1;
+        @Override
+        public void clear() {
+            SomeMap.this.clear();
+        }
     }
 
-    protected int getMaxSize(){
-        return this.maxSize;
+    private final class Values extends AbstractCollection<V> {
+        @Override
+        public Iterator<V> iterator() {
+            return new EntryIterator<>() {
+                @Override
+                V element(Entry<K, V> entry) {
+                    return entry.getValue();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return containsValue(o);
+        }
+
+        @Override
+        public void clear() {
+            SomeMap.this.clear();
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator<>() {
+                @Override
+                Map.Entry<K, V> element(Entry<K, V> entry) {
+                    return entry;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry<?, ?> mapping)) {
+                return false;
+            }
+            final Entry<K, V> entry = findEntryByKey(mapping.getKey());
+            return entry != null && Objects.equals(entry.getValue(), mapping.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return removeMapping(o);
+        }
+
+        @Override
+        public void clear() {
+            SomeMap.this.clear();
+        }
     }
 
     public static class Entry<K extends Comparable<K>, V> implements Map.Entry<K,V>, Comparable<K> {
         private final K key;
         private V value;
+        private final int hash;
+        private int position;
 
         public Entry(K key, V value) {
             this.key = key;
             this.value = value;
+            this.hash = Hashing.hash(key);
         }
 
         @Override
@@ -279,9 +1161,22 @@ public class SomeMap<K extends Comparable<K>, V> implements Map<K, V> {
             return this.key.compareTo(o);
         }
 
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Map.Entry<?, ?> other
+                    && Objects.equals(key, other.getKey())
+                    && Objects.equals(value, other.getValue());
+        }
+
         @Override
         public int hashCode() {
-            return Objects.hash(key, value);
+            // As defined by Map.Entry, so entry sets of different map implementations can be compared
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
         }
     }
 }
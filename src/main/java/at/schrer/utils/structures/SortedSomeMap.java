@@ -0,0 +1,853 @@
+package at.schrer.utils.structures;
+
+import java.util.*;
+
+/**
+ * A sorted map implementation based on a single array of {@link SomeMap.Entry} elements.
+ * The entries are kept densely packed in the natural order of their keys, so lookups are done with a binary search and
+ * range queries just select a slice of the array.
+ * <p>
+ * Views returned by {@link #subMap}, {@link #headMap}, {@link #tailMap} and {@link #descendingMap} are instances of
+ * this class as well. They are created in O(1), share the array with the map they were created from and only store
+ * their bounds. Changes made through a view are visible in the backing map and the other way round.
+ * <p>
+ * Null keys are not permitted. The map is not thread safe.
+ *
+ * @param <K> type of the key
+ * @param <V> type of the value
+ */
+public class SortedSomeMap<K extends Comparable<K>, V> extends AbstractMap<K, V> implements NavigableMap<K, V> {
+
+    private static final int DEFAULT_INIT_SIZE = 30;
+    private static final int GROW_FACTOR = 2;
+
+    private final Storage<K, V> storage;
+
+    // Bounds of this map in natural key order, the backing map itself has none
+    private final boolean fromStart;
+    private final K lo;
+    private final boolean loInclusive;
+    private final boolean toEnd;
+    private final K hi;
+    private final boolean hiInclusive;
+    private final boolean descending;
+
+    private KeySet navigableKeySet;
+    private EntrySet entrySet;
+    private Values values;
+
+    public SortedSomeMap() {
+        this(DEFAULT_INIT_SIZE);
+    }
+
+    public SortedSomeMap(int initialSize) {
+        this(new Storage<>(initialSize < 1 ? DEFAULT_INIT_SIZE : initialSize),
+                true, null, false, true, null, false, false);
+    }
+
+    public SortedSomeMap(Map<? extends K, ? extends V> m) {
+        this(Math.max(m.size(), DEFAULT_INIT_SIZE));
+        putAll(m);
+    }
+
+    private SortedSomeMap(Storage<K, V> storage,
+                          boolean fromStart, K lo, boolean loInclusive,
+                          boolean toEnd, K hi, boolean hiInclusive,
+                          boolean descending) {
+        if (!fromStart && !toEnd && lo.compareTo(hi) > 0) {
+            throw new IllegalArgumentException("fromKey > toKey");
+        }
+        this.storage = storage;
+        this.fromStart = fromStart;
+        this.lo = lo;
+        this.loInclusive = loInclusive;
+        this.toEnd = toEnd;
+        this.hi = hi;
+        this.hiInclusive = hiInclusive;
+        this.descending = descending;
+    }
+
+    @Override
+    public int size() {
+        return highIndex() - lowIndex();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return findIndexByKey(key) >= 0;
+    }
+
+    @Override
+    public V get(Object key) {
+        final int index = findIndexByKey(key);
+        return index < 0 ? null : storage.entries[index].getValue();
+    }
+
+    @Override
+    public V put(K key, V value) {
+        Objects.requireNonNull(key);
+        if (!inRange(key)) {
+            throw new IllegalArgumentException("key out of range");
+        }
+
+        final int searchResult = storage.search(key);
+        if (searchResult >= 0) {
+            return storage.entries[searchResult].setValue(value);
+        }
+
+        storage.insert(-(searchResult + 1), new SomeMap.Entry<>(key, value));
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        final int index = findIndexByKey(key);
+        if (index < 0) {
+            return null;
+        }
+        return storage.removeAt(index).getValue();
+    }
+
+    @Override
+    public void clear() {
+        storage.removeRange(lowIndex(), highIndex());
+    }
+
+    /**
+     * Maps sorted by their natural key order are merged in with {@link #putAllSorted}, in linear time.
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        if (m instanceof SortedMap<? extends K, ? extends V> sorted && sorted.comparator() == null) {
+            putAllSorted(sorted.entrySet());
+        } else {
+            super.putAll(m);
+        }
+    }
+
+    /**
+     * Merges mappings into the map in a single pass over the entries array, instead of inserting them one by one.
+     * Existing keys get the new value.
+     *
+     * @param sortedMappings mappings in ascending natural order of their keys, without duplicate keys
+     * @throws IllegalArgumentException if the mappings are not strictly ascending or a key is out of range
+     */
+    @SuppressWarnings("unchecked")
+    public void putAllSorted(Iterable<? extends Map.Entry<? extends K, ? extends V>> sortedMappings) {
+        final List<SomeMap.Entry<K, V>> additions = new ArrayList<>();
+        K previous = null;
+        for (Map.Entry<? extends K, ? extends V> mapping : sortedMappings) {
+            final K key = Objects.requireNonNull(mapping.getKey());
+            if (previous != null && previous.compareTo(key) >= 0) {
+                throw new IllegalArgumentException("Mappings are not sorted: " + key + " after " + previous);
+            }
+            if (!inRange(key)) {
+                throw new IllegalArgumentException("key out of range");
+            }
+            additions.add(new SomeMap.Entry<>(key, mapping.getValue()));
+            previous = key;
+        }
+        if (additions.isEmpty()) {
+            return;
+        }
+
+        final SomeMap.Entry<K, V>[] old = storage.entries;
+        final int oldSize = storage.size;
+        final SomeMap.Entry<K, V>[] merged = new SomeMap.Entry[Math.max(old.length, oldSize + additions.size())];
+        int i = 0;
+        int mergedSize = 0;
+        for (SomeMap.Entry<K, V> addition : additions) {
+            while (i < oldSize && old[i].compareTo(addition.getKey()) < 0) {
+                merged[mergedSize++] = old[i++];
+            }
+            if (i < oldSize && old[i].compareTo(addition.getKey()) == 0) {
+                old[i].setValue(addition.getValue());
+                merged[mergedSize++] = old[i++];
+            } else {
+                merged[mergedSize++] = addition;
+            }
+        }
+        System.arraycopy(old, i, merged, mergedSize, oldSize - i);
+        storage.entries = merged;
+        storage.size = mergedSize + oldSize - i;
+        storage.modCount++;
+    }
+
+    @Override
+    public Comparator<? super K> comparator() {
+        return descending ? Collections.reverseOrder() : null;
+    }
+
+    @Override
+    public K firstKey() {
+        return keyOrThrow(firstIndex());
+    }
+
+    @Override
+    public K lastKey() {
+        return keyOrThrow(lastIndex());
+    }
+
+    @Override
+    public Map.Entry<K, V> lowerEntry(K key) {
+        return snapshot(lowerIndex(key));
+    }
+
+    @Override
+    public K lowerKey(K key) {
+        return keyOrNull(lowerIndex(key));
+    }
+
+    @Override
+    public Map.Entry<K, V> floorEntry(K key) {
+        return snapshot(floorIndex(key));
+    }
+
+    @Override
+    public K floorKey(K key) {
+        return keyOrNull(floorIndex(key));
+    }
+
+    @Override
+    public Map.Entry<K, V> ceilingEntry(K key) {
+        return snapshot(ceilingIndex(key));
+    }
+
+    @Override
+    public K ceilingKey(K key) {
+        return keyOrNull(ceilingIndex(key));
+    }
+
+    @Override
+    public Map.Entry<K, V> higherEntry(K key) {
+        return snapshot(higherIndex(key));
+    }
+
+    @Override
+    public K higherKey(K key) {
+        return keyOrNull(higherIndex(key));
+    }
+
+    @Override
+    public Map.Entry<K, V> firstEntry() {
+        return snapshot(firstIndex());
+    }
+
+    @Override
+    public Map.Entry<K, V> lastEntry() {
+        return snapshot(lastIndex());
+    }
+
+    @Override
+    public Map.Entry<K, V> pollFirstEntry() {
+        return pollIndex(firstIndex());
+    }
+
+    @Override
+    public Map.Entry<K, V> pollLastEntry() {
+        return pollIndex(lastIndex());
+    }
+
+    @Override
+    public NavigableMap<K, V> descendingMap() {
+        return new SortedSomeMap<>(storage, fromStart, lo, loInclusive, toEnd, hi, hiInclusive, !descending);
+    }
+
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        if (navigableKeySet == null) {
+            navigableKeySet = new KeySet();
+        }
+        return navigableKeySet;
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return navigableKeySet();
+    }
+
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return descendingMap().navigableKeySet();
+    }
+
+    @Override
+    public Collection<V> values() {
+        if (values == null) {
+            values = new Values();
+        }
+        return values;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    @Override
+    public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        checkViewBound(fromKey, fromInclusive, "fromKey");
+        checkViewBound(toKey, toInclusive, "toKey");
+        if (descending) {
+            return new SortedSomeMap<>(storage, false, toKey, toInclusive, false, fromKey, fromInclusive, true);
+        }
+        return new SortedSomeMap<>(storage, false, fromKey, fromInclusive, false, toKey, toInclusive, false);
+    }
+
+    @Override
+    public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+        checkViewBound(toKey, inclusive, "toKey");
+        if (descending) {
+            return new SortedSomeMap<>(storage, false, toKey, inclusive, toEnd, hi, hiInclusive, true);
+        }
+        return new SortedSomeMap<>(storage, fromStart, lo, loInclusive, false, toKey, inclusive, false);
+    }
+
+    @Override
+    public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        checkViewBound(fromKey, inclusive, "fromKey");
+        if (descending) {
+            return new SortedSomeMap<>(storage, fromStart, lo, loInclusive, false, fromKey, inclusive, true);
+        }
+        return new SortedSomeMap<>(storage, false, fromKey, inclusive, toEnd, hi, hiInclusive, false);
+    }
+
+    @Override
+    public SortedMap<K, V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    protected int getMaxSize(){
+        return storage.entries.length;
+    }
+
+    // Range handling, all indexes are absolute positions in the entries array
+
+    /**
+     * @return the index of the first entry inside the bounds of this map
+     */
+    private int lowIndex() {
+        if (fromStart) {
+            return 0;
+        }
+        return loInclusive ? storage.ceilingIndex(lo) : storage.higherIndex(lo);
+    }
+
+    /**
+     * @return the index after the last entry inside the bounds of this map, never below {@link #lowIndex()}, so
+     * equal exclusive bounds give an empty range
+     */
+    private int highIndex() {
+        if (toEnd) {
+            return storage.size;
+        }
+        final int high = hiInclusive ? storage.higherIndex(hi) : storage.ceilingIndex(hi);
+        return Math.max(high, lowIndex());
+    }
+
+    private boolean tooLow(K key) {
+        if (fromStart) {
+            return false;
+        }
+        final int c = key.compareTo(lo);
+        return c < 0 || (c == 0 && !loInclusive);
+    }
+
+    private boolean tooHigh(K key) {
+        if (toEnd) {
+            return false;
+        }
+        final int c = key.compareTo(hi);
+        return c > 0 || (c == 0 && !hiInclusive);
+    }
+
+    private boolean inRange(K key) {
+        return !tooLow(key) && !tooHigh(key);
+    }
+
+    /**
+     * Checks a bound for a new view. Exclusive bounds may be equal to an exclusive bound of this map.
+     */
+    private void checkViewBound(K key, boolean inclusive, String name) {
+        Objects.requireNonNull(key);
+        final boolean inClosedRange = (fromStart || key.compareTo(lo) >= 0) && (toEnd || key.compareTo(hi) <= 0);
+        if (inclusive ? !inRange(key) : !inClosedRange) {
+            throw new IllegalArgumentException(name + " out of range");
+        }
+    }
+
+    /**
+     * Returns the index of the entry with this key, if it is inside the bounds of this map.
+     *
+     * @param key the key to look for
+     * @return the index of the entry or -1 if there is no entry with this key in this map
+     */
+    private int findIndexByKey(Object key) {
+        final K k = asKey(key);
+        if (!inRange(k)) {
+            return -1;
+        }
+        final int searchResult = storage.search(k);
+        return searchResult < 0 ? -1 : searchResult;
+    }
+
+    private int ascendingCeilingIndex(K key) {
+        final int index = Math.max(storage.ceilingIndex(key), lowIndex());
+        return index < highIndex() ? index : -1;
+    }
+
+    private int ascendingHigherIndex(K key) {
+        final int index = Math.max(storage.higherIndex(key), lowIndex());
+        return index < highIndex() ? index : -1;
+    }
+
+    private int ascendingFloorIndex(K key) {
+        final int index = Math.min(storage.higherIndex(key) - 1, highIndex() - 1);
+        return index >= lowIndex() ? index : -1;
+    }
+
+    private int ascendingLowerIndex(K key) {
+        final int index = Math.min(storage.ceilingIndex(key) - 1, highIndex() - 1);
+        return index >= lowIndex() ? index : -1;
+    }
+
+    private int ceilingIndex(K key) {
+        Objects.requireNonNull(key);
+        return descending ? ascendingFloorIndex(key) : ascendingCeilingIndex(key);
+    }
+
+    private int higherIndex(K key) {
+        Objects.requireNonNull(key);
+        return descending ? ascendingLowerIndex(key) : ascendingHigherIndex(key);
+    }
+
+    private int floorIndex(K key) {
+        Objects.requireNonNull(key);
+        return descending ? ascendingCeilingIndex(key) : ascendingFloorIndex(key);
+    }
+
+    private int lowerIndex(K key) {
+        Objects.requireNonNull(key);
+        return descending ? ascendingHigherIndex(key) : ascendingLowerIndex(key);
+    }
+
+    private int firstIndex() {
+        final int low = lowIndex();
+        final int high = highIndex();
+        if (low >= high) {
+            return -1;
+        }
+        return descending ? high - 1 : low;
+    }
+
+    private int lastIndex() {
+        final int low = lowIndex();
+        final int high = highIndex();
+        if (low >= high) {
+            return -1;
+        }
+        return descending ? low : high - 1;
+    }
+
+    private K keyOrNull(int index) {
+        return index < 0 ? null : storage.entries[index].getKey();
+    }
+
+    private K keyOrThrow(int index) {
+        if (index < 0) {
+            throw new NoSuchElementException("Map is empty");
+        }
+        return storage.entries[index].getKey();
+    }
+
+    private Map.Entry<K, V> snapshot(int index) {
+        return index < 0 ? null : new SimpleImmutableEntry<>(storage.entries[index]);
+    }
+
+    private Map.Entry<K, V> pollIndex(int index) {
+        return index < 0 ? null : new SimpleImmutableEntry<>(storage.removeAt(index));
+    }
+
+    @SuppressWarnings("unchecked")
+    private K asKey(Object key) {
+        Objects.requireNonNull(key);
+        return (K) key;
+    }
+
+    /**
+     * The array holding the entries. It is shared between a map and all views created from it.
+     */
+    private static final class Storage<K extends Comparable<K>, V> {
+        private final int initSize;
+        private SomeMap.Entry<K, V>[] entries;
+        private int size;
+        private int modCount;
+
+        @SuppressWarnings("unchecked")
+        private Storage(int initSize) {
+            this.initSize = initSize;
+            this.entries = new SomeMap.Entry[initSize];
+        }
+
+        /**
+         * Binary search for a key.
+         *
+         * @param key the key to look for
+         * @return the index of the key, or (-(insertion point) - 1) if the key is not present
+         */
+        private int search(K key) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                final int c = entries[mid].compareTo(key);
+                if (c < 0) {
+                    low = mid + 1;
+                } else if (c > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        /**
+         * @return the index of the first entry with a key greater than or equal to the given key
+         */
+        private int ceilingIndex(K key) {
+            final int searchResult = search(key);
+            return searchResult >= 0 ? searchResult : -(searchResult + 1);
+        }
+
+        /**
+         * @return the index of the first entry with a key strictly greater than the given key
+         */
+        private int higherIndex(K key) {
+            final int searchResult = search(key);
+            return searchResult >= 0 ? searchResult + 1 : -(searchResult + 1);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void insert(int index, SomeMap.Entry<K, V> entry) {
+            if (size == entries.length) {
+                final SomeMap.Entry<K, V>[] newEntries = new SomeMap.Entry[entries.length * GROW_FACTOR];
+                System.arraycopy(entries, 0, newEntries, 0, index);
+                System.arraycopy(entries, index, newEntries, index + 1, size - index);
+                entries = newEntries;
+            } else {
+                System.arraycopy(entries, index, entries, index + 1, size - index);
+            }
+            entries[index] = entry;
+            size++;
+            modCount++;
+        }
+
+        private SomeMap.Entry<K, V> removeAt(int index) {
+            final SomeMap.Entry<K, V> removed = entries[index];
+            removeRange(index, index + 1);
+            return removed;
+        }
+
+        private void removeRange(int from, int to) {
+            if (from >= to) {
+                return;
+            }
+            System.arraycopy(entries, to, entries, from, size - to);
+            final int newSize = size - (to - from);
+            Arrays.fill(entries, newSize, size, null);
+            size = newSize;
+            modCount++;
+            shrinkIfNeeded();
+        }
+
+        /**
+         * Halves the array once it is less than a quarter full, but never goes below the initial size.
+         */
+        @SuppressWarnings("unchecked")
+        private void shrinkIfNeeded() {
+            final int newLength = Math.max(initSize, entries.length / GROW_FACTOR);
+            if (size >= entries.length / 4 || newLength == entries.length) {
+                return;
+            }
+            final SomeMap.Entry<K, V>[] newEntries = new SomeMap.Entry[newLength];
+            System.arraycopy(entries, 0, newEntries, 0, size);
+            entries = newEntries;
+        }
+    }
+
+    /**
+     * Iterates the entries inside the bounds of a map, in the order of the map.
+     * Removing an entry through the iterator shifts the following entries, the cursor is adjusted for that.
+     */
+    private abstract class RangeIterator<T> implements Iterator<T> {
+        private int next;
+        private int end;
+        private int lastReturned = -1;
+        private int expectedModCount = storage.modCount;
+
+        RangeIterator() {
+            final int low = lowIndex();
+            final int high = highIndex();
+            if (descending) {
+                next = high - 1;
+                end = low - 1;
+            } else {
+                next = low;
+                end = high;
+            }
+        }
+
+        abstract T element(SomeMap.Entry<K, V> entry);
+
+        @Override
+        public boolean hasNext() {
+            return next != end;
+        }
+
+        @Override
+        public T next() {
+            if (expectedModCount != storage.modCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next;
+            next += descending ? -1 : 1;
+            return element(storage.entries[lastReturned]);
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned < 0) {
+                throw new IllegalStateException();
+            }
+            if (expectedModCount != storage.modCount) {
+                throw new ConcurrentModificationException();
+            }
+            storage.removeAt(lastReturned);
+            if (!descending) {
+                // Following entries moved one position to the front
+                next--;
+                end--;
+            }
+            lastReturned = -1;
+            expectedModCount = storage.modCount;
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new RangeIterator<>() {
+                @Override
+                Map.Entry<K, V> element(SomeMap.Entry<K, V> entry) {
+                    return entry;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return SortedSomeMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry<?, ?> entry) || entry.getKey() == null) {
+                return false;
+            }
+            final int index = findIndexByKey(entry.getKey());
+            return index >= 0 && Objects.equals(storage.entries[index].getValue(), entry.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!contains(o)) {
+                return false;
+            }
+            SortedSomeMap.this.remove(((Map.Entry<?, ?>) o).getKey());
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            SortedSomeMap.this.clear();
+        }
+    }
+
+    private final class Values extends AbstractCollection<V> {
+        @Override
+        public Iterator<V> iterator() {
+            return new RangeIterator<>() {
+                @Override
+                V element(SomeMap.Entry<K, V> entry) {
+                    return entry.getValue();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return SortedSomeMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            SortedSomeMap.this.clear();
+        }
+    }
+
+    /**
+     * Key set of a map, all navigation is delegated to the map.
+     */
+    private final class KeySet extends AbstractSet<K> implements NavigableSet<K> {
+        private final SortedSomeMap<K, V> m = SortedSomeMap.this;
+
+        @Override
+        public Iterator<K> iterator() {
+            return new RangeIterator<>() {
+                @Override
+                K element(SomeMap.Entry<K, V> entry) {
+                    return entry.getKey();
+                }
+            };
+        }
+
+        @Override
+        public Iterator<K> descendingIterator() {
+            return descendingSet().iterator();
+        }
+
+        @Override
+        public int size() {
+            return m.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return m.isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return m.containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            final int index = m.findIndexByKey(o);
+            if (index < 0) {
+                return false;
+            }
+            m.storage.removeAt(index);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            m.clear();
+        }
+
+        @Override
+        public K lower(K k) {
+            return m.lowerKey(k);
+        }
+
+        @Override
+        public K floor(K k) {
+            return m.floorKey(k);
+        }
+
+        @Override
+        public K ceiling(K k) {
+            return m.ceilingKey(k);
+        }
+
+        @Override
+        public K higher(K k) {
+            return m.higherKey(k);
+        }
+
+        @Override
+        public K pollFirst() {
+            final Map.Entry<K, V> entry = m.pollFirstEntry();
+            return entry == null ? null : entry.getKey();
+        }
+
+        @Override
+        public K pollLast() {
+            final Map.Entry<K, V> entry = m.pollLastEntry();
+            return entry == null ? null : entry.getKey();
+        }
+
+        @Override
+        public NavigableSet<K> descendingSet() {
+            return m.descendingMap().navigableKeySet();
+        }
+
+        @Override
+        public NavigableSet<K> subSet(K fromElement, boolean fromInclusive, K toElement, boolean toInclusive) {
+            return m.subMap(fromElement, fromInclusive, toElement, toInclusive).navigableKeySet();
+        }
+
+        @Override
+        public NavigableSet<K> headSet(K toElement, boolean inclusive) {
+            return m.headMap(toElement, inclusive).navigableKeySet();
+        }
+
+        @Override
+        public NavigableSet<K> tailSet(K fromElement, boolean inclusive) {
+            return m.tailMap(fromElement, inclusive).navigableKeySet();
+        }
+
+        @Override
+        public SortedSet<K> subSet(K fromElement, K toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public SortedSet<K> headSet(K toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public SortedSet<K> tailSet(K fromElement) {
+            return tailSet(fromElement, true);
+        }
+
+        @Override
+        public Comparator<? super K> comparator() {
+            return m.comparator();
+        }
+
+        @Override
+        public K first() {
+            return m.firstKey();
+        }
+
+        @Override
+        public K last() {
+            return m.lastKey();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package at.schrer.utils.structures;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the counters of {@link StructureStats} for one structure. The counters are {@link LongAdder}s, so
+ * concurrent readers of a structure, like the stripes of a {@link ConcurrentSomeMap}, do not contend on them.
+ * <p>
+ * Structures keep a recorder only while their stats are enabled and check the field for null before recording,
+ * which is all they pay for it otherwise. Setting the system property {@value #ENABLED_PROPERTY} to true enables
+ * the stats of all new structures. It is read once, when this class is loaded.
+ */
+final class StatsRecorder implements StructureStatsMXBean {
+
+    static final String ENABLED_PROPERTY = "at.schrer.utils.structures.stats";
+    private static final boolean ENABLED_BY_DEFAULT = Boolean.getBoolean(ENABLED_PROPERTY);
+    private static final String DOMAIN = "at.schrer.utils.structures";
+
+    private final LongAdder lookupCount = new LongAdder();
+    private final LongAdder lookupSteps = new LongAdder();
+    private final LongAdder resizeCount = new LongAdder();
+    private final LongAdder freeSlotSearchCount = new LongAdder();
+    private final LongAdder reusedSlotCount = new LongAdder();
+
+    /**
+     * @return a new recorder if the system property enables stats for all structures, null otherwise
+     */
+    static StatsRecorder createIfEnabledByDefault() {
+        return ENABLED_BY_DEFAULT ? new StatsRecorder() : null;
+    }
+
+    void lookup(int steps) {
+        lookupCount.increment();
+        lookupSteps.add(steps);
+    }
+
+    void resize() {
+        resizeCount.increment();
+    }
+
+    void freeSlotSearch(boolean reused) {
+        freeSlotSearchCount.increment();
+        if (reused) {
+            reusedSlotCount.increment();
+        }
+    }
+
+    /**
+     * The counters are read one after another while they may still change, so the snapshot is not atomic.
+     */
+    StructureStats snapshot() {
+        return new StructureStats(lookupCount.sum(), lookupSteps.sum(), resizeCount.sum(),
+                freeSlotSearchCount.sum(), reusedSlotCount.sum());
+    }
+
+    /**
+     * Registers this recorder with the platform MBean server, under the name
+     * {@code at.schrer.utils.structures:type=<type>,name=<name>}.
+     *
+     * @throws IllegalArgumentException if the name is not valid in an object name
+     * @throws IllegalStateException if an MBean with this name is registered already
+     */
+    ObjectName register(String type, String name) {
+        final ObjectName objectName;
+        try {
+            objectName = new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Invalid MBean name: " + name, e);
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register MBean " + objectName, e);
+        }
+        return objectName;
+    }
+
+    @Override
+    public long getLookupCount() {
+        return lookupCount.sum();
+    }
+
+    @Override
+    public long getLookupSteps() {
+        return lookupSteps.sum();
+    }
+
+    @Override
+    public double getAverageLookupSteps() {
+        return snapshot().averageLookupSteps();
+    }
+
+    @Override
+    public long getResizeCount() {
+        return resizeCount.sum();
+    }
+
+    @Override
+    public long getFreeSlotSearchCount() {
+        return freeSlotSearchCount.sum();
+    }
+
+    @Override
+    public long getReusedSlotCount() {
+        return reusedSlotCount.sum();
+    }
+
+    @Override
+    public double getReusedSlotRatio() {
+        return snapshot().reusedSlotRatio();
+    }
+
+    @Override
+    public void reset() {
+        lookupCount.reset();
+        lookupSteps.reset();
+        resizeCount.reset();
+        freeSlotSearchCount.reset();
+        reusedSlotCount.reset();
+    }
+}
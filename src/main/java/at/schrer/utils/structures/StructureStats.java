@@ -0,0 +1,33 @@
+package at.schrer.utils.structures;
+
+/**
+ * Snapshot of the counters a structure records while its stats are enabled, see {@link SomeMap#enableStats()} and
+ * {@link SomeList#enableStats()}.
+ * <p>
+ * For a {@link SomeMap} a lookup is a probe of the hash index and its steps are the slots looked at, so
+ * {@link #averageLookupSteps()} is the average probe length. For a {@link SomeList} a lookup is a walk to the node at
+ * an index and its steps are the nodes passed, starting from the first node, the last node or the finger.
+ * Lists do not resize and do not search for free slots, their counters for those stay 0.
+ *
+ * @param lookupCount number of lookups
+ * @param lookupSteps number of slots or nodes looked at by all lookups
+ * @param resizeCount number of times the arrays of a map were grown or shrunk
+ * @param freeSlotSearchCount number of free positions taken in the entries array of a map
+ * @param reusedSlotCount number of those positions that were freed by a removal before, the others were never used
+ */
+public record StructureStats(long lookupCount, long lookupSteps, long resizeCount,
+                             long freeSlotSearchCount, long reusedSlotCount) {
+
+    static final StructureStats EMPTY = new StructureStats(0, 0, 0, 0, 0);
+
+    public double averageLookupSteps() {
+        return lookupCount == 0 ? 0.0 : (double) lookupSteps / lookupCount;
+    }
+
+    /**
+     * @return the share of free positions that were reused, between 0 and 1
+     */
+    public double reusedSlotRatio() {
+        return freeSlotSearchCount == 0 ? 0.0 : (double) reusedSlotCount / freeSlotSearchCount;
+    }
+}
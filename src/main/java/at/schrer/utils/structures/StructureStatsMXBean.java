@@ -0,0 +1,29 @@
+package at.schrer.utils.structures;
+
+/**
+ * The counters of a structure with enabled stats, as they are shown over JMX. The MBean is registered with
+ * {@link SomeMap#registerStatsMBean(String)} or {@link SomeList#registerStatsMBean(String)}.
+ *
+ * @see StructureStats
+ */
+public interface StructureStatsMXBean {
+
+    long getLookupCount();
+
+    long getLookupSteps();
+
+    double getAverageLookupSteps();
+
+    long getResizeCount();
+
+    long getFreeSlotSearchCount();
+
+    long getReusedSlotCount();
+
+    double getReusedSlotRatio();
+
+    /**
+     * Sets all counters back to 0.
+     */
+    void reset();
+}
@@ -0,0 +1,37 @@
+package at.schrer.utils.structures.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts values to and from bytes.
+ * An encoded value has to be self delimiting: {@link #decode} reads exactly the bytes {@link #encode} wrote, so values
+ * can be written one after the other without separators.
+ * Equal values must produce equal bytes, as structures may compare values by their encoded form.
+ *
+ * @param <T> type of the values
+ */
+public interface Codec<T> {
+
+    /**
+     * @param value the value to encode
+     * @return the number of bytes {@link #encode} writes for the value
+     */
+    int encodedSize(T value);
+
+    /**
+     * Writes the value at the current position of the buffer and advances the position.
+     *
+     * @param value the value to encode
+     * @param target the buffer to write to, with at least {@link #encodedSize} bytes remaining
+     */
+    void encode(T value, ByteBuffer target);
+
+    /**
+     * Reads a value at the current position of the buffer and advances the position past it.
+     *
+     * @param source the buffer to read from
+     * @return the decoded value
+     * @throws java.nio.BufferUnderflowException if the buffer ends before the value is complete
+     */
+    T decode(ByteBuffer source);
+}
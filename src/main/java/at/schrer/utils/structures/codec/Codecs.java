@@ -0,0 +1,324 @@
+package at.schrer.utils.structures.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codecs for common types.
+ */
+public final class Codecs {
+
+    private Codecs(){}
+
+    /**
+     * Encodes an int as 4 bytes in big endian order.
+     */
+    public static final Codec<Integer> INT = new Codec<>() {
+        @Override
+        public int encodedSize(Integer value) {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public void encode(Integer value, ByteBuffer target) {
+            target.putInt(value);
+        }
+
+        @Override
+        public Integer decode(ByteBuffer source) {
+            return source.getInt();
+        }
+    };
+
+    /**
+     * Encodes a long as 8 bytes in big endian order.
+     */
+    public static final Codec<Long> LONG = new Codec<>() {
+        @Override
+        public int encodedSize(Long value) {
+            return Long.BYTES;
+        }
+
+        @Override
+        public void encode(Long value, ByteBuffer target) {
+            target.putLong(value);
+        }
+
+        @Override
+        public Long decode(ByteBuffer source) {
+            return source.getLong();
+        }
+    };
+
+    /**
+     * Encodes a double as the 8 bytes of its IEEE 754 bits in big endian order.
+     */
+    public static final Codec<Double> DOUBLE = new Codec<>() {
+        @Override
+        public int encodedSize(Double value) {
+            return Double.BYTES;
+        }
+
+        @Override
+        public void encode(Double value, ByteBuffer target) {
+            target.putDouble(value);
+        }
+
+        @Override
+        public Double decode(ByteBuffer source) {
+            return source.getDouble();
+        }
+    };
+
+    /**
+     * Encodes a non-negative int as varint, in 1 to 5 bytes. Small values take the fewest bytes, negative values
+     * always take 5, use {@link #VAR_INT} for those.
+     */
+    public static final Codec<Integer> UNSIGNED_VAR_INT = new Codec<>() {
+        @Override
+        public int encodedSize(Integer value) {
+            return varIntSize(value);
+        }
+
+        @Override
+        public void encode(Integer value, ByteBuffer target) {
+            putVarInt(value, target);
+        }
+
+        @Override
+        public Integer decode(ByteBuffer source) {
+            return getVarInt(source);
+        }
+    };
+
+    /**
+     * Encodes an int as zigzag varint, in 1 to 5 bytes. Values close to zero take the fewest bytes, whether they are
+     * positive or negative.
+     */
+    public static final Codec<Integer> VAR_INT = new Codec<>() {
+        @Override
+        public int encodedSize(Integer value) {
+            return varIntSize(zigZag(value));
+        }
+
+        @Override
+        public void encode(Integer value, ByteBuffer target) {
+            putVarInt(zigZag(value), target);
+        }
+
+        @Override
+        public Integer decode(ByteBuffer source) {
+            final int zigZag = getVarInt(source);
+            return (zigZag >>> 1) ^ -(zigZag & 1);
+        }
+    };
+
+    /**
+     * Encodes a long as zigzag varint, in 1 to 10 bytes. Values close to zero take the fewest bytes, whether they are
+     * positive or negative.
+     */
+    public static final Codec<Long> VAR_LONG = new Codec<>() {
+        @Override
+        public int encodedSize(Long value) {
+            return varLongSize(zigZag(value));
+        }
+
+        @Override
+        public void encode(Long value, ByteBuffer target) {
+            putVarLong(zigZag(value), target);
+        }
+
+        @Override
+        public Long decode(ByteBuffer source) {
+            final long zigZag = getVarLong(source);
+            return (zigZag >>> 1) ^ -(zigZag & 1);
+        }
+    };
+
+    /**
+     * Encodes a string as its UTF-8 bytes, prefixed with their number as a varint.
+     */
+    public static final Codec<String> STRING = new Codec<>() {
+        @Override
+        public int encodedSize(String value) {
+            final int length = utf8Length(value);
+            return varIntSize(length) + length;
+        }
+
+        @Override
+        public void encode(String value, ByteBuffer target) {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putVarInt(bytes.length, target);
+            target.put(bytes);
+        }
+
+        @Override
+        public String decode(ByteBuffer source) {
+            final int length = getLength(source);
+            if (source.hasArray()) {
+                final String value = new String(source.array(), source.arrayOffset() + source.position(), length,
+                        StandardCharsets.UTF_8);
+                source.position(source.position() + length);
+                return value;
+            }
+            final byte[] bytes = new byte[length];
+            source.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    /**
+     * Encodes a byte array, prefixed with its length as a varint.
+     */
+    public static final Codec<byte[]> BYTES = new Codec<>() {
+        @Override
+        public int encodedSize(byte[] value) {
+            return varIntSize(value.length) + value.length;
+        }
+
+        @Override
+        public void encode(byte[] value, ByteBuffer target) {
+            putVarInt(value.length, target);
+            target.put(value);
+        }
+
+        @Override
+        public byte[] decode(ByteBuffer source) {
+            final byte[] bytes = new byte[getLength(source)];
+            source.get(bytes);
+            return bytes;
+        }
+    };
+
+    /**
+     * Wraps a codec, so it also encodes null. Every value is prefixed with a byte telling whether it is null.
+     *
+     * @param codec the codec for the values that are not null
+     * @return a codec accepting null
+     */
+    public static <T> Codec<T> nullable(Codec<T> codec) {
+        return new Codec<>() {
+            @Override
+            public int encodedSize(T value) {
+                return value == null ? 1 : 1 + codec.encodedSize(value);
+            }
+
+            @Override
+            public void encode(T value, ByteBuffer target) {
+                if (value == null) {
+                    target.put((byte) 0);
+                } else {
+                    target.put((byte) 1);
+                    codec.encode(value, target);
+                }
+            }
+
+            @Override
+            public T decode(ByteBuffer source) {
+                return source.get() == 0 ? null : codec.decode(source);
+            }
+        };
+    }
+
+    /**
+     * Maps signed values to unsigned ones, so small negative values get small varints: 0, -1, 1, -2 become 0, 1, 2, 3.
+     */
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * @param value an int, interpreted as unsigned
+     * @return the number of bytes the value takes as a varint
+     */
+    static int varIntSize(int value) {
+        // Every byte carries 7 bits of the value
+        final int bits = 32 - Integer.numberOfLeadingZeros(value | 1);
+        return (bits + 6) / 7;
+    }
+
+    /**
+     * Writes an int as unsigned varint: 7 bits per byte, lowest bits first, the high bit marks that more bytes follow.
+     */
+    static void putVarInt(int value, ByteBuffer target) {
+        while ((value & ~0x7F) != 0) {
+            target.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        target.put((byte) value);
+    }
+
+    static int getVarInt(ByteBuffer source) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            final byte b = source.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * Reads a length prefix, checking it before anything is allocated for it.
+     *
+     * @throws IllegalArgumentException if the length is negative or longer than the rest of the source
+     */
+    static int getLength(ByteBuffer source) {
+        final int length = getVarInt(source);
+        if (length < 0 || length > source.remaining()) {
+            throw new IllegalArgumentException("Invalid length " + length + ", " + source.remaining() + " bytes left");
+        }
+        return length;
+    }
+
+    static int varLongSize(long value) {
+        final int bits = 64 - Long.numberOfLeadingZeros(value | 1);
+        return (bits + 6) / 7;
+    }
+
+    static void putVarLong(long value, ByteBuffer target) {
+        while ((value & ~0x7FL) != 0) {
+            target.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        target.put((byte) value);
+    }
+
+    static long getVarLong(ByteBuffer source) {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            final byte b = source.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                // Also covers unpaired surrogates, which the encoder replaces with a single '?'
+                length += Character.isSurrogate(c) ? 1 : 3;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,198 @@
+package at.schrer.utils.structures;
+
+import at.schrer.utils.structures.codec.Codec;
+import at.schrer.utils.structures.codec.Codecs;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryFormatTest {
+
+    @Test
+    void testListRoundTrip() throws IOException {
+        // Given
+        SomeList<Long> list = new SomeList<>();
+        for (long i = -50_000; i < 50_000; i += 3) {
+            list.add(i);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // When
+        BinaryFormat.writeList(list, Codecs.VAR_LONG, Channels.newChannel(out));
+        SomeList<Long> read = BinaryFormat.readList(channelOf(out.toByteArray()), Codecs.VAR_LONG);
+        // Then
+        assertEquals(new ArrayList<>(list), new ArrayList<>(read));
+        // Varints of small numbers take at most 3 bytes instead of 8
+        assertTrue(out.size() < list.size() * 4);
+        read.add(1L);
+        assertEquals(list.size() + 1, read.size());
+        assertEquals(1L, read.get(read.size() - 1));
+    }
+
+    @Test
+    void testMapRoundTrip() throws IOException {
+        // Given
+        SomeMap<String, Integer> map = new SomeMap<>();
+        for (int i = 0; i < 5_000; i++) {
+            map.put("key\u00e4" + i, -i);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // When
+        BinaryFormat.writeMap(map, Codecs.STRING, Codecs.VAR_INT, Channels.newChannel(out));
+        SomeMap<String, Integer> read = BinaryFormat.readMap(channelOf(out.toByteArray()), Codecs.STRING, Codecs.VAR_INT);
+        // Then
+        assertEquals(map, read);
+        assertEquals(-4_999, read.get("key\u00e4" + 4_999));
+        read.put("new", 1);
+        read.remove("key\u00e40");
+        assertEquals(5_000, read.size());
+    }
+
+    @Test
+    void testSeveralStructuresOnOneChannel() throws IOException {
+        // Given
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WritableByteChannel target = Channels.newChannel(out);
+        Codec<String> nullableStrings = Codecs.nullable(Codecs.STRING);
+        List<String> withNull = Arrays.asList("a", null, "c");
+        // When
+        BinaryFormat.writeList(withNull, nullableStrings, target);
+        BinaryFormat.writeList(List.of(), Codecs.INT, target);
+        BinaryFormat.writeMap(Map.of(1L, 2.5), Codecs.LONG, Codecs.DOUBLE, target);
+        ReadableByteChannel source = channelOf(out.toByteArray());
+        // Then
+        assertEquals(withNull, new ArrayList<>(BinaryFormat.readList(source, nullableStrings)));
+        assertTrue(BinaryFormat.readList(source, Codecs.INT).isEmpty());
+        assertEquals(Map.of(1L, 2.5), BinaryFormat.readMap(source, Codecs.LONG, Codecs.DOUBLE));
+        assertEquals(-1, source.read(ByteBuffer.allocate(1)));
+    }
+
+    @Test
+    void testElementsLargerThanAFrame() throws IOException {
+        // Given
+        byte[] large = new byte[200_000];
+        new Random(22).nextBytes(large);
+        List<byte[]> list = List.of(new byte[] {1}, large, new byte[] {2});
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // When
+        BinaryFormat.writeList(list, Codecs.BYTES, Channels.newChannel(out));
+        SomeList<byte[]> read = BinaryFormat.readList(channelOf(out.toByteArray()), Codecs.BYTES);
+        // Then
+        assertEquals(3, read.size());
+        assertArrayEquals(new byte[] {1}, read.get(0));
+        assertArrayEquals(large, read.get(1));
+        assertArrayEquals(new byte[] {2}, read.get(2));
+    }
+
+    @Test
+    void testBrokenInputIsRejected() throws IOException {
+        // Given
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryFormat.writeList(List.of(1, 2, 3), Codecs.INT, Channels.newChannel(out));
+        byte[] bytes = out.toByteArray();
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 6);
+        byte[] otherVersion = bytes.clone();
+        otherVersion[4] = 9;
+        // Then
+        assertThrows(EOFException.class, () -> BinaryFormat.readList(channelOf(truncated), Codecs.INT));
+        assertThrows(IOException.class, () -> BinaryFormat.readList(channelOf(otherVersion), Codecs.INT));
+        assertThrows(IOException.class, () -> BinaryFormat.readMap(channelOf(bytes), Codecs.INT, Codecs.INT));
+        assertThrows(IOException.class, () -> BinaryFormat.readList(channelOf(new byte[10]), Codecs.INT));
+    }
+
+    @Test
+    void testCorruptFrameLengthIsRejected() throws IOException {
+        // Given
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryFormat.writeList(List.of(1, 2, 3), Codecs.INT, Channels.newChannel(out));
+        byte[] bytes = out.toByteArray();
+        // The length of the first frame follows the 10 bytes of the header
+        byte[] huge = bytes.clone();
+        ByteBuffer.wrap(huge).putInt(10, Integer.MAX_VALUE);
+        byte[] tooLong = bytes.clone();
+        ByteBuffer.wrap(tooLong).putInt(10, 32 * 1024 * 1024);
+        // Then
+        IOException exception = assertThrows(IOException.class, () -> BinaryFormat.readList(channelOf(huge), Codecs.INT));
+        assertTrue(exception.getMessage().contains("frame length"));
+        assertThrows(EOFException.class, () -> BinaryFormat.readList(channelOf(tooLong), Codecs.INT));
+    }
+
+    @Test
+    void testCorruptLengthPrefixIsRejected() throws IOException {
+        // Given
+        ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+        BinaryFormat.writeList(List.of(new byte[8]), Codecs.BYTES, Channels.newChannel(bytesOut));
+        ByteArrayOutputStream stringOut = new ByteArrayOutputStream();
+        BinaryFormat.writeList(List.of("abcdefgh"), Codecs.STRING, Channels.newChannel(stringOut));
+        // The varint length of the element follows the header and the frame length, a varint of 5 bytes replaces it
+        byte[] negativeBytes = bytesOut.toByteArray();
+        ByteBuffer.wrap(negativeBytes).position(14).put(new byte[]{-1, -1, -1, -1, 0x0f});
+        byte[] negativeString = stringOut.toByteArray();
+        ByteBuffer.wrap(negativeString).position(14).put(new byte[]{-1, -1, -1, -1, 0x0f});
+        byte[] hugeBytes = bytesOut.toByteArray();
+        ByteBuffer.wrap(hugeBytes).position(14).put(new byte[]{-128, -128, -128, -128, 0x04});
+        // Then
+        assertThrows(IOException.class, () -> BinaryFormat.readList(channelOf(negativeBytes), Codecs.BYTES));
+        assertThrows(IOException.class, () -> BinaryFormat.readList(channelOf(negativeString), Codecs.STRING));
+        assertThrows(IOException.class, () -> BinaryFormat.readList(channelOf(hugeBytes), Codecs.BYTES));
+    }
+
+    @Test
+    void testDuplicateKeysAreRejected() throws IOException {
+        // Given
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Map<String, Integer> sameKeyTwice = new AbstractMap<>() {
+            @Override
+            public Set<Entry<String, Integer>> entrySet() {
+                return new LinkedHashSet<>(List.of(Map.entry("a", 1), Map.entry("a", 2)));
+            }
+        };
+        // When
+        BinaryFormat.writeMap(sameKeyTwice, Codecs.STRING, Codecs.INT, Channels.newChannel(out));
+        // Then
+        assertThrows(IOException.class,
+                () -> BinaryFormat.readMap(channelOf(out.toByteArray()), Codecs.STRING, Codecs.INT));
+    }
+
+    @Test
+    void testVarIntCodecs(){
+        // Given
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        int[] ints = {0, -1, 1, 63, -64, 64, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        long[] longs = {0, -1, 1, Long.MAX_VALUE, Long.MIN_VALUE, 1L << 40};
+        for (int value : ints) {
+            // When
+            buffer.clear();
+            Codecs.VAR_INT.encode(value, buffer);
+            // Then
+            assertEquals(Codecs.VAR_INT.encodedSize(value), buffer.position());
+            buffer.flip();
+            assertEquals(value, Codecs.VAR_INT.decode(buffer));
+        }
+        for (long value : longs) {
+            // When
+            buffer.clear();
+            Codecs.VAR_LONG.encode(value, buffer);
+            // Then
+            assertEquals(Codecs.VAR_LONG.encodedSize(value), buffer.position());
+            buffer.flip();
+            assertEquals(value, Codecs.VAR_LONG.decode(buffer));
+        }
+        assertEquals(1, Codecs.VAR_INT.encodedSize(-64));
+        assertEquals(1, Codecs.UNSIGNED_VAR_INT.encodedSize(127));
+        assertEquals(10, Codecs.VAR_LONG.encodedSize(Long.MIN_VALUE));
+    }
+
+    private static ReadableByteChannel channelOf(byte[] bytes) {
+        return Channels.newChannel(new ByteArrayInputStream(bytes));
+    }
+}
@@ -0,0 +1,120 @@
+package at.schrer.utils.structures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockingSomeDequeTest {
+
+    @Test
+    void testNonBlockingOperations(){
+        // Given
+        BlockingSomeDeque<Integer> deque = new BlockingSomeDeque<>();
+        // When
+        deque.put(2);
+        deque.putFirst(1);
+        deque.offer(3);
+        // Then
+        assertEquals(3, deque.size());
+        assertEquals(Integer.MAX_VALUE, deque.remainingCapacity());
+        assertEquals(List.of(1, 2, 3), new ArrayList<>(deque));
+        assertEquals(1, deque.peek());
+        assertEquals(3, deque.peekLast());
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(2, deque.drainTo(drained, 2));
+        assertEquals(List.of(1, 2), drained);
+        assertEquals(3, deque.poll());
+        assertNull(deque.poll());
+        assertThrows(IllegalArgumentException.class, () -> deque.drainTo(deque));
+    }
+
+    @Test
+    void testPollTimesOut() throws Exception {
+        // Given
+        BlockingSomeDeque<Integer> deque = new BlockingSomeDeque<>();
+        // When
+        long start = System.nanoTime();
+        Integer value = deque.poll(50, TimeUnit.MILLISECONDS);
+        long waited = System.nanoTime() - start;
+        // Then
+        assertNull(value);
+        assertTrue(waited >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertNull(deque.pollLast(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void testTakeWaitsForProducer() throws Exception {
+        // Given
+        BlockingSomeDeque<String> deque = new BlockingSomeDeque<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        // When
+        Future<String> taken = executor.submit(deque::takeLast);
+        Thread.sleep(50);
+        assertFalse(taken.isDone());
+        deque.addFirst("work");
+        // Then
+        assertEquals("work", taken.get(10, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    @Test
+    void testTakeIsInterruptible() throws Exception {
+        // Given
+        BlockingSomeDeque<String> deque = new BlockingSomeDeque<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        // When
+        Future<String> taken = executor.submit(deque::take);
+        Thread.sleep(50);
+        executor.shutdownNow();
+        // Then
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> taken.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(InterruptedException.class, exception.getCause());
+    }
+
+    @Test
+    void testManyProducersAndBlockingConsumers() throws Exception {
+        // Given
+        BlockingSomeDeque<Integer> deque = new BlockingSomeDeque<>();
+        int producers = 4;
+        int consumers = 4;
+        int perProducer = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(producers + consumers);
+        List<Future<Long>> consumed = new ArrayList<>();
+        // When
+        for (int c = 0; c < consumers; c++) {
+            consumed.add(executor.submit(() -> {
+                long sum = 0;
+                for (int value = deque.take(); value >= 0; value = deque.take()) {
+                    sum += value;
+                }
+                return sum;
+            }));
+        }
+        List<Future<?>> produced = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            produced.add(executor.submit(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    deque.put(i);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : produced) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        for (int c = 0; c < consumers; c++) {
+            deque.put(-1);
+        }
+        long sum = 0;
+        for (Future<Long> future : consumed) {
+            sum += future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        // Then
+        assertEquals((long) producers * perProducer * (perProducer - 1) / 2, sum);
+        assertTrue(deque.isEmpty());
+    }
+}
@@ -0,0 +1,142 @@
+package at.schrer.utils.structures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkedSomeListTest {
+
+    @Test
+    void testBasicAddSizeGet(){
+        // Given
+        ChunkedSomeList<String> list = new ChunkedSomeList<>();
+        // When
+        list.add("bla");
+        // Then
+        assertEquals(1, list.size());
+        assertEquals("bla", list.get(0));
+    }
+
+    @Test
+    void testElementsSpreadOverChunks(){
+        // Given
+        ChunkedSomeList<Integer> list = new ChunkedSomeList<>(4);
+        // When
+        for (int i = 0; i < 10; i++) {
+            list.add(i);
+        }
+        // Then
+        assertEquals(10, list.size());
+        assertEquals(3, list.getChunkCount());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, list.get(i));
+        }
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), list);
+    }
+
+    @Test
+    void testAddAndRemoveAtIndex(){
+        // Given
+        ChunkedSomeList<Integer> list = new ChunkedSomeList<>(4);
+        List<Integer> expected = new ArrayList<>();
+        Random random = new Random(7);
+        // When
+        for (int i = 0; i < 2_000; i++) {
+            if (expected.isEmpty() || random.nextInt(3) > 0) {
+                int index = random.nextInt(expected.size() + 1);
+                list.add(index, i);
+                expected.add(index, i);
+            } else {
+                int index = random.nextInt(expected.size());
+                assertEquals(expected.remove(index), list.remove(index));
+            }
+        }
+        // Then
+        assertEquals(expected, list);
+        assertEquals(expected.get(expected.size() / 2), list.get(expected.size() / 2));
+    }
+
+    @Test
+    void testIteratorAddRemoveSet(){
+        // Given
+        ChunkedSomeList<Integer> list = new ChunkedSomeList<>(4);
+        for (int i = 0; i < 20; i++) {
+            list.add(i);
+        }
+        // When
+        ListIterator<Integer> iterator = list.listIterator();
+        while (iterator.hasNext()) {
+            int value = iterator.next();
+            if (value % 3 == 0) {
+                iterator.remove();
+            } else if (value % 3 == 1) {
+                iterator.set(value * 10);
+                iterator.add(-value);
+            }
+        }
+        // Then
+        assertEquals(List.of(10, -1, 2, 40, -4, 5, 70, -7, 8, 100, -10, 11, 130, -13, 14, 160, -16, 17, 190, -19), list);
+    }
+
+    @Test
+    void testIteratorBackwards(){
+        // Given
+        ChunkedSomeList<Integer> list = new ChunkedSomeList<>(4);
+        for (int i = 0; i < 10; i++) {
+            list.add(i);
+        }
+        // When
+        ListIterator<Integer> iterator = list.listIterator(list.size());
+        List<Integer> reversed = new ArrayList<>();
+        while (iterator.hasPrevious()) {
+            int value = iterator.previous();
+            reversed.add(value);
+            if (value % 2 == 0) {
+                iterator.remove();
+            }
+        }
+        // Then
+        assertEquals(List.of(9, 8, 7, 6, 5, 4, 3, 2, 1, 0), reversed);
+        assertEquals(List.of(1, 3, 5, 7, 9), list);
+        assertEquals(5, iterator.nextIndex() + list.size());
+    }
+
+    @Test
+    void testRemovingMergesChunks(){
+        // Given
+        ChunkedSomeList<Integer> list = new ChunkedSomeList<>(8);
+        for (int i = 0; i < 80; i++) {
+            list.add(i);
+        }
+        // When
+        list.removeIf(value -> value % 4 != 0);
+        // Then
+        assertEquals(20, list.size());
+        assertTrue(list.getChunkCount() <= 5);
+        assertEquals(76, list.get(19));
+    }
+
+    @Test
+    void testIteratorFailFast(){
+        // Given
+        ChunkedSomeList<String> list = new ChunkedSomeList<>(List.of("a", "b", "c"));
+        Iterator<String> iterator = list.iterator();
+        iterator.next();
+        // When
+        list.add("d");
+        // Then
+        assertThrows(ConcurrentModificationException.class, iterator::next);
+    }
+
+    @Test
+    void testIndexOutOfBounds(){
+        // Given
+        ChunkedSomeList<String> list = new ChunkedSomeList<>(List.of("a"));
+        // Then
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.add(2, "c"));
+        assertThrows(IllegalArgumentException.class, () -> new ChunkedSomeList<>(2));
+    }
+}
@@ -0,0 +1,224 @@
+package at.schrer.utils.structures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentSomeDequeTest {
+
+    @Test
+    void testBothEnds(){
+        // Given
+        ConcurrentSomeDeque<Integer> deque = new ConcurrentSomeDeque<>();
+        // When
+        deque.addLast(2);
+        deque.addFirst(1);
+        deque.addLast(3);
+        deque.push(0);
+        // Then
+        assertEquals(4, deque.size());
+        assertEquals(0, deque.peekFirst());
+        assertEquals(3, deque.peekLast());
+        assertEquals(List.of(0, 1, 2, 3), new ArrayList<>(deque));
+        assertEquals(0, deque.pollFirst());
+        assertEquals(3, deque.pollLast());
+        assertEquals(1, deque.pop());
+        assertEquals(2, deque.removeLast());
+        assertTrue(deque.isEmpty());
+        assertNull(deque.pollFirst());
+        assertNull(deque.pollLast());
+        assertNull(deque.peekFirst());
+        assertThrows(NoSuchElementException.class, deque::removeFirst);
+        assertThrows(NoSuchElementException.class, deque::getLast);
+    }
+
+    @Test
+    void testMatchesArrayDeque(){
+        // Given
+        ConcurrentSomeDeque<Integer> deque = new ConcurrentSomeDeque<>();
+        ArrayDeque<Integer> expected = new ArrayDeque<>();
+        Random random = new Random(17);
+        // When
+        for (int i = 0; i < 10_000; i++) {
+            switch (random.nextInt(4)) {
+                case 0 -> {
+                    deque.addFirst(i);
+                    expected.addFirst(i);
+                }
+                case 1 -> {
+                    deque.addLast(i);
+                    expected.addLast(i);
+                }
+                case 2 -> assertEquals(expected.pollFirst(), deque.pollFirst());
+                default -> assertEquals(expected.pollLast(), deque.pollLast());
+            }
+        }
+        // Then
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(deque));
+        List<Integer> descending = new ArrayList<>();
+        deque.descendingIterator().forEachRemaining(descending::add);
+        List<Integer> expectedDescending = new ArrayList<>();
+        expected.descendingIterator().forEachRemaining(expectedDescending::add);
+        assertEquals(expectedDescending, descending);
+    }
+
+    @Test
+    void testRemoveFromMiddle(){
+        // Given
+        ConcurrentSomeDeque<String> deque = new ConcurrentSomeDeque<>(List.of("a", "b", "c", "b", "d"));
+        // When
+        boolean removedFirst = deque.removeFirstOccurrence("b");
+        boolean removedLast = deque.removeLastOccurrence("d");
+        boolean removedMissing = deque.remove("x");
+        // Then
+        assertTrue(removedFirst);
+        assertTrue(removedLast);
+        assertFalse(removedMissing);
+        assertEquals(List.of("a", "c", "b"), new ArrayList<>(deque));
+        assertTrue(deque.contains("b"));
+        assertFalse(deque.contains("d"));
+        assertEquals("b", deque.pollLast());
+        assertEquals("c", deque.pollLast());
+        assertEquals("a", deque.pollLast());
+        assertNull(deque.pollLast());
+    }
+
+    @Test
+    void testIteratorRemoveAndClear(){
+        // Given
+        ConcurrentSomeDeque<Integer> deque = new ConcurrentSomeDeque<>();
+        for (int i = 0; i < 10; i++) {
+            deque.add(i);
+        }
+        // When
+        deque.removeIf(i -> i % 2 == 0);
+        // Then
+        assertEquals(List.of(1, 3, 5, 7, 9), new ArrayList<>(deque));
+        assertEquals(1, deque.getFirst());
+        assertThrows(IllegalStateException.class, () -> deque.iterator().remove());
+        deque.clear();
+        assertTrue(deque.isEmpty());
+        assertEquals(0, deque.size());
+    }
+
+    @Test
+    void testIteratorIsWeaklyConsistent(){
+        // Given
+        ConcurrentSomeDeque<Integer> deque = new ConcurrentSomeDeque<>(List.of(1, 2, 3));
+        Iterator<Integer> iterator = deque.iterator();
+        // When
+        assertEquals(1, iterator.next());
+        deque.pollFirst();
+        deque.addLast(4);
+        List<Integer> rest = new ArrayList<>();
+        iterator.forEachRemaining(rest::add);
+        // Then
+        assertEquals(List.of(2, 3), rest);
+        assertEquals(List.of(2, 3, 4), new ArrayList<>(deque));
+    }
+
+    @Test
+    void testNullsRejected(){
+        // Given
+        ConcurrentSomeDeque<String> deque = new ConcurrentSomeDeque<>();
+        // Then
+        assertThrows(NullPointerException.class, () -> deque.addFirst(null));
+        assertThrows(NullPointerException.class, () -> deque.offerLast(null));
+        assertFalse(deque.contains(null));
+    }
+
+    @Test
+    void testConcurrentProducersAndConsumers() throws Exception {
+        // Given
+        ConcurrentSomeDeque<Integer> deque = new ConcurrentSomeDeque<>();
+        int producers = 4;
+        int consumers = 4;
+        int perProducer = 50_000;
+        ExecutorService executor = Executors.newFixedThreadPool(producers + consumers);
+        CountDownLatch start = new CountDownLatch(1);
+        ConcurrentSomeMap<Integer, Boolean> seen = new ConcurrentSomeMap<>();
+        List<Future<Integer>> consumed = new ArrayList<>();
+        List<Future<?>> produced = new ArrayList<>();
+        // When
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            produced.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < perProducer; i++) {
+                    int value = producer * perProducer + i;
+                    if (i % 2 == 0) {
+                        deque.addFirst(value);
+                    } else {
+                        deque.addLast(value);
+                    }
+                }
+                return null;
+            }));
+        }
+        int total = producers * perProducer;
+        for (int c = 0; c < consumers; c++) {
+            int consumer = c;
+            consumed.add(executor.submit(() -> {
+                start.await();
+                int count = 0;
+                while (seen.size() < total) {
+                    Integer value = consumer % 2 == 0 ? deque.pollFirst() : deque.pollLast();
+                    if (value != null) {
+                        assertNull(seen.put(value, true));
+                        count++;
+                    }
+                }
+                return count;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : produced) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        int count = 0;
+        for (Future<Integer> future : consumed) {
+            count += future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        // Then
+        assertEquals(total, count);
+        assertEquals(total, seen.size());
+        assertTrue(deque.isEmpty());
+    }
+
+    @Test
+    void testConcurrentRemoveClaimsOnce() throws Exception {
+        // Given
+        ConcurrentSomeDeque<Integer> deque = new ConcurrentSomeDeque<>();
+        for (int i = 0; i < 10_000; i++) {
+            deque.add(i);
+        }
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> futures = new ArrayList<>();
+        // When
+        for (int t = 0; t < threads; t++) {
+            boolean polling = t % 2 == 0;
+            futures.add(executor.submit(() -> {
+                int removed = 0;
+                for (int i = 0; i < 10_000; i++) {
+                    if (polling ? deque.pollLast() != null : deque.remove(i)) {
+                        removed++;
+                    }
+                }
+                return removed;
+            }));
+        }
+        int removed = 0;
+        for (Future<Integer> future : futures) {
+            removed += future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        // Then
+        assertEquals(10_000, removed);
+        assertTrue(deque.isEmpty());
+    }
+}
@@ -0,0 +1,169 @@
+package at.schrer.utils.structures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentSomeMapTest {
+
+    @Test
+    void testBasicPutSizeGet(){
+        // Given
+        ConcurrentSomeMap<String, Integer> map = new ConcurrentSomeMap<>();
+        // When
+        map.put("bla", 1);
+        // Then
+        assertEquals(1, map.size());
+        assertEquals(1, map.get("bla"));
+        assertTrue(map.containsKey("bla"));
+        assertTrue(map.containsValue(1));
+        assertNull(map.get("blub"));
+    }
+
+    @Test
+    void testStripeCount(){
+        // Given
+        ConcurrentSomeMap<String, Integer> single = new ConcurrentSomeMap<>(10, 1);
+        ConcurrentSomeMap<String, Integer> five = new ConcurrentSomeMap<>(10, 5);
+        // When
+        for (int i = 0; i < 100; i++) {
+            single.put("key" + i, i);
+            five.put("key" + i, i);
+        }
+        // Then
+        assertEquals(1, single.getStripeCount());
+        assertEquals(8, five.getStripeCount());
+        assertEquals(100, single.size());
+        assertEquals(100, five.size());
+        assertEquals(single, five);
+    }
+
+    @Test
+    void testNullsRejected(){
+        // Given
+        ConcurrentSomeMap<String, Integer> map = new ConcurrentSomeMap<>();
+        // Then
+        assertThrows(NullPointerException.class, () -> map.put(null, 1));
+        assertThrows(NullPointerException.class, () -> map.put("one", null));
+        assertThrows(NullPointerException.class, () -> map.get(null));
+    }
+
+    @Test
+    void testConditionalOperations(){
+        // Given
+        ConcurrentSomeMap<String, Integer> map = new ConcurrentSomeMap<>();
+        // Then
+        assertNull(map.putIfAbsent("one", 1));
+        assertEquals(1, map.putIfAbsent("one", 2));
+        assertFalse(map.replace("one", 2, 3));
+        assertTrue(map.replace("one", 1, 3));
+        assertNull(map.replace("two", 2));
+        assertFalse(map.remove("one", 1));
+        assertTrue(map.remove("one", 3));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void testComputeAndMerge(){
+        // Given
+        ConcurrentSomeMap<String, Integer> map = new ConcurrentSomeMap<>();
+        // When
+        map.computeIfAbsent("one", key -> 1);
+        map.computeIfAbsent("one", key -> 100);
+        map.merge("two", 2, Integer::sum);
+        map.merge("two", 2, Integer::sum);
+        map.compute("three", (key, value) -> value == null ? 3 : value + 1);
+        map.computeIfPresent("one", (key, value) -> null);
+        // Then
+        assertNull(map.get("one"));
+        assertEquals(4, map.get("two"));
+        assertEquals(3, map.get("three"));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    void testViews(){
+        // Given
+        ConcurrentSomeMap<Integer, String> map = new ConcurrentSomeMap<>(10, 4);
+        for (int i = 0; i < 50; i++) {
+            map.put(i, "v" + i);
+        }
+        // When
+        map.keySet().removeIf(key -> key % 2 == 0);
+        for (Map.Entry<Integer, String> entry : map.entrySet()) {
+            entry.setValue(entry.getValue() + "!");
+        }
+        // Then
+        assertEquals(25, map.size());
+        assertEquals(25, map.values().size());
+        assertEquals("v1!", map.get(1));
+        assertFalse(map.containsKey(2));
+        assertTrue(map.values().contains("v49!"));
+    }
+
+    @Test
+    void testConcurrentMerge() throws Exception {
+        // Given
+        ConcurrentSomeMap<Integer, Integer> map = new ConcurrentSomeMap<>();
+        int threads = 8;
+        int incrementsPerThread = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        // When
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < incrementsPerThread; i++) {
+                    map.merge(i % 500, 1, Integer::sum);
+                    map.get((i * 7) % 500);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        // Then
+        assertEquals(500, map.size());
+        int total = 0;
+        for (int value : map.values()) {
+            total += value;
+        }
+        assertEquals(threads * incrementsPerThread, total);
+    }
+
+    @Test
+    void testConcurrentComputeIfAbsentCallsOnce() throws Exception {
+        // Given
+        ConcurrentSomeMap<Integer, Integer> map = new ConcurrentSomeMap<>();
+        AtomicInteger calls = new AtomicInteger();
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        // When
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    map.computeIfAbsent(i, key -> {
+                        calls.incrementAndGet();
+                        return key;
+                    });
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        // Then
+        assertEquals(1_000, map.size());
+        assertEquals(1_000, calls.get());
+    }
+}
@@ -0,0 +1,45 @@
+package at.schrer.utils.structures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DoubleListTest {
+
+    @Test
+    void testBothLayouts(){
+        for (DoubleList list : List.of(new ArrayDoubleList(), new ChunkedDoubleList(4))) {
+            // When
+            for (int i = 0; i < 20; i++) {
+                list.addDouble(i / 2.0);
+            }
+            list.addDouble(Double.NaN);
+            list.addDouble(-0.0);
+            // Then
+            assertEquals(22, list.size());
+            assertEquals(4.5, list.getDouble(9));
+            assertEquals(95.0, list.doubleStream().limit(20).sum());
+            assertEquals(20, list.indexOfDouble(Double.NaN));
+            assertEquals(0, list.indexOfDouble(0.0));
+            assertEquals(21, list.indexOfDouble(-0.0));
+            assertTrue(list.contains(Double.NaN));
+            assertEquals(9.5, list.doubleStream().filter(value -> !Double.isNaN(value)).max().orElseThrow());
+        }
+    }
+
+    @Test
+    void testEqualsBoxedList(){
+        // Given
+        ChunkedDoubleList list = new ChunkedDoubleList();
+        list.addAll(new double[] {1.5, 2.5});
+        // When
+        list.removeDouble(0);
+        list.addDouble(3.5);
+        // Then
+        assertEquals(List.of(2.5, 3.5), list);
+        assertEquals(List.of(2.5, 3.5).hashCode(), list.hashCode());
+        assertArrayEquals(new double[] {2.5, 3.5}, list.toDoubleArray());
+    }
+}
@@ -0,0 +1,76 @@
+package at.schrer.utils.structures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntIntMapTest {
+
+    @Test
+    void testBasicPutSizeGet(){
+        // Given
+        IntIntMap map = new IntIntMap();
+        // When
+        int old = map.put(42, 7);
+        // Then
+        assertEquals(0, old);
+        assertEquals(1, map.size());
+        assertEquals(7, map.get(42));
+        assertEquals(0, map.get(43));
+        assertEquals(-1, map.getOrDefault(43, -1));
+    }
+
+    @Test
+    void testZeroKey(){
+        // Given
+        IntIntMap map = new IntIntMap();
+        // When
+        map.put(0, 5);
+        // Then
+        assertTrue(map.containsKey(0));
+        assertEquals(5, map.get(0));
+        assertEquals(5, map.remove(0));
+        assertFalse(map.containsKey(0));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void testAddTo(){
+        // Given
+        IntIntMap map = new IntIntMap(1);
+        // When
+        for (int i = 0; i < 1_000; i++) {
+            map.addTo(i % 10, 1);
+        }
+        // Then
+        assertEquals(10, map.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(100, map.get(i));
+        }
+    }
+
+    @Test
+    void testAgainstHashMap(){
+        // Given
+        IntIntMap map = new IntIntMap();
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(4321);
+        // When
+        for (int i = 0; i < 50_000; i++) {
+            int key = random.nextInt(2_000) - 1_000;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.containsKey(key), map.containsKey(key));
+                assertEquals(Objects.requireNonNullElse(expected.remove(key), 0), map.remove(key));
+            } else {
+                assertEquals(Objects.requireNonNullElse(expected.put(key, i), 0), map.put(key, i));
+            }
+        }
+        // Then
+        assertEquals(expected.size(), map.size());
+        Map<Integer, Integer> visited = new HashMap<>();
+        map.forEach(visited::put);
+        assertEquals(expected, visited);
+    }
+}
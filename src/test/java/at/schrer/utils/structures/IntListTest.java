@@ -0,0 +1,48 @@
+package at.schrer.utils.structures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntListTest {
+
+    @Test
+    void testBothLayouts(){
+        for (IntList list : List.of(new ArrayIntList(), new ChunkedIntList(4))) {
+            // When
+            list.addAll(IntStream.range(0, 50).toArray());
+            list.removeInt(0);
+            list.addInt(0, -5);
+            list.setInt(49, 500);
+            // Then
+            assertEquals(50, list.size());
+            assertEquals(-5, list.getInt(0));
+            assertEquals(500, list.getInt(49));
+            assertEquals(-5 + 1176 + 500, list.intStream().sum());
+            assertEquals(10, list.indexOf(10));
+            assertFalse(list.contains(10L));
+            int sum = 0;
+            for (PrimitiveIterator.OfInt iterator = list.intIterator(); iterator.hasNext(); ) {
+                sum += iterator.nextInt();
+            }
+            assertEquals(-5 + 1176 + 500, sum);
+        }
+    }
+
+    @Test
+    void testEqualsBoxedList(){
+        // Given
+        ArrayIntList array = new ArrayIntList(new int[] {3, 1, 2});
+        ChunkedIntList chunked = new ChunkedIntList();
+        chunked.addAll(List.of(3, 1, 2));
+        // Then
+        assertEquals(List.of(3, 1, 2), array);
+        assertEquals(array, chunked);
+        assertEquals(List.of(3, 1, 2).hashCode(), chunked.hashCode());
+        array.sort(null);
+        assertArrayEquals(new int[] {1, 2, 3}, array.toIntArray());
+    }
+}
@@ -0,0 +1,149 @@
+package at.schrer.utils.structures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongListTest {
+
+    @Test
+    void testAppendAndRead(){
+        for (LongList list : List.of(new ArrayLongList(), new ChunkedLongList(4))) {
+            // When
+            for (long i = 0; i < 100; i++) {
+                list.addLong(i * 3);
+            }
+            // Then
+            assertEquals(100, list.size());
+            assertEquals(0L, list.getLong(0));
+            assertEquals(297L, list.getLong(99));
+            assertEquals(150L, list.getLong(50));
+            assertEquals(33, list.indexOfLong(99L));
+            assertEquals(-1, list.indexOfLong(100L));
+            assertTrue(list.contains(99L));
+            assertFalse(list.contains(99));
+            assertEquals(14850L, list.longStream().sum());
+            assertEquals(Long.valueOf(9L), list.get(3));
+        }
+    }
+
+    @Test
+    void testMatchesArrayList(){
+        for (LongList list : List.of(new ArrayLongList(0), new ChunkedLongList(8))) {
+            // Given
+            List<Long> expected = new ArrayList<>();
+            Random random = new Random(19);
+            // When
+            for (int i = 0; i < 5_000; i++) {
+                long value = random.nextLong();
+                int index = random.nextInt(expected.size() + 1);
+                switch (random.nextInt(4)) {
+                    case 0 -> {
+                        list.addLong(value);
+                        expected.add(value);
+                    }
+                    case 1 -> {
+                        list.addLong(index, value);
+                        expected.add(index, value);
+                    }
+                    case 2 -> {
+                        if (index < expected.size()) {
+                            assertEquals(expected.remove(index), list.removeLong(index));
+                        }
+                    }
+                    default -> {
+                        if (index < expected.size()) {
+                            assertEquals(expected.set(index, value), list.setLong(index, value));
+                        }
+                    }
+                }
+            }
+            // Then
+            assertEquals(expected, list);
+            assertEquals(expected.hashCode(), list.hashCode());
+            long[] array = list.toLongArray();
+            for (int i = 0; i < array.length; i++) {
+                assertEquals(expected.get(i), array[i]);
+                assertEquals(expected.get(i), list.getLong(i));
+            }
+            assertEquals(expected.stream().mapToLong(Long::longValue).sum(), list.longStream().sum());
+        }
+    }
+
+    @Test
+    void testBulkAddAndClear(){
+        for (LongList list : List.of(new ArrayLongList(), new ChunkedLongList(4))) {
+            // Given
+            long[] values = new long[11];
+            Arrays.setAll(values, i -> i);
+            // When
+            list.addLong(-1);
+            list.addAll(values);
+            // Then
+            assertEquals(12, list.size());
+            assertEquals(10L, list.getLong(11));
+            assertArrayEquals(new long[] {-1, 0, 1, 2}, Arrays.copyOf(list.toLongArray(), 4));
+            // When
+            list.subList(1, 11).clear();
+            // Then
+            assertEquals(List.of(-1L, 10L), list);
+            list.clear();
+            assertTrue(list.isEmpty());
+            assertFalse(list.longIterator().hasNext());
+        }
+    }
+
+    @Test
+    void testIteratorsAreFailFast(){
+        for (LongList list : List.of(new ArrayLongList(), new ChunkedLongList())) {
+            // Given
+            list.addAll(new long[] {1, 2, 3});
+            PrimitiveIterator.OfLong iterator = list.longIterator();
+            // When
+            assertEquals(1L, iterator.nextLong());
+            list.addLong(4);
+            // Then
+            assertThrows(ConcurrentModificationException.class, iterator::nextLong);
+            assertThrows(IndexOutOfBoundsException.class, () -> list.getLong(4));
+            assertThrows(NullPointerException.class, () -> list.add(null));
+        }
+    }
+
+    @Test
+    void testChunksAreSplitAndMerged(){
+        // Given
+        ChunkedLongList list = new ChunkedLongList(4);
+        for (long i = 0; i < 16; i++) {
+            list.addLong(i);
+        }
+        // When
+        list.addLong(2, 100);
+        // Then
+        assertEquals(5, list.getChunkCount());
+        assertEquals(100L, list.getLong(2));
+        assertEquals(15L, list.getLong(16));
+        // When
+        for (int i = 0; i < 14; i++) {
+            list.removeLong(0);
+        }
+        // Then
+        assertEquals(List.of(13L, 14L, 15L), list);
+        assertEquals(1, list.getChunkCount());
+        assertThrows(IllegalArgumentException.class, () -> new ChunkedLongList(3));
+    }
+
+    @Test
+    void testArrayCapacity(){
+        // Given
+        ArrayLongList list = new ArrayLongList(new long[] {5, 6});
+        // When
+        list.ensureCapacity(100);
+        list.addLong(7);
+        list.trimToSize();
+        // Then
+        assertEquals(List.of(5L, 6L, 7L), list);
+        assertThrows(IllegalArgumentException.class, () -> new ArrayLongList(-1));
+    }
+}
@@ -0,0 +1,61 @@
+package at.schrer.utils.structures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongLongMapTest {
+
+    @Test
+    void testBasicPutSizeGet(){
+        // Given
+        LongLongMap map = new LongLongMap();
+        // When
+        long old = map.put(1L << 40, 7L);
+        // Then
+        assertEquals(0L, old);
+        assertEquals(1, map.size());
+        assertEquals(7L, map.get(1L << 40));
+        assertEquals(0L, map.get(1L << 41));
+        assertEquals(-1L, map.getOrDefault(1L << 41, -1L));
+    }
+
+    @Test
+    void testZeroKey(){
+        // Given
+        LongLongMap map = new LongLongMap();
+        // When
+        map.addTo(0L, 5L);
+        map.addTo(0L, 5L);
+        // Then
+        assertTrue(map.containsKey(0L));
+        assertEquals(10L, map.get(0L));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void testAgainstHashMap(){
+        // Given
+        LongLongMap map = new LongLongMap();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(2468);
+        // When
+        for (int i = 0; i < 50_000; i++) {
+            long key = random.nextInt(2_000) * 0x1_0000_0000L;
+            if (random.nextInt(3) == 0) {
+                assertEquals(Objects.requireNonNullElse(expected.remove(key), 0L), map.remove(key));
+            } else {
+                assertEquals(Objects.requireNonNullElse(expected.put(key, (long) i), 0L), map.put(key, i));
+            }
+        }
+        // Then
+        assertEquals(expected.size(), map.size());
+        long[] keys = map.keys();
+        assertEquals(expected.size(), keys.length);
+        for (long key : keys) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+}
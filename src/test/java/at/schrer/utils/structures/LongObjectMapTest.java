@@ -0,0 +1,110 @@
+package at.schrer.utils.structures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongObjectMapTest {
+
+    @Test
+    void testBasicPutSizeGet(){
+        // Given
+        LongObjectMap<String> map = new LongObjectMap<>();
+        // When
+        String old = map.put(42L, "bla");
+        // Then
+        assertNull(old);
+        assertEquals(1, map.size());
+        assertEquals("bla", map.get(42L));
+        assertNull(map.get(43L));
+        assertEquals("default", map.getOrDefault(43L, "default"));
+    }
+
+    @Test
+    void testZeroKey(){
+        // Given
+        LongObjectMap<String> map = new LongObjectMap<>();
+        // When
+        map.put(0L, "zero");
+        map.put(1L, "one");
+        // Then
+        assertTrue(map.containsKey(0L));
+        assertEquals("zero", map.get(0L));
+        assertEquals(2, map.size());
+
+        // When
+        String removed = map.remove(0L);
+        // Then
+        assertEquals("zero", removed);
+        assertFalse(map.containsKey(0L));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void testNullValue(){
+        // Given
+        LongObjectMap<String> map = new LongObjectMap<>();
+        // When
+        map.put(7L, null);
+        // Then
+        assertTrue(map.containsKey(7L));
+        assertNull(map.get(7L));
+        assertEquals("default", map.getOrDefault(8L, "default"));
+    }
+
+    @Test
+    void testGrowing(){
+        // Given
+        LongObjectMap<String> map = new LongObjectMap<>(1);
+        assertEquals(2, map.getTableSize());
+        // When
+        for (long i = 1; i <= 100; i++) {
+            map.put(i, "v" + i);
+        }
+        // Then
+        assertEquals(100, map.size());
+        assertEquals(256, map.getTableSize());
+        assertEquals("v77", map.get(77L));
+    }
+
+    @Test
+    void testForEachAndKeys(){
+        // Given
+        LongObjectMap<String> map = new LongObjectMap<>();
+        map.put(0L, "zero");
+        map.put(Long.MIN_VALUE, "min");
+        map.put(Long.MAX_VALUE, "max");
+        // When
+        Map<Long, String> visited = new HashMap<>();
+        map.forEach(visited::put);
+        long[] keys = map.keys();
+        Arrays.sort(keys);
+        // Then
+        assertEquals(Map.of(0L, "zero", Long.MIN_VALUE, "min", Long.MAX_VALUE, "max"), visited);
+        assertArrayEquals(new long[]{Long.MIN_VALUE, 0L, Long.MAX_VALUE}, keys);
+    }
+
+    @Test
+    void testAgainstHashMap(){
+        // Given
+        LongObjectMap<Long> map = new LongObjectMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(1234);
+        // When
+        for (int i = 0; i < 50_000; i++) {
+            long key = random.nextInt(2_000) * 1024L;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+            }
+        }
+        // Then
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+    }
+}
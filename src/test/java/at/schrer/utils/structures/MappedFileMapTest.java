@@ -0,0 +1,237 @@
+package at.schrer.utils.structures;
+
+import at.schrer.utils.structures.codec.Codec;
+import at.schrer.utils.structures.codec.Codecs;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedFileMapTest {
+
+    private Path file;
+
+    private record SaltedKey(String name) {
+        static int salt;
+        static final Codec<SaltedKey> CODEC = new Codec<>() {
+            @Override
+            public int encodedSize(SaltedKey value) {
+                return Codecs.STRING.encodedSize(value.name());
+            }
+
+            @Override
+            public void encode(SaltedKey value, ByteBuffer target) {
+                Codecs.STRING.encode(value.name(), target);
+            }
+
+            @Override
+            public SaltedKey decode(ByteBuffer source) {
+                return new SaltedKey(Codecs.STRING.decode(source));
+            }
+        };
+
+        @Override
+        public int hashCode() {
+            return name.hashCode() * 31 + salt;
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path directory = Files.createTempDirectory("mapped-file-map");
+        directory.toFile().deleteOnExit();
+        file = directory.resolve("map.data");
+        file.toFile().deleteOnExit();
+        directory.resolve("map.data.index").toFile().deleteOnExit();
+    }
+
+    @Test
+    void testBasicPutSizeGet() throws IOException {
+        // Given
+        try (MappedFileMap<String, Integer> map = new MappedFileMap<>(file, Codecs.STRING, Codecs.INT)) {
+            // When
+            map.put("bla", 1);
+            // Then
+            assertEquals(1, map.size());
+            assertEquals(1, map.get("bla"));
+            assertTrue(map.containsKey("bla"));
+            assertNull(map.get("blub"));
+        }
+    }
+
+    @Test
+    void testReopen() throws IOException {
+        // Given
+        try (MappedFileMap<Integer, String> map = new MappedFileMap<>(file, Codecs.INT, Codecs.STRING)) {
+            for (int i = 0; i < 1_000; i++) {
+                map.put(i, "value" + i);
+            }
+            map.put(5, "replaced");
+            map.remove(6);
+        }
+        // When
+        try (MappedFileMap<Integer, String> map = new MappedFileMap<>(file, Codecs.INT, Codecs.STRING)) {
+            // Then
+            assertEquals(999, map.size());
+            assertEquals("value0", map.get(0));
+            assertEquals("replaced", map.get(5));
+            assertNull(map.get(6));
+            assertEquals("value999", map.get(999));
+        }
+    }
+
+    @Test
+    void testByteArrayKeysSurviveReopen() throws IOException {
+        // Given
+        try (MappedFileMap<byte[], Integer> map = new MappedFileMap<>(file, Codecs.BYTES, Codecs.INT)) {
+            map.put(new byte[] {1, 2, 3}, 1);
+            map.put(new byte[] {1, 2, 3}, 2);
+            map.put(new byte[] {4}, 4);
+            assertEquals(2, map.size());
+            assertEquals(2, map.get(new byte[] {1, 2, 3}));
+        }
+        // When
+        try (MappedFileMap<byte[], Integer> map = new MappedFileMap<>(file, Codecs.BYTES, Codecs.INT)) {
+            // Then
+            assertEquals(2, map.size());
+            assertEquals(2, map.get(new byte[] {1, 2, 3}));
+            assertEquals(4, map.remove(new byte[] {4}));
+            assertFalse(map.containsKey(new byte[] {4}));
+        }
+    }
+
+    @Test
+    void testKeysWithChangingHashCodeSurviveReopen() throws IOException {
+        // Given, a hashCode that differs between runs, like the identity hash codes of enums
+        SaltedKey.salt = 1;
+        try (MappedFileMap<SaltedKey, Integer> map = new MappedFileMap<>(file, SaltedKey.CODEC, Codecs.INT)) {
+            for (int i = 0; i < 100; i++) {
+                map.put(new SaltedKey("key" + i), i);
+            }
+        }
+        // When
+        SaltedKey.salt = 2;
+        try (MappedFileMap<SaltedKey, Integer> map = new MappedFileMap<>(file, SaltedKey.CODEC, Codecs.INT)) {
+            // Then
+            assertEquals(100, map.size());
+            for (int i = 0; i < 100; i++) {
+                assertEquals(i, map.get(new SaltedKey("key" + i)));
+            }
+        }
+    }
+
+    @Test
+    void testReopenAfterCrashRebuildsIndex() throws IOException {
+        // Given
+        MappedFileMap<Integer, String> crashed = new MappedFileMap<>(file, Codecs.INT, Codecs.STRING);
+        for (int i = 0; i < 500; i++) {
+            crashed.put(i, "value" + i);
+        }
+        crashed.remove(1);
+        crashed.put(2, "two");
+        crashed.flush();
+        // When, the first map is never closed
+        try (MappedFileMap<Integer, String> map = new MappedFileMap<>(file, Codecs.INT, Codecs.STRING)) {
+            // Then
+            assertEquals(499, map.size());
+            assertNull(map.get(1));
+            assertEquals("two", map.get(2));
+            assertEquals("value499", map.get(499));
+        }
+    }
+
+    @Test
+    void testCompaction() throws IOException {
+        // Given
+        try (MappedFileMap<Integer, byte[]> map = new MappedFileMap<>(file, Codecs.INT, Codecs.BYTES)) {
+            for (int i = 0; i < 10_000; i++) {
+                map.put(i % 10, new byte[100]);
+            }
+            // When
+            map.compact();
+            // Then
+            assertEquals(10, map.size());
+            assertTrue(map.dataBytes() < 2_000);
+            assertEquals(100, map.get(3).length);
+        }
+        // Then, after reopening
+        try (MappedFileMap<Integer, byte[]> map = new MappedFileMap<>(file, Codecs.INT, Codecs.BYTES)) {
+            assertEquals(10, map.size());
+            assertEquals(100, map.get(9).length);
+        }
+    }
+
+    @Test
+    void testCrashRightAfterCompactionKeepsEntries() throws IOException {
+        // Given
+        MappedFileMap<Integer, String> crashed = new MappedFileMap<>(file, Codecs.INT, Codecs.STRING);
+        for (int i = 0; i < 1_000; i++) {
+            crashed.put(i % 100, "value" + i);
+        }
+        Path compactPath = file.resolveSibling("map.data.compact");
+        compactPath.toFile().deleteOnExit();
+        // When, the compacted file replaces the data file and the first map is never used again
+        try (FileChannel channel = FileChannel.open(compactPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            crashed.writeCompacted(channel);
+        }
+        Files.move(compactPath, file, StandardCopyOption.REPLACE_EXISTING);
+        try (MappedFileMap<Integer, String> map = new MappedFileMap<>(file, Codecs.INT, Codecs.STRING)) {
+            // Then
+            assertEquals(100, map.size());
+            assertEquals("value900", map.get(0));
+            assertEquals("value999", map.get(99));
+        }
+    }
+
+    @Test
+    void testForEachAndClear() throws IOException {
+        // Given
+        try (MappedFileMap<String, Long> map = new MappedFileMap<>(file, Codecs.STRING, Codecs.LONG)) {
+            Map<String, Long> expected = new HashMap<>();
+            for (long i = 0; i < 300; i++) {
+                map.put("key" + i, i);
+                expected.put("key" + i, i);
+            }
+            // When
+            Map<String, Long> actual = new HashMap<>();
+            map.forEach(actual::put);
+            map.clear();
+            map.put("after", 1L);
+            // Then
+            assertEquals(expected, actual);
+            assertEquals(1, map.size());
+            assertEquals(1L, map.get("after"));
+            assertNull(map.get("key1"));
+        }
+    }
+
+    @Test
+    void testUseAfterClose() throws IOException {
+        // Given
+        MappedFileMap<Integer, Integer> map = new MappedFileMap<>(file, Codecs.INT, Codecs.INT);
+        // When
+        map.close();
+        // Then
+        assertThrows(IllegalStateException.class, () -> map.get(1));
+        assertThrows(IllegalStateException.class, () -> map.put(1, 1));
+    }
+
+    @Test
+    void testForeignFileRejected() throws IOException {
+        // Given
+        Files.write(file, new byte[100]);
+        // Then
+        assertThrows(IOException.class, () -> new MappedFileMap<>(file, Codecs.INT, Codecs.INT));
+    }
+}
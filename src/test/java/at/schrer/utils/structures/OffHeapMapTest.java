@@ -0,0 +1,186 @@
+package at.schrer.utils.structures;
+
+import at.schrer.utils.structures.codec.Codecs;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapMapTest {
+
+    @Test
+    void testBasicPutSizeGet(){
+        // Given
+        try (OffHeapMap<String, Integer> map = new OffHeapMap<>(Codecs.STRING, Codecs.INT)) {
+            // When
+            map.put("bla", 1);
+            // Then
+            assertEquals(1, map.size());
+            assertEquals(1, map.get("bla"));
+            assertTrue(map.containsKey("bla"));
+            assertNull(map.get("blub"));
+        }
+    }
+
+    @Test
+    void testOverwrite(){
+        // Given
+        try (OffHeapMap<String, String> map = new OffHeapMap<>(Codecs.STRING, Codecs.STRING)) {
+            map.put("key", "abc");
+            // When
+            String sameSize = map.put("key", "xyz");
+            String otherSize = map.put("key", "longer value");
+            // Then
+            assertEquals("abc", sameSize);
+            assertEquals("xyz", otherSize);
+            assertEquals("longer value", map.get("key"));
+            assertEquals(1, map.size());
+        }
+    }
+
+    @Test
+    void testRemove(){
+        // Given
+        try (OffHeapMap<Integer, String> map = new OffHeapMap<>(Codecs.INT, Codecs.STRING)) {
+            map.put(1, "one");
+            map.put(2, "two");
+            // When
+            String removed = map.remove(1);
+            String missing = map.remove(3);
+            // Then
+            assertEquals("one", removed);
+            assertNull(missing);
+            assertFalse(map.containsKey(1));
+            assertEquals("two", map.get(2));
+            assertEquals(1, map.size());
+        }
+    }
+
+    @Test
+    void testManyKeys(){
+        // Given
+        try (OffHeapMap<Long, String> map = new OffHeapMap<>(Codecs.LONG, Codecs.STRING, 4)) {
+            Map<Long, String> expected = new HashMap<>();
+            // When
+            for (long i = 0; i < 20_000; i++) {
+                map.put(i, "value" + i);
+                expected.put(i, "value" + i);
+            }
+            for (long i = 0; i < 20_000; i += 3) {
+                map.remove(i);
+                expected.remove(i);
+            }
+            // Then
+            assertEquals(expected.size(), map.size());
+            Map<Long, String> actual = new HashMap<>();
+            map.forEach(actual::put);
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    void testCompaction(){
+        // Given
+        try (OffHeapMap<Integer, byte[]> map = new OffHeapMap<>(Codecs.INT, Codecs.BYTES)) {
+            map.put(1, new byte[10]);
+            long initialBytes = map.offHeapBytes();
+            // When
+            for (int i = 0; i < 10_000; i++) {
+                map.put(1, new byte[100 + i % 2]);
+            }
+            map.compact();
+            // Then
+            assertEquals(initialBytes, map.offHeapBytes());
+            assertEquals(101, map.get(1).length);
+        }
+    }
+
+    @Test
+    void testClear(){
+        // Given
+        try (OffHeapMap<Integer, Integer> map = new OffHeapMap<>(Codecs.INT, Codecs.INT)) {
+            for (int i = 0; i < 100; i++) {
+                map.put(i, i);
+            }
+            // When
+            map.clear();
+            map.put(5, 50);
+            // Then
+            assertEquals(1, map.size());
+            assertEquals(50, map.get(5));
+            assertNull(map.get(6));
+        }
+    }
+
+    @Test
+    void testClearKeepsInitialSize(){
+        // Given
+        try (OffHeapMap<Integer, Integer> map = new OffHeapMap<>(Codecs.INT, Codecs.INT, 10_000)) {
+            long initialBytes = map.offHeapBytes();
+            for (int i = 0; i < 100; i++) {
+                map.put(i, i);
+            }
+            // When
+            map.clear();
+            // Then
+            assertEquals(initialBytes, map.offHeapBytes());
+            assertTrue(map.isEmpty());
+        }
+    }
+
+    @Test
+    void testUseAfterClose(){
+        // Given
+        OffHeapMap<Integer, Integer> map = new OffHeapMap<>(Codecs.INT, Codecs.INT);
+        map.put(1, 1);
+        // When
+        map.close();
+        // Then
+        assertThrows(IllegalStateException.class, () -> map.get(1));
+        assertThrows(IllegalStateException.class, () -> map.put(2, 2));
+        assertThrows(IllegalStateException.class, map::size);
+    }
+
+    @Test
+    void testNullsRejected(){
+        // Given
+        try (OffHeapMap<String, String> map = new OffHeapMap<>(Codecs.STRING, Codecs.STRING)) {
+            // Then
+            assertThrows(NullPointerException.class, () -> map.put(null, "a"));
+            assertThrows(NullPointerException.class, () -> map.put("a", null));
+        }
+    }
+
+    @Test
+    void testByteArrayKeysAreHashedByContent(){
+        // Given
+        try (OffHeapMap<byte[], Integer> map = new OffHeapMap<>(Codecs.BYTES, Codecs.INT)) {
+            // When
+            map.put(new byte[] {1, 2, 3}, 1);
+            Integer old = map.put(new byte[] {1, 2, 3}, 2);
+            map.put(new byte[] {3, 2, 1}, 3);
+            // Then
+            assertEquals(1, old);
+            assertEquals(2, map.size());
+            assertEquals(2, map.get(new byte[] {1, 2, 3}));
+            assertTrue(map.containsKey(new byte[] {3, 2, 1}));
+            assertEquals(3, map.remove(new byte[] {3, 2, 1}));
+            assertEquals(1, map.size());
+        }
+    }
+
+    @Test
+    void testStringCodecWithNonAsciiCharacters(){
+        // Given
+        try (OffHeapMap<String, String> map = new OffHeapMap<>(Codecs.STRING, Codecs.STRING)) {
+            String key = "Gr\u00fc\u00dfe \ud83d\ude00 " + "x".repeat(200);
+            // When
+            map.put(key, "\u00e4");
+            // Then
+            assertEquals("\u00e4", map.get(key));
+            assertTrue(map.containsKey(key));
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package at.schrer.utils.structures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentSomeListTest {
+
+    @Test
+    void testVersionsAreIndependent(){
+        // Given
+        PersistentSomeList<String> empty = PersistentSomeList.empty();
+        // When
+        PersistentSomeList<String> one = empty.with("a");
+        PersistentSomeList<String> two = one.with("b");
+        PersistentSomeList<String> replaced = two.with(0, "c");
+        PersistentSomeList<String> popped = replaced.withoutLast();
+        // Then
+        assertEquals(List.of(), empty);
+        assertEquals(List.of("a"), one);
+        assertEquals(List.of("a", "b"), two);
+        assertEquals(List.of("c", "b"), replaced);
+        assertEquals(List.of("c"), popped);
+        assertThrows(NoSuchElementException.class, empty::withoutLast);
+        assertThrows(IndexOutOfBoundsException.class, () -> two.get(2));
+        assertThrows(UnsupportedOperationException.class, () -> two.add("x"));
+    }
+
+    @Test
+    void testGrowAndShrinkAcrossLevels(){
+        // Given
+        int count = 40_000;
+        PersistentSomeList<Integer> list = PersistentSomeList.empty();
+        // When
+        for (int i = 0; i < count; i++) {
+            list = list.with(i);
+        }
+        // Then
+        assertEquals(count, list.size());
+        for (int i = 0; i < count; i += 7) {
+            assertEquals(i, list.get(i));
+        }
+        int expected = 0;
+        for (int value : list) {
+            assertEquals(expected++, value);
+        }
+        // When
+        PersistentSomeList<Integer> shrunk = list;
+        for (int i = count; i > 1_000; i--) {
+            shrunk = shrunk.withoutLast();
+        }
+        // Then
+        assertEquals(1_000, shrunk.size());
+        assertEquals(999, shrunk.get(999));
+        assertEquals(count, list.size());
+        assertEquals(count - 1, list.get(count - 1));
+        assertEquals(shrunk, list.subList(0, 1_000));
+    }
+
+    @Test
+    void testRandomChangesMatchArrayList(){
+        // Given
+        Random random = new Random(21);
+        List<Integer> expected = new ArrayList<>();
+        PersistentSomeList<Integer> list = PersistentSomeList.empty();
+        List<PersistentSomeList<Integer>> versions = new ArrayList<>();
+        List<List<Integer>> expectedVersions = new ArrayList<>();
+        // When
+        for (int i = 0; i < 5_000; i++) {
+            int operation = random.nextInt(10);
+            if (operation < 6 || expected.isEmpty()) {
+                list = list.with(i);
+                expected.add(i);
+            } else if (operation < 8) {
+                int index = random.nextInt(expected.size());
+                list = list.with(index, -i);
+                expected.set(index, -i);
+            } else if (operation < 9) {
+                list = list.withoutLast();
+                expected.remove(expected.size() - 1);
+            } else {
+                int index = random.nextInt(expected.size());
+                list = list.without(index);
+                expected.remove(index);
+            }
+            if (i % 500 == 0) {
+                versions.add(list);
+                expectedVersions.add(new ArrayList<>(expected));
+            }
+        }
+        // Then
+        assertEquals(expected, list);
+        assertEquals(expectedVersions, versions);
+    }
+
+    @Test
+    void testFactories(){
+        // Given
+        List<Integer> source = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            source.add(i);
+        }
+        // When
+        PersistentSomeList<Integer> built = PersistentSomeList.from(source);
+        PersistentSomeList<Integer> appended = built.withAll(List.of(2_000, 2_001));
+        // Then
+        assertEquals(source, built);
+        assertEquals(2_002, appended.size());
+        assertEquals(2_001, appended.get(2_001));
+        assertSame(built, PersistentSomeList.from(built));
+        assertEquals(List.of(1, 2, 3), PersistentSomeList.of(1, 2, 3));
+        assertEquals(List.of(), PersistentSomeList.from(List.of()));
+        assertEquals(List.of(1, 3), PersistentSomeList.of(1, 2, 3).without(1));
+    }
+}
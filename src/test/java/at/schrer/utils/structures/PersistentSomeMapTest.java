@@ -0,0 +1,131 @@
+package at.schrer.utils.structures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentSomeMapTest {
+
+    @Test
+    void testVersionsAreIndependent(){
+        // Given
+        PersistentSomeMap<String, Integer> empty = PersistentSomeMap.empty();
+        // When
+        PersistentSomeMap<String, Integer> one = empty.with("one", 1);
+        PersistentSomeMap<String, Integer> two = one.with("two", 2);
+        PersistentSomeMap<String, Integer> replaced = two.with("one", 11);
+        PersistentSomeMap<String, Integer> removed = replaced.without("two");
+        // Then
+        assertEquals(Map.of(), empty);
+        assertEquals(Map.of("one", 1), one);
+        assertEquals(Map.of("one", 1, "two", 2), two);
+        assertEquals(Map.of("one", 11, "two", 2), replaced);
+        assertEquals(Map.of("one", 11), removed);
+        assertSame(two, two.with("two", 2));
+        assertSame(two, two.without("three"));
+        assertNull(two.get("three"));
+        assertEquals(3, two.getOrDefault("three", 3));
+        assertThrows(NullPointerException.class, () -> two.with(null, 1));
+        assertThrows(UnsupportedOperationException.class, () -> two.put("three", 3));
+    }
+
+    @Test
+    void testRandomChangesMatchHashMap(){
+        // Given
+        Random random = new Random(21);
+        Map<Integer, Integer> expected = new HashMap<>();
+        PersistentSomeMap<Integer, Integer> map = PersistentSomeMap.empty();
+        PersistentSomeMap<Integer, Integer> snapshot = null;
+        Map<Integer, Integer> expectedSnapshot = null;
+        // When
+        for (int i = 0; i < 50_000; i++) {
+            int key = random.nextInt(20_000);
+            if (random.nextInt(3) == 0) {
+                map = map.without(key);
+                expected.remove(key);
+            } else {
+                map = map.with(key, i);
+                expected.put(key, i);
+            }
+            if (i == 25_000) {
+                snapshot = map;
+                expectedSnapshot = new HashMap<>(expected);
+            }
+        }
+        // Then
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected, map);
+        assertEquals(map, expected);
+        assertEquals(expected.hashCode(), map.hashCode());
+        assertEquals(expectedSnapshot, snapshot);
+        Map<Integer, Integer> visited = new HashMap<>();
+        map.forEach(visited::put);
+        assertEquals(expected, visited);
+    }
+
+    @Test
+    void testCollidingKeys(){
+        // Given
+        PersistentSomeMap<Colliding, Integer> map = PersistentSomeMap.empty();
+        // When
+        for (int i = 0; i < 10; i++) {
+            map = map.with(new Colliding(i), i);
+        }
+        PersistentSomeMap<Colliding, Integer> withOther = map.with(new Colliding(100), 100);
+        // Then
+        assertEquals(10, map.size());
+        assertEquals(11, withOther.size());
+        assertEquals(7, map.get(new Colliding(7)));
+        assertEquals(100, withOther.get(new Colliding(100)));
+        PersistentSomeMap<Colliding, Integer> removed = map;
+        for (int i = 0; i < 10; i++) {
+            removed = removed.without(new Colliding(i));
+        }
+        assertTrue(removed.isEmpty());
+        assertEquals(10, map.entrySet().size());
+        int count = 0;
+        for (Map.Entry<Colliding, Integer> entry : map.entrySet()) {
+            assertEquals(entry.getKey().id, entry.getValue());
+            count++;
+        }
+        assertEquals(10, count);
+    }
+
+    @Test
+    void testFromAndEntrySet(){
+        // Given
+        Map<String, Integer> source = new HashMap<>();
+        for (int i = 0; i < 1_000; i++) {
+            source.put("key" + i, i);
+        }
+        // When
+        PersistentSomeMap<String, Integer> map = PersistentSomeMap.from(source);
+        // Then
+        assertEquals(source, map);
+        assertTrue(map.entrySet().contains(new AbstractMap.SimpleEntry<>("key5", 5)));
+        assertFalse(map.entrySet().contains(new AbstractMap.SimpleEntry<>("key5", 6)));
+        assertEquals(source.keySet(), map.keySet());
+        assertThrows(UnsupportedOperationException.class, () -> map.entrySet().iterator().next().setValue(1));
+    }
+
+    private static class Colliding {
+        private final int id;
+
+        Colliding(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Colliding other && other.id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            // Only the first ten keys share a hash
+            return id < 10 ? 42 : id;
+        }
+    }
+}
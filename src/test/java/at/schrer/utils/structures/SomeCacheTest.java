@@ -0,0 +1,174 @@
+package at.schrer.utils.structures;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SomeCacheTest {
+
+    @Test
+    void testBasicPutGet(){
+        // Given
+        SomeCache<String, Integer> cache = SomeCache.<String, Integer>builder().maximumSize(10).build();
+        // When
+        cache.put("one", 1);
+        // Then
+        assertEquals(1, cache.get("one"));
+        assertNull(cache.get("two"));
+        assertEquals(1, cache.size());
+        assertEquals(new SomeCache.Stats(1, 1, 0), cache.stats());
+        assertEquals(0.5, cache.stats().hitRate());
+    }
+
+    @Test
+    void testMissingMaximum(){
+        // Then
+        assertThrows(IllegalStateException.class, () -> SomeCache.<String, Integer>builder().build());
+    }
+
+    @Test
+    void testLruEvictsLeastRecentlyUsed(){
+        // Given
+        List<String> evicted = new ArrayList<>();
+        SomeCache<String, Integer> cache = SomeCache.<String, Integer>builder()
+                .maximumSize(3)
+                .policy(SomeCache.Policy.LRU)
+                .evictionListener((key, value, cause) -> evicted.add(key + ":" + cause))
+                .build();
+        cache.put("one", 1);
+        cache.put("two", 2);
+        cache.put("three", 3);
+        // When
+        cache.get("one");
+        cache.put("four", 4);
+        // Then
+        assertEquals(3, cache.size());
+        assertFalse(cache.containsKey("two"));
+        assertTrue(cache.containsKey("one"));
+        assertEquals(List.of("two:SIZE"), evicted);
+        assertEquals(1, cache.stats().evictionCount());
+    }
+
+    @Test
+    void testTinyLfuKeepsHotKeysDuringScan(){
+        // Given
+        SomeCache<Integer, Integer> cache = SomeCache.<Integer, Integer>builder().maximumSize(100).build();
+        for (int round = 0; round < 10; round++) {
+            for (int hot = 0; hot < 50; hot++) {
+                cache.get(hot, key -> key);
+            }
+        }
+        // When
+        for (int scan = 1_000; scan < 2_000; scan++) {
+            cache.get(scan, key -> key);
+        }
+        // Then
+        assertEquals(100, cache.size());
+        int hotResident = 0;
+        for (int hot = 0; hot < 50; hot++) {
+            if (cache.containsKey(hot)) {
+                hotResident++;
+            }
+        }
+        assertEquals(50, hotResident);
+    }
+
+    @Test
+    void testLruLosesHotKeysDuringScan(){
+        // Given
+        SomeCache<Integer, Integer> cache = SomeCache.<Integer, Integer>builder()
+                .maximumSize(100)
+                .policy(SomeCache.Policy.LRU)
+                .build();
+        for (int hot = 0; hot < 50; hot++) {
+            cache.get(hot, key -> key);
+        }
+        // When
+        for (int scan = 1_000; scan < 1_200; scan++) {
+            cache.get(scan, key -> key);
+        }
+        // Then
+        for (int hot = 0; hot < 50; hot++) {
+            assertFalse(cache.containsKey(hot));
+        }
+    }
+
+    @Test
+    void testMaximumWeight(){
+        // Given
+        SomeCache<String, String> cache = SomeCache.<String, String>builder()
+                .maximumWeight(10, (key, value) -> value.length())
+                .policy(SomeCache.Policy.LRU)
+                .build();
+        // When
+        cache.put("a", "aaaa");
+        cache.put("b", "bbbb");
+        cache.put("c", "cccc");
+        // Then
+        assertEquals(8, cache.weightedSize());
+        assertFalse(cache.containsKey("a"));
+
+        // When
+        cache.put("d", "dddddddddddd");
+        // Then
+        assertFalse(cache.containsKey("d"));
+        assertEquals(8, cache.weightedSize());
+    }
+
+    @Test
+    void testExpireAfterWrite(){
+        // Given
+        AtomicLong time = new AtomicLong();
+        List<String> expired = new ArrayList<>();
+        SomeCache<String, Integer> cache = SomeCache.<String, Integer>builder()
+                .maximumSize(10)
+                .expireAfterWrite(Duration.ofSeconds(10))
+                .ticker(time::get)
+                .evictionListener((key, value, cause) -> expired.add(key + ":" + cause))
+                .build();
+        cache.put("one", 1);
+        time.addAndGet(Duration.ofSeconds(5).toNanos());
+        cache.put("two", 2);
+        // When
+        time.addAndGet(Duration.ofSeconds(6).toNanos());
+        // Then
+        assertNull(cache.get("one"));
+        assertEquals(2, cache.get("two"));
+        assertEquals(List.of("one:EXPIRED"), expired);
+
+        // When
+        cache.put("two", 22);
+        time.addAndGet(Duration.ofSeconds(9).toNanos());
+        // Then
+        assertEquals(22, cache.get("two"));
+    }
+
+    @Test
+    void testInvalidate(){
+        // Given
+        List<String> evicted = new ArrayList<>();
+        SomeCache<String, Integer> cache = SomeCache.<String, Integer>builder()
+                .maximumSize(10)
+                .evictionListener((key, value, cause) -> evicted.add(key))
+                .build();
+        cache.put("one", 1);
+        cache.put("two", 2);
+        // When
+        Integer removed = cache.invalidate("one");
+        // Then
+        assertEquals(1, removed);
+        assertEquals(1, cache.size());
+        assertTrue(evicted.isEmpty());
+
+        // When
+        cache.invalidateAll();
+        // Then
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weightedSize());
+    }
+}
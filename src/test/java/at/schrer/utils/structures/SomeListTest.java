@@ -3,8 +3,18 @@ package at.schrer.utils.structures;
 import at.schrer.utils.structures.SomeList;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.Random;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -409,6 +419,561 @@ class SomeListTest {
     }
 
 
+    @Test
+    void testIndexedLoop(){
+        // Given
+        SomeList<Integer> list = new SomeList<>();
+        for (int i = 0; i < 50_000; i++) {
+            list.add(i);
+        }
+        // When
+        long sum = 0;
+        for (int i = 0; i < list.size(); i++) {
+            sum += list.get(i);
+        }
+        for (int i = list.size() - 1; i >= 0; i -= 2) {
+            list.set(i, -i);
+        }
+        // Then
+        assertEquals(49_999L * 50_000 / 2, sum);
+        assertEquals(-49_999, list.get(49_999));
+        assertEquals(49_998, list.get(49_998));
+    }
+
+    @Test
+    void testIndexedAccessAfterChanges(){
+        // Given
+        SomeList<Integer> list = new SomeList<>();
+        List<Integer> expected = new ArrayList<>();
+        Random random = new Random(3);
+        // When
+        for (int i = 0; i < 2_000; i++) {
+            int operation = random.nextInt(4);
+            if (expected.isEmpty() || operation == 0) {
+                list.add(i);
+                expected.add(i);
+            } else if (operation == 1) {
+                int index = random.nextInt(expected.size());
+                list.add(index, i);
+                expected.add(index, i);
+            } else if (operation == 2) {
+                int index = random.nextInt(expected.size());
+                assertEquals(expected.remove(index), list.remove(index));
+            } else {
+                int index = random.nextInt(expected.size());
+                assertEquals(expected.get(index), list.get(index));
+            }
+        }
+        // Then
+        assertEquals(expected.size(), list.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), list.get(i));
+        }
+        assertEquals(expected.indexOf(1_000), list.indexOf(1_000));
+        assertEquals(expected.lastIndexOf(5), list.lastIndexOf(5));
+    }
+
+    @Test
+    void testSpliteratorSplitsSized(){
+        // Given
+        SomeList<Integer> list = new SomeList<>();
+        for (int i = 0; i < 10_000; i++) {
+            list.add(i);
+        }
+        // When
+        Spliterator<Integer> second = list.spliterator();
+        Spliterator<Integer> first = second.trySplit();
+        // Then
+        assertNotNull(first);
+        assertTrue(second.hasCharacteristics(Spliterator.SUBSIZED));
+        assertEquals(5_000, first.estimateSize());
+        assertEquals(5_000, second.estimateSize());
+        List<Integer> firstHalf = new ArrayList<>();
+        first.forEachRemaining(firstHalf::add);
+        assertEquals(0, firstHalf.get(0));
+        assertEquals(4_999, firstHalf.get(4_999));
+        assertTrue(second.tryAdvance(value -> assertEquals(5_000, value)));
+        assertEquals(4_999, second.getExactSizeIfKnown());
+    }
+
+    @Test
+    void testParallelStream(){
+        // Given
+        SomeList<Integer> list = new SomeList<>();
+        for (int i = 0; i < 100_000; i++) {
+            list.add(i);
+        }
+        // When
+        long sum = list.parallelStream().mapToLong(Integer::longValue).sum();
+        List<Integer> evens = list.parallelStream().filter(i -> i % 2 == 0).collect(Collectors.toList());
+        // Then
+        assertEquals(99_999L * 100_000 / 2, sum);
+        assertEquals(50_000, evens.size());
+        assertEquals(99_998, evens.get(49_999));
+    }
+
+    @Test
+    void testIteratorRemoveSetAdd(){
+        // Given
+        SomeList<Integer> list = new SomeList<>();
+        for (int i = 0; i < 10; i++) {
+            list.add(i);
+        }
+        // When
+        ListIterator<Integer> iterator = list.listIterator();
+        while (iterator.hasNext()) {
+            int value = iterator.next();
+            if (value % 3 == 0) {
+                iterator.remove();
+            } else if (value % 3 == 1) {
+                iterator.set(value * 10);
+                iterator.add(-value);
+            }
+        }
+        // Then
+        assertEquals(List.of(10, -1, 2, 40, -4, 5, 70, -7, 8), new ArrayList<>(list));
+        assertEquals(9, list.size());
+        assertEquals(8, list.getLast());
+        assertEquals(10, list.getFirst());
+    }
+
+    @Test
+    void testIteratorBackwards(){
+        // Given
+        SomeList<String> list = get10FilledList();
+        // When
+        ListIterator<String> iterator = list.listIterator(list.size());
+        List<String> reversed = new ArrayList<>();
+        while (iterator.hasPrevious()) {
+            String value = iterator.previous();
+            reversed.add(value);
+            if (value.startsWith("t")) {
+                iterator.remove();
+            }
+        }
+        iterator.add("zeroth");
+        // Then
+        assertEquals("tenth", reversed.get(0));
+        assertEquals("first", reversed.get(9));
+        assertEquals(List.of("zeroth", "first", "second", "fourth", "fifth", "sixth", "seventh", "eighth", "ninth"),
+                new ArrayList<>(list));
+    }
+
+    @Test
+    void testIteratorFailFast(){
+        // Given
+        SomeList<String> list = get10FilledList();
+        Iterator<String> iterator = list.iterator();
+        iterator.next();
+        // When
+        list.remove("fifth");
+        // Then
+        assertThrows(ConcurrentModificationException.class, iterator::next);
+        assertThrows(IllegalStateException.class, () -> list.iterator().remove());
+    }
+
+    @Test
+    void testRemoveIfAndReplaceAll(){
+        // Given
+        SomeList<Integer> list = new SomeList<>();
+        for (int i = 0; i < 100_000; i++) {
+            list.add(i);
+        }
+        // When
+        boolean removed = list.removeIf(value -> value % 2 == 1);
+        list.replaceAll(value -> value / 2);
+        // Then
+        assertTrue(removed);
+        assertEquals(50_000, list.size());
+        assertEquals(0, list.getFirst());
+        assertEquals(49_999, list.getLast());
+        assertEquals(25_000, list.get(25_000));
+    }
+
+    @Test
+    void testRemoveObject(){
+        // Given
+        SomeList<String> list = get10FilledList();
+        // When
+        boolean removedMiddle = list.remove("fifth");
+        boolean removedLast = list.remove("tenth");
+        boolean removedMissing = list.remove("eleventh");
+        // Then
+        assertTrue(removedMiddle);
+        assertTrue(removedLast);
+        assertFalse(removedMissing);
+        assertEquals(8, list.size());
+        assertEquals("ninth", list.getLast());
+        assertEquals("sixth", list.get(4));
+    }
+
+    @Test
+    void testSortNaturalOrder(){
+        // Given
+        SomeList<String> list = get10FilledList();
+        List<String> expected = new ArrayList<>(list);
+        expected.sort(null);
+        // When
+        list.sort(null);
+        // Then
+        assertEquals(expected, new ArrayList<>(list));
+        assertEquals("eighth", list.getFirst());
+        assertEquals("third", list.getLast());
+        assertEquals("third", list.listIterator(list.size()).previous());
+    }
+
+    @Test
+    void testSortIsStable(){
+        // Given
+        SomeList<int[]> list = new SomeList<>();
+        Random random = new Random(11);
+        for (int i = 0; i < 5_000; i++) {
+            list.add(new int[]{random.nextInt(50), i});
+        }
+        // When
+        list.sort(Comparator.comparingInt(pair -> pair[0]));
+        // Then
+        int[] previous = null;
+        for (int[] pair : list) {
+            if (previous != null) {
+                assertTrue(previous[0] < pair[0] || (previous[0] == pair[0] && previous[1] < pair[1]));
+            }
+            previous = pair;
+        }
+        assertEquals(5_000, list.size());
+    }
+
+    @Test
+    void testSortFailingComparatorKeepsOrder(){
+        // Given
+        SomeList<String> list = get10FilledList();
+        List<String> before = new ArrayList<>(list);
+        Comparator<String> failing = (a, b) -> {
+            if (a.equals("sixth") || b.equals("sixth")) {
+                throw new IllegalStateException("no");
+            }
+            return a.compareTo(b);
+        };
+        // When
+        assertThrows(IllegalStateException.class, () -> list.sort(failing));
+        // Then
+        assertEquals(before, new ArrayList<>(list));
+        assertEquals("tenth", list.getLast());
+    }
+
+    @Test
+    void testParallelSort(){
+        // Given
+        SomeList<Integer> list = new SomeList<>();
+        List<Integer> expected = new ArrayList<>();
+        Random random = new Random(5);
+        for (int i = 0; i < 100_000; i++) {
+            int value = random.nextInt();
+            list.add(value);
+            expected.add(value);
+        }
+        expected.sort(Comparator.reverseOrder());
+        // When
+        list.parallelSort(Comparator.reverseOrder());
+        // Then
+        assertEquals(expected, new ArrayList<>(list));
+        assertEquals(expected.get(99_999), list.getLast());
+        assertEquals(expected.get(50_000), list.get(50_000));
+    }
+
+    @Test
+    void testSubListIsView(){
+        // Given
+        SomeList<String> list = get10FilledList();
+        // When
+        List<String> middle = list.subList(2, 5);
+        middle.set(0, "THIRD");
+        middle.remove("fourth");
+        middle.add("new");
+        // Then
+        assertEquals(List.of("THIRD", "fifth", "new"), middle);
+        assertEquals(10, list.size());
+        assertEquals("THIRD", list.get(2));
+        assertEquals("new", list.get(4));
+        assertEquals("sixth", list.get(5));
+    }
+
+    @Test
+    void testSubListClearAndNested(){
+        // Given
+        SomeList<Integer> list = new SomeList<>();
+        for (int i = 0; i < 20; i++) {
+            list.add(i);
+        }
+        // When
+        List<Integer> window = list.subList(5, 15);
+        List<Integer> inner = window.subList(2, 4);
+        inner.clear();
+        window.subList(0, 1).clear();
+        // Then
+        assertEquals(List.of(6, 9, 10, 11, 12, 13, 14), window);
+        assertEquals(17, list.size());
+        assertEquals(9, list.get(6));
+    }
+
+    @Test
+    void testSubListFailFastAndBounds(){
+        // Given
+        SomeList<String> list = get10FilledList();
+        List<String> view = list.subList(0, 3);
+        // Then
+        assertThrows(IndexOutOfBoundsException.class, () -> view.get(3));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.subList(4, 11));
+        assertEquals(0, list.subList(10, 10).size());
+        // When
+        list.add("eleventh");
+        // Then
+        assertThrows(ConcurrentModificationException.class, () -> view.get(0));
+    }
+
+    @Test
+    void testMembershipIndex(){
+        // Given
+        SomeList<String> list = get10FilledList();
+        list.add("first");
+        // When
+        list.enableMembershipIndex();
+        // Then
+        assertTrue(list.isMembershipIndexEnabled());
+        assertTrue(list.contains("fifth"));
+        assertFalse(list.contains("twelfth"));
+        assertFalse(list.contains(null));
+        assertEquals(-1, list.indexOf("twelfth"));
+        assertEquals(10, list.lastIndexOf("first"));
+        assertTrue(list.remove("first"));
+        assertEquals("second", list.getFirst());
+        assertTrue(list.contains("first"));
+        assertTrue(list.remove("first"));
+        assertFalse(list.contains("first"));
+        assertFalse(list.remove("first"));
+        assertEquals(9, list.size());
+    }
+
+    @Test
+    void testMembershipIndexFollowsChanges(){
+        // Given
+        SomeList<Integer> list = new SomeList<>();
+        list.enableMembershipIndex();
+        List<Integer> expected = new ArrayList<>();
+        Random random = new Random(18);
+        // When
+        for (int i = 0; i < 5_000; i++) {
+            int value = random.nextInt(200);
+            switch (random.nextInt(5)) {
+                case 0 -> {
+                    list.add(value);
+                    expected.add(value);
+                }
+                case 1 -> {
+                    int index = random.nextInt(expected.size() + 1);
+                    list.add(index, value);
+                    expected.add(index, value);
+                }
+                case 2 -> assertEquals(expected.remove((Integer) value), list.remove((Integer) value));
+                case 3 -> {
+                    if (!expected.isEmpty()) {
+                        int index = random.nextInt(expected.size());
+                        assertEquals(expected.set(index, value), list.set(index, value));
+                    }
+                }
+                default -> assertEquals(expected.contains(value), list.contains(value));
+            }
+        }
+        list.sort(null);
+        expected.sort(null);
+        list.replaceAll(value -> value + 1);
+        expected.replaceAll(value -> value + 1);
+        // Then
+        assertEquals(expected, new ArrayList<>(list));
+        for (int value = 0; value <= 201; value++) {
+            assertEquals(expected.contains(value), list.contains(value));
+            assertEquals(expected.indexOf(value), list.indexOf(value));
+        }
+        list.clear();
+        assertFalse(list.contains(1));
+        list.add(1);
+        assertTrue(list.contains(1));
+    }
+
+    @Test
+    void testBulkOperationsWithHashedView(){
+        // Given
+        SomeList<Integer> list = new SomeList<>();
+        for (int i = 0; i < 100; i++) {
+            list.add(i % 50);
+        }
+        List<Integer> evens = new ArrayList<>();
+        for (int i = 0; i < 50; i += 2) {
+            evens.add(i);
+        }
+        Set<Integer> small = new HashSet<>(List.of(1, 3, 5));
+        // Then
+        assertTrue(list.containsAll(evens));
+        assertFalse(list.containsAll(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 50)));
+        // When
+        assertTrue(list.removeAll(evens));
+        // Then
+        assertEquals(50, list.size());
+        assertFalse(list.contains(0));
+        // When
+        assertTrue(list.retainAll(small));
+        // Then
+        assertEquals(List.of(1, 3, 5, 1, 3, 5), new ArrayList<>(list));
+    }
+
+    @Test
+    void testBulkOperationsWithMembershipIndex(){
+        // Given
+        SomeList<Integer> list = new SomeList<>();
+        for (int i = 0; i < 100; i++) {
+            list.add(i % 50);
+        }
+        list.enableMembershipIndex();
+        // When
+        boolean removed = list.removeAll(List.of(0, 1, 2, 99));
+        boolean removedMissing = list.removeAll(List.of(99));
+        // Then
+        assertTrue(removed);
+        assertFalse(removedMissing);
+        assertEquals(94, list.size());
+        assertEquals(3, list.getFirst());
+        assertEquals(3, list.get(47));
+        assertTrue(list.containsAll(List.of(3, 49)));
+        assertFalse(list.containsAll(List.of(3, 0)));
+        // When
+        list.disableMembershipIndex();
+        // Then
+        assertFalse(list.isMembershipIndexEnabled());
+        assertTrue(list.contains(49));
+    }
+
+    @Test
+    void testNodeRecyclingAsQueue(){
+        // Given
+        SomeList<Integer> list = new SomeList<>();
+        list.enableNodeRecycling(16);
+        for (int i = 0; i < 10; i++) {
+            list.add(i);
+        }
+        // When
+        for (int i = 10; i < 1_010; i++) {
+            assertEquals(i - 10, list.remove(0));
+            list.add(i);
+        }
+        // Then
+        SomeList.RecyclingStats stats = list.recyclingStats();
+        assertEquals(1_000, stats.hitCount());
+        assertEquals(10, stats.missCount());
+        assertEquals(0, stats.pooledNodes());
+        assertEquals(1_000.0 / 1_010, stats.hitRate());
+        assertEquals(1_000, list.getFirst());
+        assertEquals(1_009, list.getLast());
+        assertEquals(10, list.size());
+    }
+
+    @Test
+    void testNodeRecyclingIsBounded(){
+        // Given
+        SomeList<String> list = get10FilledList();
+        list.enableNodeRecycling(3);
+        list.enableMembershipIndex();
+        // When
+        Iterator<String> iterator = list.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().contains("th")) {
+                iterator.remove();
+            }
+        }
+        list.add(1, "new");
+        // Then
+        assertEquals(List.of("first", "new", "second"), new ArrayList<>(list));
+        assertEquals(2, list.recyclingStats().pooledNodes());
+        assertEquals(1, list.recyclingStats().hitCount());
+        assertFalse(list.contains("fifth"));
+        assertTrue(list.contains("new"));
+        // When
+        list.disableNodeRecycling();
+        list.add("last");
+        // Then
+        assertEquals(0, list.recyclingStats().pooledNodes());
+        assertEquals(1, list.recyclingStats().hitCount());
+        assertThrows(IllegalArgumentException.class, () -> list.enableNodeRecycling(0));
+    }
+
+    @Test
+    void testStreamActionChangingTheListFailsFast(){
+        // Given
+        SomeList<Integer> list = new SomeList<>();
+        for (int i = 0; i < 5; i++) {
+            list.add(i);
+        }
+        List<Integer> seen = new ArrayList<>();
+        // When
+        assertThrows(ConcurrentModificationException.class, () -> list.stream().forEach(x -> {
+            seen.add(x);
+            if (x == 2) {
+                list.remove(list.size() - 1);
+            }
+        }));
+        // Then
+        assertEquals(List.of(0, 1, 2), seen);
+    }
+
+    @Test
+    void testStreamRemovingWithRecyclingFailsFast(){
+        // Given
+        SomeList<Integer> list = new SomeList<>();
+        list.enableNodeRecycling(16);
+        for (int i = 0; i < 10; i++) {
+            list.add(i);
+        }
+        List<Integer> seen = new ArrayList<>();
+        // When
+        assertThrows(ConcurrentModificationException.class, () -> list.stream().forEach(x -> {
+            seen.add(x);
+            if (x == 2) {
+                list.remove(Integer.valueOf(3));
+                list.remove(list.size() - 1);
+                list.add(100);
+            }
+        }));
+        // Then
+        assertEquals(List.of(0, 1, 2), seen);
+        assertEquals(List.of(0, 1, 2, 4, 5, 6, 7, 8, 100), new ArrayList<>(list));
+        assertEquals(1, list.recyclingStats().hitCount());
+        assertEquals(1, list.recyclingStats().pooledNodes());
+    }
+
+    @Test
+    void testStatsCountNodeWalks(){
+        // Given
+        SomeList<String> list = get10FilledList();
+        list.enableStats();
+        // When
+        list.get(0);
+        list.get(5);
+        list.get(6);
+        // Then
+        StructureStats stats = list.stats();
+        assertTrue(list.isStatsEnabled());
+        assertEquals(3, stats.lookupCount());
+        assertEquals(5, stats.lookupSteps());
+        assertEquals(5.0 / 3, stats.averageLookupSteps(), 0.0001);
+        assertEquals(0, stats.resizeCount());
+
+        // When
+        list.disableStats();
+        list.get(3);
+        // Then
+        assertFalse(list.isStatsEnabled());
+        assertEquals(0, list.stats().lookupCount());
+    }
+
     private SomeList<String> get10FilledList(){
         SomeList<String> list = new SomeList<>();
         list.add("first");
@@ -3,10 +3,10 @@ package at.schrer.utils.structures;
 import at.schrer.utils.structures.SomeMap;
 import org.junit.jupiter.api.Test;
 
-import java.util.Collection;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.*;
 import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -193,24 +193,592 @@ class SomeMapTest {
 
     }
 
+    @Test
+    void testValuesKeepDuplicates(){
+        // Given
+        SomeMap<String, Integer> map = threeNumbersMap();
+        map.put("uno", 1);
+        // When
+        Collection<Integer> values = map.values();
+        // Then
+        assertEquals(4, values.size());
+        assertEquals(2, values.stream().filter(value -> value == 1).count());
+    }
+
+    @Test
+    void testViewsAreLive(){
+        // Given
+        SomeMap<String, Integer> map = threeNumbersMap();
+        Set<String> keys = map.keySet();
+        Collection<Integer> values = map.values();
+        Set<Map.Entry<String, Integer>> entries = map.entrySet();
+        // When
+        map.put("four", 4);
+        keys.remove("one");
+        entries.remove(Map.entry("two", 2));
+        entries.remove(Map.entry("three", 4));
+        // Then
+        assertEquals(2, map.size());
+        assertEquals(Set.of("three", "four"), keys);
+        assertTrue(values.containsAll(List.of(3, 4)));
+        assertTrue(entries.contains(Map.entry("four", 4)));
+        assertFalse(entries.contains(Map.entry("four", 5)));
+        assertSame(keys, map.keySet());
+    }
+
+    @Test
+    void testEntrySetWritesThrough(){
+        // Given
+        SomeMap<String, Integer> map = threeNumbersMap();
+        // When
+        for (Map.Entry<String, Integer> entry : map.entrySet()) {
+            entry.setValue(entry.getValue() * 10);
+        }
+        // Then
+        assertEquals(10, map.get("one"));
+        assertEquals(30, map.get("three"));
+    }
+
+    @Test
+    void testIteratorRemove(){
+        // Given
+        SomeMap<Integer, Integer> map = new SomeMap<>();
+        for (int i = 0; i < 100; i++) {
+            map.put(i, i);
+        }
+        // When
+        map.values().removeIf(value -> value % 3 != 0);
+        // Then
+        assertEquals(34, map.size());
+        assertEquals(33, map.get(33));
+        assertFalse(map.containsKey(34));
+        assertThrows(IllegalStateException.class, () -> map.keySet().iterator().remove());
+    }
+
+    @Test
+    void testIteratorFailFast(){
+        // Given
+        SomeMap<String, Integer> map = threeNumbersMap();
+        Iterator<String> keys = map.keySet().iterator();
+        keys.next();
+        // When
+        map.put("four", 4);
+        // Then
+        assertThrows(ConcurrentModificationException.class, keys::next);
+    }
+
     @Test
     void testRemove(){
         // Given
-        SomeMap<String, Integer> map = new SomeMap<>();
+        SomeMap<String, Integer> map = threeNumbersMap();
+        // When
+        Integer removed = map.remove("two");
+        Integer notPresent = map.remove("four");
+        // Then
+        assertEquals(2, removed);
+        assertNull(notPresent);
+        assertEquals(2, map.size());
+        assertFalse(map.containsKey("two"));
+        assertEquals(1, map.get("one"));
+        assertEquals(3, map.get("three"));
+    }
+
+    @Test
+    void testManyKeys(){
+        // Given
+        SomeMap<Integer, Integer> map = new SomeMap<>();
+        // When
+        for (int i = 0; i < 10_000; i++) {
+            map.put(i, i * 2);
+        }
+        for (int i = 0; i < 10_000; i += 2) {
+            map.remove(i);
+        }
+        // Then
+        assertEquals(5_000, map.size());
+        for (int i = 0; i < 10_000; i++) {
+            if (i % 2 == 0) {
+                assertFalse(map.containsKey(i));
+            } else {
+                assertEquals(i * 2, map.get(i));
+            }
+        }
+    }
+
+    @Test
+    void testCollidingKeys(){
+        // Given
+        SomeMap<CollidingKey, String> map = new SomeMap<>(4);
         // When
-        // TODO
+        for (int i = 0; i < 20; i++) {
+            map.put(new CollidingKey(i), "value" + i);
+        }
+        map.remove(new CollidingKey(3));
+        map.remove(new CollidingKey(0));
+        map.put(new CollidingKey(7), "seven");
         // Then
+        assertEquals(18, map.size());
+        assertNull(map.get(new CollidingKey(0)));
+        assertNull(map.get(new CollidingKey(3)));
+        assertEquals("value19", map.get(new CollidingKey(19)));
+        assertEquals("seven", map.get(new CollidingKey(7)));
+    }
 
+    @Test
+    void testClear(){
+        // Given
+        SomeMap<String, Integer> map = new SomeMap<>(2);
+        map.put("one", 1);
+        map.put("two", 2);
+        map.put("three", 3);
+        // When
+        map.clear();
+        map.put("four", 4);
+        // Then
+        assertEquals(2, map.getMaxSize());
+        assertEquals(1, map.size());
+        assertNull(map.get("one"));
+        assertEquals(4, map.get("four"));
     }
 
     @Test
     void testShrink(){
+        // Given
+        SomeMap<Integer, Integer> map = new SomeMap<>(10);
+        for (int i = 0; i < 100; i++) {
+            map.put(i, i);
+        }
+        assertEquals(160, map.getMaxSize());
+        // When
+        for (int i = 0; i < 46; i++) {
+            map.remove(i);
+        }
+        // Then
+        assertEquals(54, map.size());
+        assertEquals(160, map.getMaxSize());
+
+        // When
+        map.remove(46);
+        // Then
+        assertEquals(53, map.size());
+        assertEquals(80, map.getMaxSize());
+        assertEquals(99, map.get(99));
+        assertNull(map.get(46));
+    }
+
+    @Test
+    void testNoShrinkBelowInitialSize(){
+        // Given
+        SomeMap<String, Integer> map = new SomeMap<>();
+        map.put("one", 1);
+        map.put("two", 2);
+        // When
+        map.remove("one");
+        map.remove("two");
+        // Then
+        assertEquals(30, map.getMaxSize());
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void testIncrementalGrow(){
+        // Given
+        SomeMap<Integer, Integer> map = new SomeMap<>(64);
+        map.enableIncrementalResize();
+        for (int i = 0; i < 64; i++) {
+            map.put(i, i);
+        }
+        // When
+        map.put(64, 64);
+        // Then
+        assertTrue(map.isIncrementalResizeEnabled());
+        assertTrue(map.isResizing());
+        assertEquals(128, map.getMaxSize());
+        assertEquals(65, map.size());
+        for (int i = 0; i <= 64; i++) {
+            assertEquals(i, map.get(i));
+        }
+        assertEquals(65, new ArrayList<>(map.keySet()).size());
+        assertEquals(64 * 65 / 2, map.values().stream().mapToInt(Integer::intValue).sum());
+
+        // When
+        map.put(65, 65);
+        map.put(66, 66);
+        // Then
+        assertFalse(map.isResizing());
+        assertEquals(67, map.size());
+        for (int i = 0; i <= 66; i++) {
+            assertEquals(i, map.get(i));
+        }
+    }
+
+    @Test
+    void testIncrementalShrink(){
+        // Given
+        SomeMap<Integer, Integer> map = new SomeMap<>(10);
+        map.enableIncrementalResize();
+        for (int i = 0; i < 100; i++) {
+            map.put(i, i);
+        }
+        // When
+        for (int i = 0; i < 47; i++) {
+            map.remove(i);
+        }
+        // Then
+        assertEquals(80, map.getMaxSize());
+        assertTrue(map.isResizing());
+        assertEquals(53, map.size());
+        assertEquals(99, map.get(99));
+        assertTrue(map.containsKey(47));
+        assertFalse(map.containsKey(46));
+
+        // When
+        for (int i = 47; i < 51; i++) {
+            map.remove(i);
+        }
+        // Then
+        assertFalse(map.isResizing());
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 51; i < 100; i++) {
+            expected.put(i, i);
+        }
+        assertEquals(expected, map);
+    }
+
+    @Test
+    void testChangesWhileResizingIncrementally(){
+        // Given
+        SomeMap<Integer, Integer> map = new SomeMap<>(4);
+        map.enableIncrementalResize();
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(23);
+        // When
+        for (int i = 0; i < 50_000; i++) {
+            int key = random.nextInt(2000);
+            switch (random.nextInt(6)) {
+                case 0, 1 -> assertEquals(expected.put(key, i), map.put(key, i));
+                case 2 -> assertEquals(expected.remove(key), map.remove(key));
+                case 3 -> assertEquals(expected.merge(key, 1, Integer::sum), map.merge(key, 1, Integer::sum));
+                case 4 -> assertEquals(expected.computeIfAbsent(key, k -> -k), map.computeIfAbsent(key, k -> -k));
+                default -> assertEquals(expected.get(key), map.get(key));
+            }
+            if (i % 5000 == 0) {
+                // Then
+                assertEquals(expected, map);
+                assertEquals(expected.hashCode(), map.hashCode());
+                assertEquals(expected.keySet(), new HashSet<>(map.keySet()));
+            }
+        }
+        // Then
+        assertEquals(expected, map);
+        assertEquals(expected.size(), map.size());
+    }
+
+    @Test
+    void testIteratorWhileResizingIncrementally(){
+        // Given
+        SomeMap<Integer, Integer> map = new SomeMap<>(64);
+        map.enableIncrementalResize();
+        for (int i = 0; i <= 64; i++) {
+            map.put(i, i);
+        }
+        assertTrue(map.isResizing());
+        // When
+        Iterator<Integer> iterator = map.keySet().iterator();
+        Set<Integer> seen = new HashSet<>();
+        while (iterator.hasNext()) {
+            int key = iterator.next();
+            seen.add(key);
+            if (key % 2 == 0) {
+                iterator.remove();
+            }
+        }
+        // Then
+        assertEquals(65, seen.size());
+        assertEquals(32, map.size());
+        assertTrue(map.isResizing());
+        assertEquals(1, map.get(1));
+        assertNull(map.get(2));
+        Iterator<Integer> stale = map.keySet().iterator();
+        stale.next();
+        map.put(100, 100);
+        assertThrows(ConcurrentModificationException.class, stale::next);
+    }
+
+    @Test
+    void testStatsCountProbesAndResizes(){
+        // Given
+        SomeMap<CollidingKey, String> map = new SomeMap<>(4);
+        map.enableStats();
+        // When
+        for (int i = 0; i < 4; i++) {
+            map.put(new CollidingKey(i), "value" + i);
+        }
+        map.get(new CollidingKey(3));
+        // Then
+        StructureStats stats = map.stats();
+        // All keys collide, so every key is found one slot further than the one before
+        assertEquals(5, stats.lookupCount());
+        assertEquals(1 + 2 + 3 + 4 + 4, stats.lookupSteps());
+        assertEquals(0, stats.resizeCount());
+        assertEquals(4, stats.freeSlotSearchCount());
+        assertEquals(0, stats.reusedSlotCount());
+
+        // When
+        map.remove(new CollidingKey(0));
+        map.put(new CollidingKey(4), "value4");
+        map.put(new CollidingKey(5), "value5");
+        // Then
+        stats = map.stats();
+        assertEquals(1, stats.resizeCount());
+        assertEquals(6, stats.freeSlotSearchCount());
+        // The position of key 0 is reused by key 4, key 5 gets a new one after the resize
+        assertEquals(1, stats.reusedSlotCount());
+        assertEquals(1.0 / 6, stats.reusedSlotRatio());
+    }
+
+    @Test
+    void testChurnReusesFreedPositions(){
+        // Given
+        SomeMap<Integer, Integer> map = new SomeMap<>(10_000);
+        for (int i = 0; i < 10_000; i++) {
+            map.put(i, i);
+        }
+        map.enableStats();
+        Random random = new Random(7);
+        Map<Integer, Integer> expected = new HashMap<>(map);
+        // When
+        for (int i = 0; i < 20_000; i++) {
+            int removed = random.nextInt(10_000 + i);
+            assertEquals(expected.remove(removed), map.remove(removed));
+            map.put(10_000 + i, i);
+            expected.put(10_000 + i, i);
+        }
+        // Then
+        StructureStats stats = map.stats();
+        assertEquals(20_000, stats.freeSlotSearchCount());
+        assertTrue(stats.reusedSlotCount() > 10_000);
+        assertEquals(expected, map);
+    }
+
+    @Test
+    void testStatsDisabledByDefault(){
+        // Given
+        SomeMap<String, Integer> map = threeNumbersMap();
+        // When
+        map.get("one");
+        // Then
+        assertFalse(map.isStatsEnabled());
+        assertEquals(new StructureStats(0, 0, 0, 0, 0), map.stats());
+        assertEquals(0.0, map.stats().averageLookupSteps());
+    }
+
+    @Test
+    void testStatsMBean() throws Exception {
         // Given
         SomeMap<String, Integer> map = new SomeMap<>();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        // When
+        ObjectName name = map.registerStatsMBean("requests");
+        map.put("one", 1);
+        map.get("one");
+        // Then
+        try {
+            assertTrue(map.isStatsEnabled());
+            assertEquals("SomeMap", name.getKeyProperty("type"));
+            assertEquals(2L, server.getAttribute(name, "LookupCount"));
+            assertEquals(1L, server.getAttribute(name, "FreeSlotSearchCount"));
+            assertThrows(IllegalStateException.class, () -> new SomeMap<String, Integer>().registerStatsMBean("requests"));
+
+            server.invoke(name, "reset", null, null);
+            assertEquals(0, map.stats().lookupCount());
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+
+    @Test
+    void testDisableIncrementalResizeFinishesResize(){
+        // Given
+        SomeMap<Integer, Integer> map = new SomeMap<>(32);
+        map.enableIncrementalResize();
+        for (int i = 0; i <= 32; i++) {
+            map.put(i, i);
+        }
+        // When
+        map.disableIncrementalResize();
+        // Then
+        assertFalse(map.isResizing());
+        assertFalse(map.isIncrementalResizeEnabled());
+        assertEquals(33, map.size());
+        assertEquals(32, map.get(32));
+    }
+
+    @Test
+    void testPutAllGrowsOnce(){
+        // Given
+        SomeMap<Integer, Integer> map = new SomeMap<>(10);
+        Map<Integer, Integer> source = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            source.put(i, i * i);
+        }
+        // When
+        map.putAll(source);
+        // Then
+        assertEquals(100, map.size());
+        assertEquals(100, map.getMaxSize());
+        assertEquals(81, map.get(9));
+    }
+
+    @Test
+    void testRemoveAllKeys(){
+        // Given
+        SomeMap<Integer, Integer> map = new SomeMap<>(10);
+        for (int i = 0; i < 200; i++) {
+            map.put(i, i);
+        }
+        List<Integer> evenKeys = new ArrayList<>();
+        for (int i = 0; i < 400; i += 2) {
+            evenKeys.add(i);
+        }
+        // When
+        boolean removed = map.removeAll(evenKeys);
+        boolean removedAgain = map.removeAll(evenKeys);
+        // Then
+        assertTrue(removed);
+        assertFalse(removedAgain);
+        assertEquals(100, map.size());
+        assertTrue(map.getMaxSize() < 200);
+        assertTrue(map.getMaxSize() >= 100);
+        assertFalse(map.containsKey(10));
+        assertEquals(11, map.get(11));
+    }
+
+    @Test
+    void testGetAll(){
+        // Given
+        SomeMap<String, Integer> map = threeNumbersMap();
+        Map<String, Integer> found = new HashMap<>();
+        // When
+        map.getAll(List.of("one", "three", "four"), found::put);
+        // Then
+        assertEquals(Map.of("one", 1, "three", 3), found);
+    }
+
+    @Test
+    void testBuilder(){
+        // Given
+        SomeMap.Builder<String, Integer> builder = SomeMap.<String, Integer>builder()
+                .put("one", 1)
+                .putAll(Map.of("two", 2, "three", 3));
+        // When
+        Map<String, Integer> map = builder.build();
+        // Then
+        assertEquals(3, map.size());
+        assertEquals(2, map.get("two"));
+        assertThrows(UnsupportedOperationException.class, () -> map.put("four", 4));
+        assertThrows(IllegalArgumentException.class, () -> builder.put("one", 11).build());
+    }
+
+    @Test
+    void testToUnmodifiableMap(){
+        // Given
+        List<String> words = List.of("a", "bb", "ccc", "dddd");
         // When
-        // TODO
+        Map<String, Integer> lengths = words.stream()
+                .collect(SomeMap.toUnmodifiableMap(word -> word, String::length));
+        Map<String, Integer> parallelLengths = words.parallelStream()
+                .collect(SomeMap.toUnmodifiableMap(word -> word, String::length));
         // Then
+        assertEquals(Map.of("a", 1, "bb", 2, "ccc", 3, "dddd", 4), lengths);
+        assertEquals(lengths, parallelLengths);
+        assertThrows(IllegalArgumentException.class, () -> List.of("x", "x").stream()
+                .collect(SomeMap.toUnmodifiableMap(word -> word, word -> 1)));
+    }
 
+    @Test
+    void testMergeCounts(){
+        // Given
+        SomeMap<String, Integer> counts = new SomeMap<>(2);
+        List<String> words = List.of("a", "b", "a", "c", "a", "b");
+        // When
+        for (String word : words) {
+            counts.merge(word, 1, Integer::sum);
+        }
+        counts.merge("c", 1, (oldValue, value) -> null);
+        // Then
+        assertEquals(Map.of("a", 3, "b", 2), counts);
+    }
+
+    @Test
+    void testCompute(){
+        // Given
+        SomeMap<String, Integer> map = threeNumbersMap();
+        // When
+        Integer absent = map.computeIfAbsent("four", key -> 4);
+        Integer present = map.computeIfAbsent("one", key -> 100);
+        Integer notPresent = map.computeIfPresent("five", (key, value) -> 5);
+        map.computeIfPresent("two", (key, value) -> null);
+        Integer computed = map.compute("three", (key, value) -> value * 10);
+        map.compute("six", (key, value) -> value == null ? 6 : value);
+        // Then
+        assertEquals(4, absent);
+        assertEquals(1, present);
+        assertNull(notPresent);
+        assertEquals(30, computed);
+        assertEquals(Map.of("one", 1, "three", 30, "four", 4, "six", 6), map);
+        assertEquals(-1, map.getOrDefault("two", -1));
+        assertEquals(1, map.getOrDefault("one", -1));
+    }
+
+    @Test
+    void testComputeGrowsMap(){
+        // Given
+        SomeMap<Integer, Integer> map = new SomeMap<>(1);
+        // When
+        for (int i = 0; i < 1_000; i++) {
+            map.computeIfAbsent(i, key -> key * 2);
+            map.putIfAbsent(-i - 1, i);
+        }
+        // Then
+        assertEquals(2_000, map.size());
+        assertEquals(1_998, map.get(999));
+        assertEquals(999, map.get(-1_000));
+    }
+
+    @Test
+    void testComputeModifyingMapThrows(){
+        // Given
+        SomeMap<String, Integer> map = threeNumbersMap();
+        // Then
+        assertThrows(ConcurrentModificationException.class,
+                () -> map.computeIfAbsent("four", key -> map.put("five", 5)));
+        assertThrows(ConcurrentModificationException.class,
+                () -> map.forEach((key, value) -> map.remove("one")));
+    }
+
+    @Test
+    void testForEachAndReplaceAll(){
+        // Given
+        SomeMap<String, Integer> map = threeNumbersMap();
+        Map<String, Integer> visited = new HashMap<>();
+        // When
+        map.replaceAll((key, value) -> value + key.length());
+        map.forEach(visited::put);
+        // Then
+        assertEquals(Map.of("one", 4, "two", 5, "three", 8), visited);
+    }
+
+    private record CollidingKey(int id) implements Comparable<CollidingKey> {
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+
+        @Override
+        public int compareTo(CollidingKey o) {
+            return Integer.compare(id, o.id);
+        }
     }
 
     private SomeMap<String, Integer> threeNumbersMap(){
@@ -0,0 +1,270 @@
+package at.schrer.utils.structures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SortedSomeMapTest {
+
+    @Test
+    void testBasicPutSizeGet(){
+        // Given
+        SortedSomeMap<String, Integer> map = new SortedSomeMap<>();
+        // When
+        map.put("bla", 1);
+        // Then
+        assertEquals(1, map.size());
+        assertEquals(1, map.get("bla"));
+        assertNull(map.get("blub"));
+    }
+
+    @Test
+    void testKeepsKeyOrder(){
+        // Given
+        SortedSomeMap<Integer, String> map = new SortedSomeMap<>(2);
+        // When
+        for (int i : List.of(5, 3, 9, 1, 7)) {
+            map.put(i, "v" + i);
+        }
+        // Then
+        assertIterableEquals(List.of(1, 3, 5, 7, 9), map.keySet());
+        assertIterableEquals(List.of("v1", "v3", "v5", "v7", "v9"), map.values());
+        assertEquals(1, map.firstKey());
+        assertEquals(9, map.lastKey());
+    }
+
+    @Test
+    void testOverwriteAndRemove(){
+        // Given
+        SortedSomeMap<Integer, String> map = tenEvenNumbersMap();
+        // When
+        String old = map.put(4, "four");
+        String removed = map.remove(6);
+        String notPresent = map.remove(7);
+        // Then
+        assertEquals("v4", old);
+        assertEquals("v6", removed);
+        assertNull(notPresent);
+        assertEquals(9, map.size());
+        assertEquals("four", map.get(4));
+        assertFalse(map.containsKey(6));
+    }
+
+    @Test
+    void testPutAllSorted(){
+        // Given
+        SortedSomeMap<Integer, String> map = tenEvenNumbersMap();
+        TreeMap<Integer, String> additions = new TreeMap<>();
+        for (int i = -3; i < 25; i += 3) {
+            additions.put(i, "new" + i);
+        }
+        // When
+        map.putAll(additions);
+        // Then
+        assertEquals(16, map.size());
+        assertEquals(List.of(-3, 0, 2, 3, 4, 6, 8, 9, 10, 12, 14, 15, 16, 18, 21, 24), new ArrayList<>(map.keySet()));
+        assertEquals("new6", map.get(6));
+        assertEquals("v8", map.get(8));
+    }
+
+    @Test
+    void testPutAllSortedRejectsUnsortedMappings(){
+        // Given
+        SortedSomeMap<Integer, String> map = tenEvenNumbersMap();
+        List<Map.Entry<Integer, String>> unsorted = List.of(Map.entry(5, "five"), Map.entry(1, "one"));
+        // Then
+        assertThrows(IllegalArgumentException.class, () -> map.putAllSorted(unsorted));
+        assertThrows(IllegalArgumentException.class, () -> map.headMap(4, false).putAll(new TreeMap<>(Map.of(7, "seven"))));
+        assertEquals(10, map.size());
+    }
+
+    @Test
+    void testNavigation(){
+        // Given
+        SortedSomeMap<Integer, String> map = tenEvenNumbersMap();
+        // Then
+        assertEquals(4, map.floorKey(5));
+        assertEquals(4, map.floorKey(4));
+        assertEquals(6, map.ceilingKey(5));
+        assertEquals(4, map.ceilingKey(4));
+        assertEquals(2, map.lowerKey(4));
+        assertEquals(6, map.higherKey(4));
+        assertNull(map.lowerKey(0));
+        assertNull(map.higherKey(18));
+        assertNull(map.ceilingKey(19));
+        assertEquals("v18", map.floorEntry(100).getValue());
+    }
+
+    @Test
+    void testSnapshotEntriesAreImmutable(){
+        // Given
+        SortedSomeMap<Integer, String> map = tenEvenNumbersMap();
+        // When
+        Map.Entry<Integer, String> first = map.firstEntry();
+        // Then
+        assertThrows(UnsupportedOperationException.class, () -> first.setValue("changed"));
+    }
+
+    @Test
+    void testPoll(){
+        // Given
+        SortedSomeMap<Integer, String> map = tenEvenNumbersMap();
+        // When
+        Map.Entry<Integer, String> first = map.pollFirstEntry();
+        Map.Entry<Integer, String> last = map.pollLastEntry();
+        // Then
+        assertEquals(0, first.getKey());
+        assertEquals(18, last.getKey());
+        assertEquals(8, map.size());
+        assertEquals(2, map.firstKey());
+        assertEquals(16, map.lastKey());
+    }
+
+    @Test
+    void testSubMapIsLiveView(){
+        // Given
+        SortedSomeMap<Integer, String> map = tenEvenNumbersMap();
+        // When
+        NavigableMap<Integer, String> sub = map.subMap(4, true, 10, false);
+        // Then
+        assertIterableEquals(List.of(4, 6, 8), sub.keySet());
+
+        // When
+        map.put(5, "v5");
+        sub.remove(8);
+        // Then
+        assertIterableEquals(List.of(4, 5, 6), sub.keySet());
+        assertFalse(map.containsKey(8));
+        assertEquals(10, map.size());
+        assertNull(sub.get(10));
+        assertThrows(IllegalArgumentException.class, () -> sub.put(10, "v10"));
+    }
+
+    @Test
+    void testHeadAndTailMap(){
+        // Given
+        SortedSomeMap<Integer, String> map = tenEvenNumbersMap();
+        // When
+        NavigableMap<Integer, String> head = map.headMap(6, true);
+        SortedMap<Integer, String> tail = map.tailMap(13);
+        // Then
+        assertIterableEquals(List.of(0, 2, 4, 6), head.keySet());
+        assertIterableEquals(List.of(14, 16, 18), tail.keySet());
+        assertEquals(6, head.lastKey());
+        assertEquals(14, tail.firstKey());
+    }
+
+    @Test
+    void testNestedViewOutOfRange(){
+        // Given
+        SortedSomeMap<Integer, String> map = tenEvenNumbersMap();
+        NavigableMap<Integer, String> sub = map.subMap(4, true, 10, true);
+        // Then
+        assertThrows(IllegalArgumentException.class, () -> sub.subMap(2, true, 8, true));
+        assertThrows(IllegalArgumentException.class, () -> sub.tailMap(12, true));
+        assertIterableEquals(List.of(6, 8), sub.subMap(5, true, 8, true).keySet());
+    }
+
+    @Test
+    void testEqualExclusiveBoundsAreEmpty(){
+        // Given
+        SortedSomeMap<Integer, String> map = tenEvenNumbersMap();
+        // When
+        NavigableMap<Integer, String> sub = map.subMap(6, false, 6, false);
+        NavigableMap<Integer, String> nested = map.tailMap(6, false).headMap(6, false);
+        NavigableMap<Integer, String> descending = map.descendingMap().subMap(6, false, 6, false);
+        // Then
+        for (NavigableMap<Integer, String> view : List.of(sub, nested, descending)) {
+            assertEquals(0, view.size());
+            assertTrue(view.isEmpty());
+            assertEquals(List.of(), new ArrayList<>(view.keySet()));
+            assertNull(view.firstEntry());
+            view.clear();
+        }
+        assertEquals(10, map.size());
+    }
+
+    @Test
+    void testDescendingMap(){
+        // Given
+        SortedSomeMap<Integer, String> map = tenEvenNumbersMap();
+        // When
+        NavigableMap<Integer, String> descending = map.descendingMap();
+        // Then
+        assertEquals(18, descending.firstKey());
+        assertEquals(0, descending.lastKey());
+        assertEquals(6, descending.floorKey(5));
+        assertEquals(4, descending.higherKey(5));
+        assertIterableEquals(List.of(8, 6, 4), descending.subMap(8, true, 4, true).keySet());
+        assertIterableEquals(List.of(18, 16), descending.headMap(14).keySet());
+        assertIterableEquals(map.keySet(), descending.descendingMap().keySet());
+    }
+
+    @Test
+    void testRemoveThroughIterator(){
+        // Given
+        SortedSomeMap<Integer, String> map = tenEvenNumbersMap();
+        // When
+        Iterator<Integer> keys = map.navigableKeySet().iterator();
+        while (keys.hasNext()) {
+            if (keys.next() % 4 == 0) {
+                keys.remove();
+            }
+        }
+        Iterator<Integer> descendingKeys = map.descendingKeySet().iterator();
+        descendingKeys.next();
+        descendingKeys.remove();
+        // Then
+        assertIterableEquals(List.of(2, 6, 10, 14), map.keySet());
+    }
+
+    @Test
+    void testConcurrentModification(){
+        // Given
+        SortedSomeMap<Integer, String> map = tenEvenNumbersMap();
+        Iterator<Integer> keys = map.keySet().iterator();
+        keys.next();
+        // When
+        map.put(1, "v1");
+        // Then
+        assertThrows(ConcurrentModificationException.class, keys::next);
+    }
+
+    @Test
+    void testEqualsOtherMaps(){
+        // Given
+        SortedSomeMap<Integer, String> map = tenEvenNumbersMap();
+        TreeMap<Integer, String> treeMap = new TreeMap<>(map);
+        // Then
+        assertEquals(treeMap, map);
+        assertEquals(map, treeMap);
+        assertEquals(treeMap.hashCode(), map.hashCode());
+        assertEquals(treeMap.subMap(3, 11), map.subMap(3, 11));
+    }
+
+    @Test
+    void testShrink(){
+        // Given
+        SortedSomeMap<Integer, String> map = new SortedSomeMap<>(4);
+        for (int i = 0; i < 64; i++) {
+            map.put(i, "v" + i);
+        }
+        assertEquals(64, map.getMaxSize());
+        // When
+        map.headMap(60).clear();
+        // Then
+        assertEquals(4, map.size());
+        assertEquals(32, map.getMaxSize());
+        assertIterableEquals(List.of(60, 61, 62, 63), map.keySet());
+    }
+
+    private SortedSomeMap<Integer, String> tenEvenNumbersMap(){
+        SortedSomeMap<Integer, String> map = new SortedSomeMap<>();
+        for (int i = 18; i >= 0; i -= 2) {
+            map.put(i, "v" + i);
+        }
+        return map;
+    }
+}